@@ -2,6 +2,7 @@ package com.calculation.fee.delivery.controller;
 
 import com.calculation.fee.delivery.model.BusinessRule;
 import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -19,13 +20,16 @@ import java.util.Optional;
 public class BusinessRuleController {
 
     private final BusinessRuleRepository businessRuleRepository;
+    private final BusinessRuleCache businessRuleCache;
 
-    public BusinessRuleController(BusinessRuleRepository businessRuleRepository) {
+    public BusinessRuleController(BusinessRuleRepository businessRuleRepository, BusinessRuleCache businessRuleCache) {
         this.businessRuleRepository = businessRuleRepository;
+        this.businessRuleCache = businessRuleCache;
     }
 
     /**
-     * Creates a new business rule
+     * Creates a new business rule. The rule cache is reloaded before returning, so quotes use the new rule
+     * as soon as the response is sent.
      */
     @PostMapping
     public ResponseEntity<BusinessRule> createBusinessRule(@RequestBody BusinessRule businessRule) {
@@ -33,6 +37,7 @@ public class BusinessRuleController {
             log.info("Creating new business rule");
             businessRule.setTimestamp(LocalDateTime.now());
             BusinessRule savedRule = businessRuleRepository.save(businessRule);
+            businessRuleCache.reload();
             return ResponseEntity.status(HttpStatus.CREATED).body(savedRule);
         } catch (Exception e) {
             log.error("Error creating business rule: {}", e.getMessage(), e);
@@ -75,7 +80,7 @@ public class BusinessRuleController {
     }
 
     /**
-     * Updates an existing business rule
+     * Updates an existing business rule and reloads the rule cache
      */
     @PutMapping(value = "/{id}")
     public ResponseEntity<BusinessRule> updateBusinessRule(@PathVariable Long id, @RequestBody BusinessRule updatedRule) {
@@ -88,23 +93,24 @@ public class BusinessRuleController {
             }
 
             BusinessRule rule = existingRule.get();
-            rule.setTallinnCarBaseFee(updatedRule.getTallinnCarBaseFee());
-            rule.setTallinnScooterBaseFee(updatedRule.getTallinnScooterBaseFee());
-            rule.setTallinnBikeBaseFee(updatedRule.getTallinnBikeBaseFee());
-            rule.setTartuCarBaseFee(updatedRule.getTartuCarBaseFee());
-            rule.setTartuScooterBaseFee(updatedRule.getTartuScooterBaseFee());
-            rule.setTartuBikeBaseFee(updatedRule.getTartuBikeBaseFee());
-            rule.setParnuCarBaseFee(updatedRule.getParnuCarBaseFee());
-            rule.setParnuScooterBaseFee(updatedRule.getParnuScooterBaseFee());
-            rule.setParnuBikeBaseFee(updatedRule.getParnuBikeBaseFee());
-            rule.setAtefBelowMinusTen(updatedRule.getAtefBelowMinusTen());
-            rule.setAtefBelowZero(updatedRule.getAtefBelowZero());
-            rule.setWsefFee(updatedRule.getWsefFee());
-            rule.setWpefSnowOrSleet(updatedRule.getWpefSnowOrSleet());
-            rule.setWpefRain(updatedRule.getWpefRain());
+            rule.setTallinnCarBaseFeeCents(updatedRule.getTallinnCarBaseFeeCents());
+            rule.setTallinnScooterBaseFeeCents(updatedRule.getTallinnScooterBaseFeeCents());
+            rule.setTallinnBikeBaseFeeCents(updatedRule.getTallinnBikeBaseFeeCents());
+            rule.setTartuCarBaseFeeCents(updatedRule.getTartuCarBaseFeeCents());
+            rule.setTartuScooterBaseFeeCents(updatedRule.getTartuScooterBaseFeeCents());
+            rule.setTartuBikeBaseFeeCents(updatedRule.getTartuBikeBaseFeeCents());
+            rule.setParnuCarBaseFeeCents(updatedRule.getParnuCarBaseFeeCents());
+            rule.setParnuScooterBaseFeeCents(updatedRule.getParnuScooterBaseFeeCents());
+            rule.setParnuBikeBaseFeeCents(updatedRule.getParnuBikeBaseFeeCents());
+            rule.setAtefBelowMinusTenCents(updatedRule.getAtefBelowMinusTenCents());
+            rule.setAtefBelowZeroCents(updatedRule.getAtefBelowZeroCents());
+            rule.setWsefFeeCents(updatedRule.getWsefFeeCents());
+            rule.setWpefSnowOrSleetCents(updatedRule.getWpefSnowOrSleetCents());
+            rule.setWpefRainCents(updatedRule.getWpefRainCents());
             rule.setTimestamp(LocalDateTime.now());
 
             BusinessRule savedRule = businessRuleRepository.save(rule);
+            businessRuleCache.reload();
             return ResponseEntity.ok(savedRule);
         } catch (Exception e) {
             log.error("Error updating business rule with ID {}: {}", id, e.getMessage(), e);
@@ -113,7 +119,7 @@ public class BusinessRuleController {
     }
 
     /**
-     * Deletes a business rule by ID
+     * Deletes a business rule by ID and reloads the rule cache
      */
     @DeleteMapping(value = "/{id}")
     public ResponseEntity<Map<String, String>> deleteBusinessRule(@PathVariable Long id) {
@@ -124,6 +130,7 @@ public class BusinessRuleController {
                 return ResponseEntity.notFound().build();
             }
             businessRuleRepository.deleteById(id);
+            businessRuleCache.reload();
             Map<String, String> response = new HashMap<>();
             response.put("message", "Business rule with ID " + id + " deleted successfully");
             return ResponseEntity.ok(response);
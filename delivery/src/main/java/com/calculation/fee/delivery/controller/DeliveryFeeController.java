@@ -1,31 +1,61 @@
 package com.calculation.fee.delivery.controller;
 
-import com.calculation.fee.delivery.exception.InvalidCityName;
-import com.calculation.fee.delivery.exception.InvalidVehicleType;
-import com.calculation.fee.delivery.exception.UsageForbiddenException;
+import com.calculation.fee.delivery.model.BatchFeeResponse;
 import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.FeeResponse;
+import com.calculation.fee.delivery.model.QuoteRequest;
+import com.calculation.fee.delivery.model.QuoteResult;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.RequestDatetime;
 import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.service.BatchDeliveryFee;
 import com.calculation.fee.delivery.service.DeliveryFee;
+import com.calculation.fee.delivery.service.FeeTimeline;
+import com.calculation.fee.delivery.service.FeeMetrics;
+import com.calculation.fee.delivery.service.QuoteCaching;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Slf4j
 public class DeliveryFeeController {
 
+    private static final MediaType CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
     private final DeliveryFee deliveryFee;
+    private final BatchDeliveryFee batchDeliveryFee;
+    private final FeeMetrics feeMetrics;
+    private final QuoteCaching quoteCaching;
+    private final FeeTimeline feeTimeline;
+    private final ObjectWriter errorWriter;
+
+    @Value("${delivery.batch.max-size:1000}")
+    private int batchMaxSize;
 
-    public DeliveryFeeController(DeliveryFee deliveryFee) {
+    public DeliveryFeeController(DeliveryFee deliveryFee, BatchDeliveryFee batchDeliveryFee, FeeMetrics feeMetrics,
+                                 QuoteCaching quoteCaching, FeeTimeline feeTimeline, ObjectMapper objectMapper) {
         this.deliveryFee = deliveryFee;
+        this.batchDeliveryFee = batchDeliveryFee;
+        this.feeMetrics = feeMetrics;
+        this.quoteCaching = quoteCaching;
+        this.feeTimeline = feeTimeline;
+        this.errorWriter = objectMapper.writerFor(FeeResponse.class);
     }
 
     /**
@@ -37,82 +67,213 @@ public class DeliveryFeeController {
      * If the weather conditions forbid the usage of the vehicle type (e.g., high wind speed for Bike), an error is returned.
      * </p>
      * <p>
+     * Fee and forbidden responses carry the ETag and Cache-Control of {@link QuoteCaching}. A request whose
+     * If-None-Match matches the current ETag is answered with 304 Not Modified before the fee is calculated.
+     * </p>
+     * <p>
      * Example: GET /api/delivery-fee?city=Tallinn&vehicleType=Car&datetime=2025-03-22T10:00:00
      * </p>
      *
      * @param city        The city for delivery (e.g., Tallinn, Tartu, Pärnu). Required.
      * @param vehicleType The vehicle type (e.g., Car, Scooter, Bike). Required.
      * @param datetime    The datetime for which to calculate the fee (optional, format: yyyy-MM-dd'T'HH:mm:ss).
-     * @return A ResponseEntity containing a map with the calculated fee and currency (EUR).
-     *         - On success: 200 OK with { "fee": 5.0, "currency": "EUR" }
+     * @param webRequest  The request, checked for If-None-Match.
+     * @return A ResponseEntity containing a {@link FeeResponse} with the calculated fee and currency (EUR).
+     *         - On success: 200 OK with { "fee": 5.0, "feeCents": 500, "currency": "EUR" }
+     *         - On a matching If-None-Match: 304 Not Modified without a body
      *         - On invalid input: 400 Bad Request with { "error": "Error message" }
      *         - On forbidden usage: 403 Forbidden with { "error": "Usage forbidden message" }
      *         - On no weather data: 503 Service Unavailable with { "error": "No weather data available" }
      *         - On unexpected error: 500 Internal Server Error with { "error": "An unexpected error occurred" }
      */
     @GetMapping(value = "/delivery-fee")
-    public ResponseEntity<Map<String, Object>> calculateDeliveryFee(
+    public ResponseEntity<FeeResponse> calculateDeliveryFee(
             @RequestParam(value = "city", required = false) String city,
             @RequestParam(value = "vehicleType", required = false) String vehicleType,
-            @RequestParam(value = "datetime", required = false) String datetime) {
+            @RequestParam(value = "datetime", required = false) String datetime,
+            WebRequest webRequest) {
         try {
-            if (city == null || city.trim().isEmpty()) {
+            if (city == null || city.isBlank()) {
                 log.error("Missing required parameter: city");
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("error", "Required parameter is missing: city. Provide a city type: Tallinn, Tartu or Pärnu");
-                return ResponseEntity.badRequest().body(errorResponse);
+                feeMetrics.countOutcome(QuoteStatus.INVALID_INPUT);
+                return ResponseEntity.badRequest().body(FeeResponse.MISSING_CITY);
             }
-            if (vehicleType == null || vehicleType.trim().isEmpty()) {
+            if (vehicleType == null || vehicleType.isBlank()) {
                 log.error("Missing required parameter: vehicleType");
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("error", "Required parameter is missing: vehicleType. Provide a vehicle type: Car, Scooter or Bike");
-                return ResponseEntity.badRequest().body(errorResponse);
+                feeMetrics.countOutcome(QuoteStatus.INVALID_INPUT);
+                return ResponseEntity.badRequest().body(FeeResponse.MISSING_VEHICLE_TYPE);
             }
 
             LocalDateTime parsedDateTime = null;
-            if (datetime != null && !datetime.trim().isEmpty()) {
-                try {
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
-                    parsedDateTime = LocalDateTime.parse(datetime, formatter);
-                } catch (DateTimeParseException e) {
+            if (datetime != null && !datetime.isBlank()) {
+                parsedDateTime = RequestDatetime.parse(datetime);
+                if (parsedDateTime == null) {
                     log.error("Invalid datetime format: {}", datetime);
-                    Map<String, Object> errorResponse = new HashMap<>();
-                    errorResponse.put("error", "Invalid datetime format. Use yyyy-MM-dd'T'HH:mm:ss (e.g., 2025-03-22T10:00:00)");
-                    return ResponseEntity.badRequest().body(errorResponse);
+                    feeMetrics.countOutcome(QuoteStatus.INVALID_INPUT);
+                    return ResponseEntity.badRequest().body(FeeResponse.INVALID_DATETIME);
                 }
             }
 
-            log.info("Received request to calculate delivery fee for city: {}, vehicleType: {}", city, vehicleType);
-
-            City parsedCity = City.fromString(city);
-            VehicleType parsedVehicleType = VehicleType.fromString(vehicleType);
-            double fee = deliveryFee.calculateDeliveryFee(parsedCity, parsedVehicleType, parsedDateTime);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("fee", fee);
-            response.put("currency", "EUR");
-            return ResponseEntity.ok(response);
-
-        } catch (InvalidCityName | InvalidVehicleType e) {
-            log.error("Invalid input: {}", e.getMessage());
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", e.getMessage());
-            return ResponseEntity.badRequest().body(errorResponse);
-        } catch (UsageForbiddenException e) {
-            log.error("Usage forbidden: {}", e.getMessage());
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", e.getMessage());
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+            log.debug("Received request to calculate delivery fee for city: {}, vehicleType: {}", city, vehicleType);
+
+            City parsedCity = City.lookup(city);
+            if (parsedCity == null) {
+                log.error("Invalid input: unknown city {}", city);
+                feeMetrics.countOutcome(QuoteStatus.INVALID_INPUT);
+                return ResponseEntity.badRequest().body(FeeResponse.INVALID_CITY);
+            }
+            VehicleType parsedVehicleType = VehicleType.lookup(vehicleType);
+            if (parsedVehicleType == null) {
+                log.error("Invalid input: unknown vehicle type {}", vehicleType);
+                feeMetrics.countOutcome(QuoteStatus.INVALID_INPUT);
+                return ResponseEntity.badRequest().body(FeeResponse.INVALID_VEHICLE_TYPE);
+            }
+            DeliveryFee.HistoricalObservation observation = parsedDateTime == null
+                    ? null
+                    : deliveryFee.resolve(parsedCity, parsedDateTime);
+            QuoteCaching.Validator validator = quoteCaching.validator(parsedCity, observation);
+            if (validator != null && webRequest.checkNotModified(validator.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(validator.etag()).cacheControl(validator.cacheControl()).build();
+            }
+            FeeQuote quote = deliveryFee.quoteResolved(parsedCity, parsedVehicleType, observation);
+            if (quote.isForbidden()) {
+                String message = quote.forbiddenMessage();
+                log.debug("Usage forbidden: {}", message);
+                feeMetrics.countOutcome(QuoteStatus.FORBIDDEN);
+                return cacheable(ResponseEntity.status(HttpStatus.FORBIDDEN), validator).body(FeeResponse.error(message));
+            }
+            feeMetrics.countOutcome(QuoteStatus.OK);
+            return cacheable(ResponseEntity.ok(), validator).body(FeeResponse.ok(quote.feeCents()));
+
         } catch (IllegalStateException e) {
             log.error("There is no weather data curently: {}", e.getMessage());
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", e.getMessage());
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+            feeMetrics.countOutcome(QuoteStatus.NO_DATA);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(FeeResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("Unexpected error during fee calculation: {}", e.getMessage(), e);
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", "An unexpected error occurred!");
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(FeeResponse.UNEXPECTED_ERROR);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Calculates the delivery fee for many city, vehicle type and datetime combinations in one request.
+     * <p>
+     * Every item is priced like {@code GET /api/delivery-fee}, but an invalid or failing item only affects its own
+     * result. Items that resolve to the same weather observation and business rule share one database lookup.
+     * </p>
+     * <p>
+     * Example: POST /api/delivery-fee/batch with
+     * [{ "city": "Tallinn", "vehicleType": "Car" }, { "city": "Tartu", "vehicleType": "Bike", "datetime": "2025-03-22T10:00:00" }]
+     * </p>
+     *
+     * @param requests The quote requests; at most {@code delivery.batch.max-size} items
+     * @return A ResponseEntity containing the results in request order.
+     *         - On success: 200 OK with { "results": [{ "status": "OK", "fee": 5.0, "currency": "EUR" },
+     *           { "status": "FORBIDDEN", "error": "Usage forbidden message" }] }, where status is one of
+     *           OK, INVALID_INPUT, FORBIDDEN or NO_DATA
+     *         - On a missing or too large batch: 400 Bad Request with { "error": "Error message" }
+     *         - On unexpected error: 500 Internal Server Error with { "error": "An unexpected error occurred" }
+     */
+    @PostMapping(value = "/delivery-fee/batch")
+    public ResponseEntity<BatchFeeResponse> calculateDeliveryFees(@RequestBody(required = false) List<QuoteRequest> requests) {
+        try {
+            if (requests == null || requests.isEmpty()) {
+                log.error("Batch quote request without items");
+                return ResponseEntity.badRequest().body(BatchFeeResponse.EMPTY_BATCH);
+            }
+            if (requests.size() > batchMaxSize) {
+                log.error("Batch quote request with {} items exceeds the limit of {}", requests.size(), batchMaxSize);
+                return ResponseEntity.badRequest().body(BatchFeeResponse.error("Too many quote requests, at most " + batchMaxSize + " are allowed"));
+            }
+
+            log.debug("Received batch request to calculate {} delivery fees", requests.size());
+            List<QuoteResult> results = batchDeliveryFee.calculateDeliveryFees(requests);
+            for (QuoteResult result : results) {
+                feeMetrics.countOutcome(result.status());
+            }
+            return ResponseEntity.ok(BatchFeeResponse.of(results));
+
+        } catch (Exception e) {
+            log.error("Unexpected error during batch fee calculation: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(BatchFeeResponse.UNEXPECTED_ERROR);
+        }
+    }
+
+    /**
+     * Streams the delivery fee of one city and vehicle type over a datetime range.
+     * <p>
+     * The range is split at every new weather observation of the station and every new business rule, and each
+     * interval is reported once with the fee, or the reason why the vehicle type is forbidden or no fee is available,
+     * and the ids of the observation and rule it was priced with. The intervals are written while the observations
+     * are read, so any range can be requested.
+     * </p>
+     * <p>
+     * Example: GET /api/delivery-fee/timeline?city=Tallinn&vehicleType=Bike&from=2025-01-01T00:00:00&to=2025-04-01T00:00:00
+     * </p>
+     *
+     * @param from   Start of the range, inclusive (format: yyyy-MM-dd'T'HH:mm:ss). Required.
+     * @param to     End of the range, exclusive. Required.
+     * @param format ndjson (default) or csv
+     * @return 200 OK with one { "from", "to", "status", "fee", "feeCents", "error", "weatherId", "businessRuleId" }
+     *         line per interval, where status is OK, FORBIDDEN or NO_DATA, or a CSV with those columns;
+     *         400 Bad Request with { "error": "Error message" } on invalid input
+     */
+    @GetMapping(value = "/delivery-fee/timeline")
+    public ResponseEntity<StreamingResponseBody> getFeeTimeline(
+            @RequestParam(value = "city", required = false) String city,
+            @RequestParam(value = "vehicleType", required = false) String vehicleType,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        if (city == null || city.isBlank()) {
+            return timelineError(FeeResponse.MISSING_CITY);
+        }
+        if (vehicleType == null || vehicleType.isBlank()) {
+            return timelineError(FeeResponse.MISSING_VEHICLE_TYPE);
+        }
+        City parsedCity = City.lookup(city);
+        if (parsedCity == null) {
+            return timelineError(FeeResponse.INVALID_CITY);
+        }
+        VehicleType parsedVehicleType = VehicleType.lookup(vehicleType);
+        if (parsedVehicleType == null) {
+            return timelineError(FeeResponse.INVALID_VEHICLE_TYPE);
+        }
+        LocalDateTime parsedFrom = RequestDatetime.parse(from);
+        LocalDateTime parsedTo = RequestDatetime.parse(to);
+        if (parsedFrom == null || parsedTo == null) {
+            return timelineError(FeeResponse.INVALID_DATETIME);
+        }
+        if (!parsedFrom.isBefore(parsedTo)) {
+            return timelineError(FeeResponse.error("The start of the range must be before its end"));
+        }
+        FeeTimeline.Format parsedFormat;
+        if ("ndjson".equalsIgnoreCase(format)) {
+            parsedFormat = FeeTimeline.Format.NDJSON;
+        } else if ("csv".equalsIgnoreCase(format)) {
+            parsedFormat = FeeTimeline.Format.CSV;
+        } else {
+            return timelineError(FeeResponse.error("Format should be one of these: ndjson or csv"));
+        }
+
+        log.debug("Streaming fee timeline for {} {} from {} to {}", parsedCity, parsedVehicleType, parsedFrom, parsedTo);
+        StreamingResponseBody body = out -> feeTimeline.write(parsedCity, parsedVehicleType, parsedFrom, parsedTo, parsedFormat, out);
+        return ResponseEntity.ok()
+                .contentType(parsedFormat == FeeTimeline.Format.CSV ? CSV : MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * A streamed response can only carry a streamed body, so the errors of the timeline are written as one JSON object
+     */
+    private ResponseEntity<StreamingResponseBody> timelineError(FeeResponse error) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> errorWriter.writeValue(out, error));
+    }
+
+    private static ResponseEntity.BodyBuilder cacheable(ResponseEntity.BodyBuilder response, QuoteCaching.Validator validator) {
+        return validator == null ? response : response.eTag(validator.etag()).cacheControl(validator.cacheControl());
+    }
+}
@@ -0,0 +1,37 @@
+package com.calculation.fee.delivery.controller;
+
+import com.calculation.fee.delivery.model.QuoteTraceSettings;
+import com.calculation.fee.delivery.service.QuoteTracer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/quote-trace")
+public class QuoteTraceController {
+
+    private final QuoteTracer quoteTracer;
+
+    public QuoteTraceController(QuoteTracer quoteTracer) {
+        this.quoteTracer = quoteTracer;
+    }
+
+    /**
+     * Returns the current quote trace settings
+     */
+    @GetMapping
+    public ResponseEntity<QuoteTraceSettings> getSettings() {
+        return ResponseEntity.ok(quoteTracer.settings());
+    }
+
+    /**
+     * Replaces the quote trace settings, e.g. { "sampleRate": 0.01, "cities": ["TALLINN"], "vehicleTypes": [] }.
+     * Set the sample rate to 0 and both lists to empty to switch tracing off.
+     *
+     * @return 200 OK with the new settings, or 400 Bad Request if the sample rate is not between 0 and 1
+     */
+    @PutMapping
+    public ResponseEntity<QuoteTraceSettings> updateSettings(@RequestBody QuoteTraceSettings settings) {
+        quoteTracer.update(settings);
+        return ResponseEntity.ok(settings);
+    }
+}
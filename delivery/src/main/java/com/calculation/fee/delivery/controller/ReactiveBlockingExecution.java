@@ -0,0 +1,27 @@
+package com.calculation.fee.delivery.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs the controller methods with a plain, non-reactive return type on Reactor's bounded elastic scheduler when the
+ * application is on the reactive stack.
+ * <p>
+ * The business rule, rule simulation, weather backfill and quote trace controllers are shared by both stacks and block
+ * on JPA or the file system; on Netty they would otherwise run on an event loop thread. Methods that return a
+ * {@code Mono} or {@code Flux}, like those of {@link ReactiveDeliveryFeeController}, still run on the event loop.
+ * </p>
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBlockingExecution implements WebFluxConfigurer {
+
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        configurer.setExecutor(new TaskExecutorAdapter(task -> Schedulers.boundedElastic().schedule(task)));
+    }
+}
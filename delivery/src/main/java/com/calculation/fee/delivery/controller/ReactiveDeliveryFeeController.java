@@ -0,0 +1,260 @@
+package com.calculation.fee.delivery.controller;
+
+import com.calculation.fee.delivery.model.BatchFeeResponse;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.FeeResponse;
+import com.calculation.fee.delivery.model.QuoteRequest;
+import com.calculation.fee.delivery.model.QuoteResult;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.RequestDatetime;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.service.BatchDeliveryFee;
+import com.calculation.fee.delivery.service.DeliveryFee;
+import com.calculation.fee.delivery.service.FeeMetrics;
+import com.calculation.fee.delivery.service.FeeTimeline;
+import com.calculation.fee.delivery.service.QuoteCaching;
+import com.calculation.fee.delivery.service.ReactiveDeliveryFee;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reactive variant of {@link DeliveryFeeController} with the same endpoints, active when the application runs on the
+ * reactive stack ({@code spring.main.web-application-type=reactive}), plus a streaming multi-quote endpoint.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+public class ReactiveDeliveryFeeController {
+
+    private static final MediaType CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private final ReactiveDeliveryFee reactiveDeliveryFee;
+    private final DeliveryFee deliveryFee;
+    private final BatchDeliveryFee batchDeliveryFee;
+    private final FeeMetrics feeMetrics;
+    private final QuoteCaching quoteCaching;
+    private final FeeTimeline feeTimeline;
+    private final ObjectWriter errorWriter;
+
+    @Value("${delivery.batch.max-size:1000}")
+    private int batchMaxSize;
+
+    public ReactiveDeliveryFeeController(ReactiveDeliveryFee reactiveDeliveryFee, DeliveryFee deliveryFee,
+                                         BatchDeliveryFee batchDeliveryFee, FeeMetrics feeMetrics,
+                                         QuoteCaching quoteCaching, FeeTimeline feeTimeline, ObjectMapper objectMapper) {
+        this.reactiveDeliveryFee = reactiveDeliveryFee;
+        this.deliveryFee = deliveryFee;
+        this.batchDeliveryFee = batchDeliveryFee;
+        this.feeMetrics = feeMetrics;
+        this.quoteCaching = quoteCaching;
+        this.feeTimeline = feeTimeline;
+        this.errorWriter = objectMapper.writerFor(FeeResponse.class);
+    }
+
+    /**
+     * Calculates the delivery fee like {@link DeliveryFeeController#calculateDeliveryFee}, with the same parameters
+     * and responses, including the HTTP validators of {@link QuoteCaching}, without blocking the event loop. The
+     * observation is resolved once, and the validator and the quote are computed from it in one task, so a quote that
+     * queries the database waits in the lookup scheduler's queue once.
+     */
+    @GetMapping(value = "/delivery-fee")
+    public Mono<ResponseEntity<FeeResponse>> calculateDeliveryFee(
+            @RequestParam(value = "city", required = false) String city,
+            @RequestParam(value = "vehicleType", required = false) String vehicleType,
+            @RequestParam(value = "datetime", required = false) String datetime,
+            ServerWebExchange exchange) {
+        if (city == null || city.isBlank()) {
+            return badRequest(FeeResponse.MISSING_CITY);
+        }
+        if (vehicleType == null || vehicleType.isBlank()) {
+            return badRequest(FeeResponse.MISSING_VEHICLE_TYPE);
+        }
+        LocalDateTime parsedDateTime = null;
+        if (datetime != null && !datetime.isBlank()) {
+            parsedDateTime = RequestDatetime.parse(datetime);
+            if (parsedDateTime == null) {
+                return badRequest(FeeResponse.INVALID_DATETIME);
+            }
+        }
+        City parsedCity = City.lookup(city);
+        if (parsedCity == null) {
+            return badRequest(FeeResponse.INVALID_CITY);
+        }
+        VehicleType parsedVehicleType = VehicleType.lookup(vehicleType);
+        if (parsedVehicleType == null) {
+            return badRequest(FeeResponse.INVALID_VEHICLE_TYPE);
+        }
+
+        LocalDateTime quotedAt = parsedDateTime;
+        Mono<ResponseEntity<FeeResponse>> response = Mono.fromCallable(() -> {
+            DeliveryFee.HistoricalObservation observation = quotedAt == null ? null : deliveryFee.resolve(parsedCity, quotedAt);
+            QuoteCaching.Validator validator = quoteCaching.validator(parsedCity, observation);
+            if (validator != null && exchange.checkNotModified(validator.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(validator.etag()).cacheControl(validator.cacheControl()).build();
+            }
+            FeeQuote quote = deliveryFee.quoteResolved(parsedCity, parsedVehicleType, observation);
+            if (quote.isForbidden()) {
+                feeMetrics.countOutcome(QuoteStatus.FORBIDDEN);
+                return cacheable(ResponseEntity.status(HttpStatus.FORBIDDEN), validator).body(FeeResponse.error(quote.forbiddenMessage()));
+            }
+            feeMetrics.countOutcome(QuoteStatus.OK);
+            return cacheable(ResponseEntity.ok(), validator).body(FeeResponse.ok(quote.feeCents()));
+        });
+        return reactiveDeliveryFee.lookup(parsedCity, parsedDateTime, response)
+                .onErrorResume(IllegalStateException.class, e -> {
+                    log.error("There is no weather data curently: {}", e.getMessage());
+                    feeMetrics.countOutcome(QuoteStatus.NO_DATA);
+                    return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(FeeResponse.error(e.getMessage())));
+                })
+                .onErrorResume(e -> {
+                    log.error("Unexpected error during fee calculation: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(FeeResponse.UNEXPECTED_ERROR));
+                });
+    }
+
+    /**
+     * Calculates many fees in one request like {@link DeliveryFeeController#calculateDeliveryFees}; the batch may query
+     * the database for historical items, so it runs on the bounded elastic scheduler
+     */
+    @PostMapping(value = "/delivery-fee/batch")
+    public Mono<ResponseEntity<BatchFeeResponse>> calculateDeliveryFees(@RequestBody(required = false) List<QuoteRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return Mono.just(ResponseEntity.badRequest().body(BatchFeeResponse.EMPTY_BATCH));
+        }
+        if (requests.size() > batchMaxSize) {
+            return Mono.just(ResponseEntity.badRequest().body(BatchFeeResponse.error("Too many quote requests, at most " + batchMaxSize + " are allowed")));
+        }
+        return Mono.fromCallable(() -> batchDeliveryFee.calculateDeliveryFees(requests))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(results -> {
+                    results.forEach(result -> feeMetrics.countOutcome(result.status()));
+                    return ResponseEntity.ok(BatchFeeResponse.of(results));
+                })
+                .onErrorResume(e -> {
+                    log.error("Unexpected error during batch fee calculation: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(BatchFeeResponse.UNEXPECTED_ERROR));
+                });
+    }
+
+    /**
+     * Streams one result per quote request, in request order, as newline-delimited JSON.
+     * <p>
+     * Unlike the batch endpoint the number of requests is not limited: requests are read from the body only as fast as
+     * the results are written to the client.
+     * </p>
+     * <p>
+     * Example: POST /api/delivery-fee/stream with Content-Type application/x-ndjson and lines like
+     * { "city": "Tallinn", "vehicleType": "Car" }; each response line is a result like those of the batch endpoint
+     * </p>
+     */
+    @PostMapping(value = "/delivery-fee/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<QuoteResult> streamDeliveryFees(@RequestBody Flux<QuoteRequest> requests) {
+        return reactiveDeliveryFee.quotes(requests)
+                .doOnNext(result -> feeMetrics.countOutcome(result.status()));
+    }
+
+    /**
+     * Streams the fee timeline like {@link DeliveryFeeController#getFeeTimeline}, with the same parameters and
+     * responses; the observations are read and written on the bounded elastic scheduler, and only as fast as the client
+     * consumes the response
+     */
+    @GetMapping(value = "/delivery-fee/timeline")
+    public ResponseEntity<Flux<DataBuffer>> getFeeTimeline(
+            @RequestParam(value = "city", required = false) String city,
+            @RequestParam(value = "vehicleType", required = false) String vehicleType,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            ServerWebExchange exchange) {
+        if (city == null || city.isBlank()) {
+            return timelineError(FeeResponse.MISSING_CITY, exchange);
+        }
+        if (vehicleType == null || vehicleType.isBlank()) {
+            return timelineError(FeeResponse.MISSING_VEHICLE_TYPE, exchange);
+        }
+        City parsedCity = City.lookup(city);
+        if (parsedCity == null) {
+            return timelineError(FeeResponse.INVALID_CITY, exchange);
+        }
+        VehicleType parsedVehicleType = VehicleType.lookup(vehicleType);
+        if (parsedVehicleType == null) {
+            return timelineError(FeeResponse.INVALID_VEHICLE_TYPE, exchange);
+        }
+        LocalDateTime parsedFrom = RequestDatetime.parse(from);
+        LocalDateTime parsedTo = RequestDatetime.parse(to);
+        if (parsedFrom == null || parsedTo == null) {
+            return timelineError(FeeResponse.INVALID_DATETIME, exchange);
+        }
+        if (!parsedFrom.isBefore(parsedTo)) {
+            return timelineError(FeeResponse.error("The start of the range must be before its end"), exchange);
+        }
+        FeeTimeline.Format parsedFormat;
+        if ("ndjson".equalsIgnoreCase(format)) {
+            parsedFormat = FeeTimeline.Format.NDJSON;
+        } else if ("csv".equalsIgnoreCase(format)) {
+            parsedFormat = FeeTimeline.Format.CSV;
+        } else {
+            return timelineError(FeeResponse.error("Format should be one of these: ndjson or csv"), exchange);
+        }
+
+        log.debug("Streaming fee timeline for {} {} from {} to {}", parsedCity, parsedVehicleType, parsedFrom, parsedTo);
+        Flux<DataBuffer> body = Flux.from(DataBufferUtils.outputStreamPublisher(out -> {
+            try {
+                feeTimeline.write(parsedCity, parsedVehicleType, parsedFrom, parsedTo, parsedFormat, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, exchange.getResponse().bufferFactory(), task -> Schedulers.boundedElastic().schedule(task)));
+        return ResponseEntity.ok()
+                .contentType(parsedFormat == FeeTimeline.Format.CSV ? CSV : MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * The timeline body is a stream of buffers, so its errors are written as one buffer holding a JSON object
+     */
+    private ResponseEntity<Flux<DataBuffer>> timelineError(FeeResponse error, ServerWebExchange exchange) {
+        byte[] json;
+        try {
+            json = errorWriter.writeValueAsBytes(error);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Flux.just(exchange.getResponse().bufferFactory().wrap(json)));
+    }
+
+    private Mono<ResponseEntity<FeeResponse>> badRequest(FeeResponse response) {
+        log.error("Invalid fee request: {}", response.error());
+        feeMetrics.countOutcome(QuoteStatus.INVALID_INPUT);
+        return Mono.just(ResponseEntity.badRequest().body(response));
+    }
+
+    private static ResponseEntity.BodyBuilder cacheable(ResponseEntity.BodyBuilder response, QuoteCaching.Validator validator) {
+        return validator == null ? response : response.eTag(validator.etag()).cacheControl(validator.cacheControl());
+    }
+}
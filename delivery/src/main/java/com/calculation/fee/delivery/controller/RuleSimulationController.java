@@ -0,0 +1,76 @@
+package com.calculation.fee.delivery.controller;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeResponse;
+import com.calculation.fee.delivery.model.OrderVolume;
+import com.calculation.fee.delivery.model.SimulationRequest;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.service.RuleSimulation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/business-rules/simulation")
+@Slf4j
+public class RuleSimulationController {
+
+    private final RuleSimulation ruleSimulation;
+
+    public RuleSimulationController(RuleSimulation ruleSimulation) {
+        this.ruleSimulation = ruleSimulation;
+    }
+
+    /**
+     * Prices a draft business rule against the whole weather history and compares its revenue with the active rule.
+     * The draft is not stored.
+     * <p>
+     * Example body: { "rule": { "tallinnCarBaseFee": 4.5, ... }, "orders": [{ "city": "Tallinn", "vehicleType": "Car",
+     * "hour": 12, "orders": 40 }, { "city": "Tartu", "vehicleType": "Bike", "orders": 5 }] }
+     * </p>
+     *
+     * @return 200 OK with the totals and the totals per city, 400 Bad Request with { "error": "Error message" } on
+     * invalid input, or 503 Service Unavailable if there is no active business rule
+     */
+    @PostMapping
+    public ResponseEntity<?> simulate(@RequestBody SimulationRequest request) {
+        if (request.getRule() == null) {
+            return ResponseEntity.badRequest().body(FeeResponse.error("Provide a draft business rule"));
+        }
+        if (request.getOrders() == null || request.getOrders().isEmpty()) {
+            return ResponseEntity.badRequest().body(FeeResponse.error("Provide at least one order volume"));
+        }
+        long[][][] ordersPerHour = new long[City.values().length][VehicleType.values().length][24];
+        for (int i = 0; i < request.getOrders().size(); i++) {
+            OrderVolume volume = request.getOrders().get(i);
+            City city = City.lookup(volume.getCity());
+            if (city == null) {
+                return ResponseEntity.badRequest().body(FeeResponse.error("Order volume " + i + ": " + City.INVALID_NAME_MESSAGE));
+            }
+            VehicleType vehicleType = VehicleType.lookup(volume.getVehicleType());
+            if (vehicleType == null) {
+                return ResponseEntity.badRequest().body(FeeResponse.error("Order volume " + i + ": " + VehicleType.INVALID_NAME_MESSAGE));
+            }
+            Integer hour = volume.getHour();
+            if (hour != null && (hour < 0 || hour > 23)) {
+                return ResponseEntity.badRequest().body(FeeResponse.error("Order volume " + i + ": hour should be between 0 and 23"));
+            }
+            if (volume.getOrders() < 0) {
+                return ResponseEntity.badRequest().body(FeeResponse.error("Order volume " + i + ": orders should not be negative"));
+            }
+            long[] hours = ordersPerHour[city.ordinal()][vehicleType.ordinal()];
+            for (int h = hour == null ? 0 : hour; h <= (hour == null ? 23 : hour); h++) {
+                hours[h] += volume.getOrders();
+            }
+        }
+
+        try {
+            log.info("Simulating a business rule draft with {} order volumes", request.getOrders().size());
+            return ResponseEntity.ok(ruleSimulation.simulate(request.getRule(), ordersPerHour));
+        } catch (IllegalStateException e) {
+            log.warn("Cannot simulate business rule draft: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(FeeResponse.error(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.calculation.fee.delivery.controller;
+
+import com.calculation.fee.delivery.model.BackfillProgress;
+import com.calculation.fee.delivery.service.WeatherBackfill;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/weather/backfill")
+@Slf4j
+public class WeatherBackfillController {
+
+    private final WeatherBackfill weatherBackfill;
+
+    public WeatherBackfillController(WeatherBackfill weatherBackfill) {
+        this.weatherBackfill = weatherBackfill;
+    }
+
+    /**
+     * Starts loading the archived observations XML files of a server-side directory under
+     * {@code weather.backfill.root}, e.g. {@code POST /api/weather/backfill?directory=2024/observations}. Files loaded
+     * by an earlier run of the same directory are skipped.
+     *
+     * @return 202 Accepted with the progress, 400 Bad Request if the directory is absolute, leaves the root or does
+     * not exist, 403 Forbidden if no root is configured, or 409 Conflict if a backfill is already running
+     */
+    @PostMapping
+    public ResponseEntity<BackfillProgress> startBackfill(@RequestParam String directory) {
+        if (!weatherBackfill.isRootConfigured()) {
+            log.warn("Rejected weather backfill of {}: no backfill root is configured", directory);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            log.info("Starting weather backfill from {}", directory);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(weatherBackfill.start(directory));
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot backfill weather: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(weatherBackfill.progress());
+        }
+    }
+
+    /**
+     * Returns the progress and throughput of the running or last backfill
+     *
+     * @return 200 OK with the progress, or 404 Not Found if no backfill ran since startup
+     */
+    @GetMapping
+    public ResponseEntity<BackfillProgress> getProgress() {
+        BackfillProgress progress = weatherBackfill.progress();
+        return progress == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(progress);
+    }
+}
@@ -0,0 +1,25 @@
+package com.calculation.fee.delivery.model;
+
+/**
+ * Progress of a weather backfill run
+ *
+ * @param directory      The directory of archived observations XML files
+ * @param state          RUNNING, COMPLETED or FAILED
+ * @param totalFiles     XML files found in the directory
+ * @param resumedFiles   Files skipped because an earlier run already loaded them
+ * @param processedFiles Files parsed and loaded by this run
+ * @param failedFiles    Files that could not be read or parsed; they are tried again by the next run
+ * @param insertedRows   Observations inserted
+ * @param duplicateRows  Observations skipped because their station and timestamp were already loaded
+ * @param elapsedSeconds Time since the run started
+ * @param filesPerSecond Processed files per second of this run
+ * @param rowsPerSecond  Inserted observations per second of this run
+ */
+public record BackfillProgress(String directory, State state, long totalFiles, long resumedFiles, long processedFiles,
+                               long failedFiles, long insertedRows, long duplicateRows, double elapsedSeconds,
+                               double filesPerSecond, double rowsPerSecond) {
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+}
@@ -0,0 +1,23 @@
+package com.calculation.fee.delivery.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Body of a batch quote response: either one result per request item, in request order, or an error for the whole batch
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchFeeResponse(List<QuoteResult> results, String error) {
+
+    public static final BatchFeeResponse EMPTY_BATCH = error("Provide at least one quote request");
+    public static final BatchFeeResponse UNEXPECTED_ERROR = error("An unexpected error occurred!");
+
+    public static BatchFeeResponse of(List<QuoteResult> results) {
+        return new BatchFeeResponse(results, null);
+    }
+
+    public static BatchFeeResponse error(String error) {
+        return new BatchFeeResponse(null, error);
+    }
+}
@@ -1,42 +1,101 @@
 package com.calculation.fee.delivery.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
+/**
+ * Fee rules in effect from {@code timestamp}. Every fee is held in euro cents; the JSON API keeps the original property
+ * names and reads and writes the fees as decimal euro amounts, e.g. {@code "tallinnCarBaseFee": 4.0}.
+ */
 @Entity
-@Table(name = "business_rules")
+@Table(name = "business_rules", indexes = {
+        @Index(name = "idx_business_rules_timestamp", columnList = "timestamp")
+})
 @Data
 public class BusinessRule {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "business_rules_seq")
+    @SequenceGenerator(name = "business_rules_seq", sequenceName = "business_rules_seq", allocationSize = 50)
     private Long id;
 
     //rbf related fees
-    private double tallinnCarBaseFee;
-    private double tallinnScooterBaseFee;
-    private double tallinnBikeBaseFee;
+    @EuroAmount
+    @JsonProperty("tallinnCarBaseFee")
+    @ColumnDefault("0")
+    private long tallinnCarBaseFeeCents;
 
-    private double tartuCarBaseFee;
-    private double tartuScooterBaseFee;
-    private double tartuBikeBaseFee;
+    @EuroAmount
+    @JsonProperty("tallinnScooterBaseFee")
+    @ColumnDefault("0")
+    private long tallinnScooterBaseFeeCents;
 
-    private double parnuCarBaseFee;
-    private double parnuScooterBaseFee;
-    private double parnuBikeBaseFee;
+    @EuroAmount
+    @JsonProperty("tallinnBikeBaseFee")
+    @ColumnDefault("0")
+    private long tallinnBikeBaseFeeCents;
+
+    @EuroAmount
+    @JsonProperty("tartuCarBaseFee")
+    @ColumnDefault("0")
+    private long tartuCarBaseFeeCents;
+
+    @EuroAmount
+    @JsonProperty("tartuScooterBaseFee")
+    @ColumnDefault("0")
+    private long tartuScooterBaseFeeCents;
+
+    @EuroAmount
+    @JsonProperty("tartuBikeBaseFee")
+    @ColumnDefault("0")
+    private long tartuBikeBaseFeeCents;
+
+    @EuroAmount
+    @JsonProperty("parnuCarBaseFee")
+    @ColumnDefault("0")
+    private long parnuCarBaseFeeCents;
+
+    @EuroAmount
+    @JsonProperty("parnuScooterBaseFee")
+    @ColumnDefault("0")
+    private long parnuScooterBaseFeeCents;
+
+    @EuroAmount
+    @JsonProperty("parnuBikeBaseFee")
+    @ColumnDefault("0")
+    private long parnuBikeBaseFeeCents;
 
     //atef related fees
-    private double atefBelowMinusTen;
-    private double atefBelowZero;
+    @EuroAmount
+    @JsonProperty("atefBelowMinusTen")
+    @ColumnDefault("0")
+    private long atefBelowMinusTenCents;
+
+    @EuroAmount
+    @JsonProperty("atefBelowZero")
+    @ColumnDefault("0")
+    private long atefBelowZeroCents;
 
     //wsef related fees
-    private double wsefFee;
+    @EuroAmount
+    @JsonProperty("wsefFee")
+    @ColumnDefault("0")
+    private long wsefFeeCents;
 
     //wpef related fees
-    private double wpefSnowOrSleet;
-    private double wpefRain;
+    @EuroAmount
+    @JsonProperty("wpefSnowOrSleet")
+    @ColumnDefault("0")
+    private long wpefSnowOrSleetCents;
+
+    @EuroAmount
+    @JsonProperty("wpefRain")
+    @ColumnDefault("0")
+    private long wpefRainCents;
 
     private LocalDateTime timestamp;
-}
\ No newline at end of file
+}
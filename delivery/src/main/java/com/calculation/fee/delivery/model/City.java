@@ -5,21 +5,71 @@ import lombok.Getter;
 
 @Getter
 public enum City {
-    TALLINN("Tallinn-Harku"),
-    TARTU("Tartu-Tõravere"),
-    PARNU("Pärnu");
+    TALLINN("Tallinn-Harku", "Tallinn"),
+    TARTU("Tartu-Tõravere", "Tartu"),
+    PARNU("Pärnu", "Parnu");
+
+    public static final String INVALID_NAME_MESSAGE = "City name should be one of these: Tallinn-Harku, Tartu-Tõravere or Pärnu";
+
+    /**
+     * Every accepted name with the city it denotes, compared ignoring case
+     */
+    private static final String[] NAMES;
+    private static final City[] CITIES_BY_NAME;
+
+    static {
+        City[] cities = values();
+        NAMES = new String[cities.length * 2];
+        CITIES_BY_NAME = new City[NAMES.length];
+        for (City city : cities) {
+            NAMES[city.ordinal() * 2] = city.alias;
+            NAMES[city.ordinal() * 2 + 1] = city.stationName;
+            CITIES_BY_NAME[city.ordinal() * 2] = city;
+            CITIES_BY_NAME[city.ordinal() * 2 + 1] = city;
+        }
+    }
 
     private final String stationName;
+    private final String alias;
 
-    City(String stationName) {
+    City(String stationName, String alias) {
         this.stationName = stationName;
+        this.alias = alias;
     }
 
     public static City fromString(String cityName) {
-        try {
-            return City.valueOf(cityName.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            throw new InvalidCityName("City name should be one of these: Tallinn-Harku, Tartu-Tõravere or Pärnu: " + e.getMessage());
+        City city = lookup(cityName);
+        if (city == null) {
+            throw new InvalidCityName(INVALID_NAME_MESSAGE + ": " + cityName);
+        }
+        return city;
+    }
+
+    /**
+     * Returns the city with the given name, ignoring case, or null if there is none. Both the city name
+     * (e.g. Tallinn, Parnu) and the station name (e.g. Tallinn-Harku, Pärnu) are accepted; nothing is allocated.
+     */
+    public static City lookup(String cityName) {
+        if (cityName == null) {
+            return null;
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equalsIgnoreCase(cityName)) {
+                return CITIES_BY_NAME[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the city served by the given weather station, or null if the station is not one of ours
+     */
+    public static City fromStationName(String stationName) {
+        for (City city : values()) {
+            if (city.stationName.equals(stationName)) {
+                return city;
+            }
         }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package com.calculation.fee.delivery.model;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code long} property holding euro cents that appears in JSON as a decimal euro amount, e.g. 350 as 3.5.
+ * Reading rejects an amount with more than two decimals instead of rounding it.
+ */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@JacksonAnnotationsInside
+@JsonSerialize(using = EuroCents.JsonWriter.class)
+@JsonDeserialize(using = EuroCents.JsonReader.class)
+public @interface EuroAmount {
+}
@@ -0,0 +1,85 @@
+package com.calculation.fee.delivery.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Conversions of money amounts held as a {@code long} number of euro cents.
+ * <p>
+ * Fees are summed as cents, so totals are exact. They are only turned into euros at the API boundary:
+ * {@code cents / 100.0} is the double closest to the decimal amount, so it prints as that amount, e.g. 1234 as 12.34.
+ * </p>
+ */
+public final class EuroCents {
+
+    private EuroCents() {
+    }
+
+    /**
+     * Converts a decimal euro amount to cents
+     *
+     * @throws ArithmeticException If the amount has more than two decimals or does not fit a long
+     */
+    public static long fromEuros(BigDecimal euros) {
+        return euros.movePointRight(2).longValueExact();
+    }
+
+    public static double toEuros(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Writes cents as a decimal euro number, see {@link EuroAmount}
+     */
+    public static final class JsonWriter extends StdSerializer<Long> {
+
+        public JsonWriter() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long cents, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(toEuros(cents));
+        }
+    }
+
+    /**
+     * Reads a decimal euro number or numeric string into cents, see {@link EuroAmount}
+     */
+    public static final class JsonReader extends StdDeserializer<Long> {
+
+        public JsonReader() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            BigDecimal euros;
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                try {
+                    euros = new BigDecimal(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw InvalidFormatException.from(parser, "Not a euro amount", parser.getText(), Long.class);
+                }
+            } else if (parser.currentToken().isNumeric()) {
+                euros = parser.getDecimalValue();
+            } else {
+                return (Long) context.handleUnexpectedToken(Long.class, parser);
+            }
+            try {
+                return fromEuros(euros);
+            } catch (ArithmeticException e) {
+                throw InvalidFormatException.from(parser, "Euro amount must have at most two decimals", euros, Long.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.calculation.fee.delivery.model;
+
+/**
+ * Outcome of a fee calculation: either the total fee in euro cents, or the reason why the weather forbids the vehicle
+ * type.
+ * <p>
+ * A forbidden quote only records the reason code together with the vehicle type and observation it applies to; the
+ * message is built by {@link #forbiddenMessage()} when a caller actually needs the text.
+ * </p>
+ *
+ * @param feeCents        The total fee in euro cents; 0 if forbidden
+ * @param forbiddenReason Null if the vehicle type may be used
+ * @param vehicleType     The quoted vehicle type, set if forbidden
+ * @param weather         The observation that forbids it, set if forbidden
+ */
+public record FeeQuote(long feeCents, ForbiddenReason forbiddenReason, VehicleType vehicleType, Weather weather) {
+
+    public static FeeQuote allowed(long feeCents) {
+        return new FeeQuote(feeCents, null, null, null);
+    }
+
+    public static FeeQuote forbidden(ForbiddenReason forbiddenReason, VehicleType vehicleType, Weather weather) {
+        return new FeeQuote(0, forbiddenReason, vehicleType, weather);
+    }
+
+    /**
+     * Returns the total fee in euros
+     */
+    public double fee() {
+        return EuroCents.toEuros(feeCents);
+    }
+
+    public boolean isForbidden() {
+        return forbiddenReason != null;
+    }
+
+    /**
+     * Returns the message explaining why the vehicle type is forbidden, or null if it is not
+     */
+    public String forbiddenMessage() {
+        return forbiddenReason == null ? null : forbiddenReason.describe(vehicleType, weather);
+    }
+}
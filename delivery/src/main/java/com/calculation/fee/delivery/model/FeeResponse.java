@@ -0,0 +1,25 @@
+package com.calculation.fee.delivery.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Body of a single fee quote response: either a fee in EUR, as a decimal amount and in cents, or an error with the reason
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FeeResponse(Double fee, Long feeCents, String currency, String error) {
+
+    public static final FeeResponse MISSING_CITY = error("Required parameter is missing: city. Provide a city type: Tallinn, Tartu or Pärnu");
+    public static final FeeResponse MISSING_VEHICLE_TYPE = error("Required parameter is missing: vehicleType. Provide a vehicle type: Car, Scooter or Bike");
+    public static final FeeResponse INVALID_CITY = error(City.INVALID_NAME_MESSAGE);
+    public static final FeeResponse INVALID_VEHICLE_TYPE = error(VehicleType.INVALID_NAME_MESSAGE);
+    public static final FeeResponse INVALID_DATETIME = error(RequestDatetime.INVALID_FORMAT_MESSAGE);
+    public static final FeeResponse UNEXPECTED_ERROR = error("An unexpected error occurred!");
+
+    public static FeeResponse ok(long feeCents) {
+        return new FeeResponse(EuroCents.toEuros(feeCents), feeCents, "EUR", null);
+    }
+
+    public static FeeResponse error(String error) {
+        return new FeeResponse(null, null, null, error);
+    }
+}
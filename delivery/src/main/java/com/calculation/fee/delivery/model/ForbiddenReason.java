@@ -0,0 +1,25 @@
+package com.calculation.fee.delivery.model;
+
+/**
+ * Why the weather does not allow a vehicle type to be used
+ */
+public enum ForbiddenReason {
+    /**
+     * Wind speed of 20 m/s or more, for scooters and bikes
+     */
+    WIND_SPEED,
+    /**
+     * Glaze, hail or thunder, for scooters and bikes
+     */
+    PHENOMENON;
+
+    /**
+     * Builds the message shown to the client for the given vehicle type and observation
+     */
+    public String describe(VehicleType vehicleType, Weather weather) {
+        return switch (this) {
+            case WIND_SPEED -> "Usage of selected vehicle type is forbidden. Vehicle type: " + vehicleType.name() + " Wind speed: " + weather.getWindSpeed() + " m/s";
+            case PHENOMENON -> "Usage of selected vehicle type is forbidden. Vehicle type: " + vehicleType.name() + ". Phenomenon: " + weather.getWeatherPhenomenon();
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package com.calculation.fee.delivery.model;
+
+import lombok.Data;
+
+/**
+ * Orders expected per hour of one city and vehicle type, for a rule simulation. Values are kept as the raw strings
+ * sent by the client so that an invalid entry can be reported by its position.
+ */
+@Data
+public class OrderVolume {
+
+    private String city;
+
+    private String vehicleType;
+
+    /**
+     * Optional hour of the day, 0 to 23; the volume applies to every hour when missing
+     */
+    private Integer hour;
+
+    private long orders;
+}
@@ -0,0 +1,35 @@
+package com.calculation.fee.delivery.model;
+
+import java.util.Locale;
+
+/**
+ * What a weather phenomenon means for the fee: the Weather Phenomenon Extra Fee (WPEF) it adds, or that scooters and
+ * bikes may not be used. Glaze, hail and thunder take precedence over snow, sleet and rain; no phenomenon of the feed
+ * combines them.
+ */
+public enum PhenomenonClass {
+    NONE,
+    RAIN,
+    SNOW_OR_SLEET,
+    FORBIDDEN_FOR_TWO_WHEELERS;
+
+    /**
+     * Classifies the phenomenon text of an observation, e.g. "Light snow shower" or "Glaze"; null or blank is NONE
+     */
+    public static PhenomenonClass classify(String phenomenon) {
+        if (phenomenon == null || phenomenon.isBlank()) {
+            return NONE;
+        }
+        String phenomenonLower = phenomenon.toLowerCase(Locale.ROOT);
+        if (phenomenonLower.contains("glaze") || phenomenonLower.contains("hail") || phenomenonLower.contains("thunder")) {
+            return FORBIDDEN_FOR_TWO_WHEELERS;
+        }
+        if (phenomenonLower.contains("snow") || phenomenonLower.contains("sleet")) {
+            return SNOW_OR_SLEET;
+        }
+        if (phenomenonLower.contains("rain")) {
+            return RAIN;
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,20 @@
+package com.calculation.fee.delivery.model;
+
+import lombok.Data;
+
+/**
+ * A single item of a batch quote request. Values are kept as the raw strings sent by the client so that an invalid
+ * item can be reported on its own instead of failing the whole batch.
+ */
+@Data
+public class QuoteRequest {
+
+    private String city;
+
+    private String vehicleType;
+
+    /**
+     * Optional, format yyyy-MM-dd'T'HH:mm:ss; the latest weather is used when missing
+     */
+    private String datetime;
+}
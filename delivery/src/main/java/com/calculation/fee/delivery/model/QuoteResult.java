@@ -0,0 +1,36 @@
+package com.calculation.fee.delivery.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Result of a single quote in a batch or stream: either a fee in EUR, as a decimal amount and in cents, or an error with
+ * the reason
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record QuoteResult(QuoteStatus status, Double fee, Long feeCents, String currency, String error) {
+
+    public static final QuoteResult EMPTY_REQUEST = error(QuoteStatus.INVALID_INPUT, "Quote request is empty");
+    public static final QuoteResult MISSING_CITY = error(QuoteStatus.INVALID_INPUT, FeeResponse.MISSING_CITY.error());
+    public static final QuoteResult MISSING_VEHICLE_TYPE = error(QuoteStatus.INVALID_INPUT, FeeResponse.MISSING_VEHICLE_TYPE.error());
+    public static final QuoteResult INVALID_CITY = error(QuoteStatus.INVALID_INPUT, City.INVALID_NAME_MESSAGE);
+    public static final QuoteResult INVALID_VEHICLE_TYPE = error(QuoteStatus.INVALID_INPUT, VehicleType.INVALID_NAME_MESSAGE);
+    public static final QuoteResult INVALID_DATETIME = error(QuoteStatus.INVALID_INPUT, RequestDatetime.INVALID_FORMAT_MESSAGE);
+
+    public static QuoteResult ok(long feeCents) {
+        return new QuoteResult(QuoteStatus.OK, EuroCents.toEuros(feeCents), feeCents, "EUR", null);
+    }
+
+    public static QuoteResult error(QuoteStatus status, String error) {
+        return new QuoteResult(status, null, null, null, error);
+    }
+
+    /**
+     * Converts a calculated quote, reporting a forbidden vehicle type with its message
+     */
+    public static QuoteResult of(FeeQuote quote) {
+        if (quote.isForbidden()) {
+            return error(QuoteStatus.FORBIDDEN, quote.forbiddenMessage());
+        }
+        return ok(quote.feeCents());
+    }
+}
@@ -0,0 +1,11 @@
+package com.calculation.fee.delivery.model;
+
+/**
+ * Outcome of a single quote in a batch
+ */
+public enum QuoteStatus {
+    OK,
+    INVALID_INPUT,
+    FORBIDDEN,
+    NO_DATA
+}
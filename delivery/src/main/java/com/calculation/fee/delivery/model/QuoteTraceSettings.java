@@ -0,0 +1,28 @@
+package com.calculation.fee.delivery.model;
+
+import java.util.Set;
+
+/**
+ * Which fee quotes are written to the quote trace
+ *
+ * @param sampleRate   Share of all quotes that is traced, from 0 (none) to 1 (all)
+ * @param cities       Quotes for these cities are always traced
+ * @param vehicleTypes Quotes for these vehicle types are always traced
+ */
+public record QuoteTraceSettings(double sampleRate, Set<City> cities, Set<VehicleType> vehicleTypes) {
+
+    public QuoteTraceSettings {
+        if (Double.isNaN(sampleRate) || sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        cities = cities == null ? Set.of() : Set.copyOf(cities);
+        vehicleTypes = vehicleTypes == null ? Set.of() : Set.copyOf(vehicleTypes);
+    }
+
+    /**
+     * Returns true if no quote is traced
+     */
+    public boolean isOff() {
+        return sampleRate == 0 && cities.isEmpty() && vehicleTypes.isEmpty();
+    }
+}
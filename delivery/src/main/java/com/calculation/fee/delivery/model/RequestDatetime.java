@@ -0,0 +1,62 @@
+package com.calculation.fee.delivery.model;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Parser for the datetime request parameter, format yyyy-MM-dd'T'HH:mm:ss (e.g. 2025-03-22T10:00:00).
+ * <p>
+ * The format is fixed, so the fields are read straight from their character positions instead of going through a
+ * {@link java.time.format.DateTimeFormatter}; invalid input yields null rather than an exception. As with the smart
+ * resolver of {@code DateTimeFormatter.ofPattern}, a day past the end of the month (e.g. 2025-02-30) is moved to the
+ * last day of that month.
+ * </p>
+ */
+public final class RequestDatetime {
+
+    public static final String INVALID_FORMAT_MESSAGE = "Invalid datetime format. Use yyyy-MM-dd'T'HH:mm:ss (e.g., 2025-03-22T10:00:00)";
+
+    private static final int LENGTH = "yyyy-MM-ddTHH:mm:ss".length();
+
+    private RequestDatetime() {
+    }
+
+    /**
+     * Returns the parsed datetime, or null if the text is not a valid yyyy-MM-dd'T'HH:mm:ss datetime
+     */
+    public static LocalDateTime parse(String text) {
+        if (text == null || text.length() != LENGTH
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        int monthLength = Month.of(month).length(Year.isLeap(year));
+        return LocalDateTime.of(year, month, Math.min(day, monthLength), hour, minute, second);
+    }
+
+    /**
+     * Reads a non-negative decimal number, or returns -1 if a character is not a digit
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
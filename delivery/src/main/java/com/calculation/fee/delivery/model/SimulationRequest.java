@@ -0,0 +1,17 @@
+package com.calculation.fee.delivery.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A draft business rule to be priced against the weather history, with the order volume to weigh the fees by. The
+ * volumes of entries for the same city, vehicle type and hour add up.
+ */
+@Data
+public class SimulationRequest {
+
+    private BusinessRule rule;
+
+    private List<OrderVolume> orders;
+}
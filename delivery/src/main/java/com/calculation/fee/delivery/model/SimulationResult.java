@@ -0,0 +1,16 @@
+package com.calculation.fee.delivery.model;
+
+import java.util.List;
+
+/**
+ * Outcome of pricing a draft business rule against the weather history
+ *
+ * @param activeRuleId   The rule the draft is compared with
+ * @param observations   Observations read
+ * @param totals         Totals of all cities
+ * @param cities         Totals per city
+ * @param elapsedSeconds Time the simulation took
+ */
+public record SimulationResult(Long activeRuleId, long observations, SimulationTotals totals,
+                               List<SimulationTotals> cities, double elapsedSeconds) {
+}
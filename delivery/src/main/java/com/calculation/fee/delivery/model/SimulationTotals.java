@@ -0,0 +1,33 @@
+package com.calculation.fee.delivery.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Revenue of the order volume under the active and the draft business rule, for one city or all of them
+ *
+ * @param city                  The city, or null for the totals of all cities
+ * @param hours                 Hours of weather history priced; summed over the cities for the totals
+ * @param orders                Orders of the volume profile in those hours
+ * @param forbiddenOrders       Orders in hours in which their vehicle type could not be used; they earn nothing under
+ *                              either rule
+ * @param forbiddenVehicleHours Hours in which a vehicle type could not be used, counted once per vehicle type
+ * @param activeRevenue         Revenue under the active rule in euros
+ * @param activeRevenueCents    Revenue under the active rule in euro cents
+ * @param draftRevenue          Revenue under the draft rule in euros
+ * @param draftRevenueCents     Revenue under the draft rule in euro cents
+ * @param delta                 Draft minus active revenue in euros
+ * @param deltaCents            Draft minus active revenue in euro cents
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SimulationTotals(String city, long hours, long orders, long forbiddenOrders, long forbiddenVehicleHours,
+                               double activeRevenue, long activeRevenueCents, double draftRevenue,
+                               long draftRevenueCents, double delta, long deltaCents) {
+
+    public static SimulationTotals of(String city, long hours, long orders, long forbiddenOrders,
+                                      long forbiddenVehicleHours, long activeRevenueCents, long draftRevenueCents) {
+        long deltaCents = draftRevenueCents - activeRevenueCents;
+        return new SimulationTotals(city, hours, orders, forbiddenOrders, forbiddenVehicleHours,
+                EuroCents.toEuros(activeRevenueCents), activeRevenueCents, EuroCents.toEuros(draftRevenueCents),
+                draftRevenueCents, EuroCents.toEuros(deltaCents), deltaCents);
+    }
+}
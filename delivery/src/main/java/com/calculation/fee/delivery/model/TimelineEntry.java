@@ -0,0 +1,23 @@
+package com.calculation.fee.delivery.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+/**
+ * One interval of a fee timeline in which the weather observation and the business rule, and so the quote, stay the
+ * same
+ *
+ * @param from           Start of the interval, inclusive
+ * @param to             End of the interval, exclusive
+ * @param status         OK, FORBIDDEN or NO_DATA
+ * @param fee            The fee in EUR, set if OK
+ * @param feeCents       The fee in euro cents, set if OK
+ * @param error          Why the vehicle type is forbidden or no fee is available
+ * @param weatherId      Id of the observation in effect, null if there is none
+ * @param businessRuleId Id of the business rule in effect, null if there is none
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TimelineEntry(LocalDateTime from, LocalDateTime to, QuoteStatus status, Double fee, Long feeCents,
+                            String error, Long weatherId, Long businessRuleId) {
+}
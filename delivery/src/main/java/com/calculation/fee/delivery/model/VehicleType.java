@@ -7,11 +7,30 @@ public enum VehicleType {
     SCOOTER,
     BIKE;
 
+    public static final String INVALID_NAME_MESSAGE = "Vehicle type should be only of these: CAR, SCOOTER, BIKE";
+
+    private static final VehicleType[] VALUES = values();
+
     public static VehicleType fromString(String vehicleType) {
-        try {
-            return VehicleType.valueOf(vehicleType.toUpperCase());
-        } catch (IllegalArgumentException e) {
-            throw new InvalidVehicleType("Vehicle type should be only of these: CAR, SCOOTER, BIKE: " + e.getMessage());
+        VehicleType type = lookup(vehicleType);
+        if (type == null) {
+            throw new InvalidVehicleType(INVALID_NAME_MESSAGE + ": " + vehicleType);
+        }
+        return type;
+    }
+
+    /**
+     * Returns the vehicle type with the given name, ignoring case, or null if there is none; nothing is allocated
+     */
+    public static VehicleType lookup(String vehicleType) {
+        if (vehicleType == null) {
+            return null;
+        }
+        for (VehicleType type : VALUES) {
+            if (type.name().equalsIgnoreCase(vehicleType)) {
+                return type;
+            }
         }
+        return null;
     }
-}
\ No newline at end of file
+}
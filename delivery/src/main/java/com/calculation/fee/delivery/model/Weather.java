@@ -6,16 +6,24 @@ import jakarta.persistence.Id;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Column;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.SequenceGenerator;
 import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "weather_data")
+@Table(name = "weather_data", indexes = {
+        @Index(name = "idx_weather_data_station_timestamp", columnList = "station_name, timestamp DESC")
+})
 @Data
 public class Weather {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "weather_data_seq")
+    @SequenceGenerator(name = "weather_data_seq", sequenceName = "weather_data_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "station_name", nullable = false)
@@ -33,6 +41,29 @@ public class Weather {
     @Column(name = "weather_phenomenon")
     private String weatherPhenomenon;
 
+    /**
+     * Classification of {@link #weatherPhenomenon}, kept in step by {@link #setWeatherPhenomenon(String)}
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "phenomenon_class", length = 32)
+    private PhenomenonClass phenomenonClass = PhenomenonClass.NONE;
+
     @Column(name = "timestamp", nullable = false)
     private LocalDateTime timestamp;
+
+    public void setWeatherPhenomenon(String weatherPhenomenon) {
+        this.weatherPhenomenon = weatherPhenomenon;
+        this.phenomenonClass = PhenomenonClass.classify(weatherPhenomenon);
+    }
+
+    /**
+     * Rows stored before the phenomenon_class column existed are classified when loaded, until
+     * {@code WeatherPhenomenonBackfill} has filled the column
+     */
+    @PostLoad
+    void classifyLegacyRow() {
+        if (phenomenonClass == null) {
+            phenomenonClass = PhenomenonClass.classify(weatherPhenomenon);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,467 @@
+package com.calculation.fee.delivery.repository;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Optional append-only binary store of the weather history, read through memory-mapped files without hydrating JPA
+ * entities.
+ * <p>
+ * Enabled by setting {@code weather.history.store.directory}. Each station has a file of fixed-width records in
+ * ascending timestamp order: epoch second (UTC), air temperature and wind speed (NaN for none), the code of the
+ * weather phenomenon in the {@value #PHENOMENA_FILE} dictionary ({@value #NO_PHENOMENON} for none) and a CRC32C
+ * checksum of the other fields. "At or before" lookups are a binary search over the mapped file, and range scans hand
+ * each record's fields to an {@link ObservationVisitor}, so neither allocates per record.
+ * </p>
+ * <p>
+ * The database stays the source of truth. {@link #append(Collection)} is called by the weather import after the rows
+ * are committed, a new dictionary entry is forced to disk before any record that uses it, and records are forced
+ * before they become visible to readers. On open, a torn or corrupt tail left by a crash mid-append is truncated, and
+ * rows the database holds beyond the last stored record are appended again. Rows inserted before the last stored
+ * record, e.g. by a backfill, are added with {@link #rebuild(City, LocalDateTime)}.
+ * </p>
+ */
+@Repository
+@Slf4j
+public class WeatherHistoryStore {
+
+    static final int RECORD_BYTES = 32;
+    static final int NO_PHENOMENON = -1;
+    static final String PHENOMENA_FILE = "phenomena.txt";
+
+    private static final int CHECKSUMMED_BYTES = RECORD_BYTES - Integer.BYTES;
+    private static final int CATCH_UP_PAGE = 1000;
+    private static final String REBUILD_SUFFIX = ".rebuild";
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1, 1, 1, 0, 0);
+
+    private final WeatherRepository weatherRepository;
+    private final Path directory;
+    private final Map<City, StationFile> stations = new EnumMap<>(City.class);
+    private final List<String> phenomena = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> phenomenonCodes = new HashMap<>();
+    private FileChannel phenomenaChannel;
+
+    public WeatherHistoryStore(WeatherRepository weatherRepository,
+                               @Value("${weather.history.store.directory:#{null}}") Path directory) {
+        this.weatherRepository = weatherRepository;
+        this.directory = directory;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Opens the files of the store, recovers them after a crash and appends the rows that are missing from them
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        openPhenomena(directory.resolve(PHENOMENA_FILE));
+        for (City city : City.values()) {
+            Files.deleteIfExists(rebuildPath(city));
+            StationFile file = StationFile.open(stationPath(city));
+            stations.put(city, file);
+            int appended = catchUp(city, file);
+            log.info("Opened weather history store for {} with {} records, {} appended from the database",
+                    city.getStationName(), file.mapping.count(), appended);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (StationFile file : stations.values()) {
+            file.channel.close();
+        }
+        stations.clear();
+        if (phenomenaChannel != null) {
+            phenomenaChannel.close();
+        }
+    }
+
+    /**
+     * Appends persisted observations; rows that are not newer than the last stored record of their station are skipped.
+     * A failed write is logged and the rows are appended again from the database on the next open.
+     */
+    public synchronized void append(Collection<Weather> observations) {
+        if (directory == null || observations.isEmpty()) {
+            return;
+        }
+        Map<City, List<Weather>> byCity = new EnumMap<>(City.class);
+        for (Weather weather : observations) {
+            City city = City.fromStationName(weather.getStationName());
+            if (city != null) {
+                byCity.computeIfAbsent(city, c -> new ArrayList<>()).add(weather);
+            }
+        }
+        byCity.forEach((city, rows) -> {
+            try {
+                write(stations.get(city), rows);
+            } catch (IOException e) {
+                log.error("Could not append {} observations of {} to the weather history store: {}",
+                        rows.size(), city.getStationName(), e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Rewrites the city's records from the datetime on with the rows the database holds, for rows that were inserted
+     * before the last stored record. The records before the datetime are copied into a new file, the rest is read from
+     * the database, and the new file then replaces the old one; readers keep the old mapping until the swap. A failed
+     * rebuild is logged and leaves the old file in place.
+     */
+    public synchronized void rebuild(City city, LocalDateTime from) {
+        if (directory == null) {
+            return;
+        }
+        StationFile file = stations.get(city);
+        Path rebuilt = rebuildPath(city);
+        try {
+            Mapping mapping = file.mapping;
+            int kept = floorIndex(mapping, from.toEpochSecond(ZoneOffset.UTC) - 1) + 1;
+            try (FileChannel channel = FileChannel.open(rebuilt, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                writeFully(channel, mapping.buffer().slice(0, kept * RECORD_BYTES), 0);
+                channel.force(false);
+            }
+            StationFile replacement = StationFile.open(rebuilt);
+            int appended;
+            try {
+                appended = catchUp(city, replacement);
+                Files.move(rebuilt, stationPath(city), ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (IOException e) {
+                replacement.channel.close();
+                throw e;
+            }
+            file.replaceWith(replacement);
+            log.info("Rebuilt weather history store for {} from {}: {} records kept, {} read from the database",
+                    city.getStationName(), from, kept, appended);
+        } catch (IOException e) {
+            log.error("Could not rebuild the weather history store of {} from {}: {}",
+                    city.getStationName(), from, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Passes the fields of the city's record at or before the datetime to the visitor
+     *
+     * @return False if the city has no record at or before the datetime
+     */
+    public boolean atOrBefore(City city, LocalDateTime datetime, ObservationVisitor visitor) {
+        Mapping mapping = mapping(city);
+        int index = floorIndex(mapping, datetime.toEpochSecond(ZoneOffset.UTC));
+        if (index < 0) {
+            return false;
+        }
+        visit(mapping.buffer(), index, visitor);
+        return true;
+    }
+
+    /**
+     * Passes the fields of the city's records from {@code from} inclusive to {@code to} exclusive to the visitor, oldest
+     * first
+     *
+     * @return The number of visited records
+     */
+    public int scan(City city, LocalDateTime from, LocalDateTime to, ObservationVisitor visitor) {
+        Mapping mapping = mapping(city);
+        int first = floorIndex(mapping, from.toEpochSecond(ZoneOffset.UTC) - 1) + 1;
+        int end = floorIndex(mapping, to.toEpochSecond(ZoneOffset.UTC) - 1) + 1;
+        for (int index = first; index < end; index++) {
+            visit(mapping.buffer(), index, visitor);
+        }
+        return Math.max(0, end - first);
+    }
+
+    /**
+     * Returns the number of records stored for the city
+     */
+    public int count(City city) {
+        return mapping(city).count();
+    }
+
+    /**
+     * Returns the phenomenon text of a code passed to an {@link ObservationVisitor}, or null for {@value #NO_PHENOMENON}
+     */
+    public String phenomenon(int code) {
+        return code == NO_PHENOMENON ? null : phenomena.get(code);
+    }
+
+    private Path stationPath(City city) {
+        return directory.resolve(city.name() + ".obs");
+    }
+
+    private Path rebuildPath(City city) {
+        return directory.resolve(city.name() + ".obs" + REBUILD_SUFFIX);
+    }
+
+    private Mapping mapping(City city) {
+        StationFile file = stations.get(city);
+        if (file == null) {
+            throw new IllegalStateException("Weather history store is not enabled");
+        }
+        return file.mapping;
+    }
+
+    private int catchUp(City city, StationFile file) throws IOException {
+        Mapping mapping = file.mapping;
+        LocalDateTime after = mapping.count() == 0
+                ? BEGINNING
+                : LocalDateTime.ofEpochSecond(epochSecond(mapping.buffer(), mapping.count() - 1), 0, ZoneOffset.UTC);
+        // Records carry no id, so the first page starts after every row with the timestamp of the last record
+        long afterId = Long.MAX_VALUE;
+        LocalDateTime before = LocalDateTime.now(ZoneOffset.UTC).plusDays(1);
+        int appended = 0;
+        List<Weather> rows;
+        do {
+            rows = weatherRepository.getWeatherForStationPageAfterRow(city.getStationName(), after, afterId, before,
+                    PageRequest.ofSize(CATCH_UP_PAGE));
+            if (!rows.isEmpty()) {
+                appended += write(file, rows);
+                Weather last = rows.get(rows.size() - 1);
+                after = last.getTimestamp();
+                afterId = last.getId();
+            }
+        } while (rows.size() == CATCH_UP_PAGE);
+        return appended;
+    }
+
+    private int write(StationFile file, List<Weather> rows) throws IOException {
+        Mapping mapping = file.mapping;
+        long last = mapping.count() == 0 ? Long.MIN_VALUE : epochSecond(mapping.buffer(), mapping.count() - 1);
+        ByteBuffer records = ByteBuffer.allocate(rows.size() * RECORD_BYTES);
+        for (Weather weather : rows) {
+            long epochSecond = weather.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            if (epochSecond <= last) {
+                continue;
+            }
+            int start = records.position();
+            records.putLong(epochSecond)
+                    .putDouble(orNaN(weather.getAirTemperature()))
+                    .putDouble(orNaN(weather.getWindSpeed()))
+                    .putInt(phenomenonCode(weather.getWeatherPhenomenon()))
+                    .putInt(checksum(records, start));
+            last = epochSecond;
+        }
+        records.flip();
+        file.append(records);
+        return records.limit() / RECORD_BYTES;
+    }
+
+    private int phenomenonCode(String phenomenon) throws IOException {
+        if (phenomenon == null || phenomenon.isBlank()) {
+            return NO_PHENOMENON;
+        }
+        Integer code = phenomenonCodes.get(phenomenon);
+        if (code != null) {
+            return code;
+        }
+        ByteBuffer line = StandardCharsets.UTF_8.encode(phenomenon.replace('\n', ' ') + "\n");
+        long committed = phenomenaChannel.size();
+        try {
+            writeFully(phenomenaChannel, line, committed);
+            phenomenaChannel.force(false);
+        } catch (IOException e) {
+            phenomenaChannel.truncate(committed);
+            throw e;
+        }
+        code = phenomena.size();
+        phenomena.add(phenomenon);
+        phenomenonCodes.put(phenomenon, code);
+        return code;
+    }
+
+    /**
+     * Loads the phenomenon dictionary, dropping a last line that was not completely written
+     */
+    private void openPhenomena(Path path) throws IOException {
+        phenomenaChannel = FileChannel.open(path, CREATE, READ, WRITE);
+        byte[] bytes = Files.readAllBytes(path);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            log.warn("Truncating incomplete phenomenon entry of {} bytes in {}", bytes.length - end, path);
+            phenomenaChannel.truncate(end);
+            phenomenaChannel.force(true);
+        }
+        phenomena.clear();
+        phenomenonCodes.clear();
+        String[] lines = new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n", -1);
+        for (int code = 0; code < lines.length - 1; code++) {
+            phenomena.add(lines[code]);
+            phenomenonCodes.put(lines[code], code);
+        }
+    }
+
+    /**
+     * Index of the last record with an epoch second at or before the given one, or -1
+     */
+    private static int floorIndex(Mapping mapping, long epochSecond) {
+        int low = 0;
+        int high = mapping.count() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (epochSecond(mapping.buffer(), mid) <= epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static void visit(ByteBuffer buffer, int index, ObservationVisitor visitor) {
+        int offset = index * RECORD_BYTES;
+        visitor.visit(buffer.getLong(offset), buffer.getDouble(offset + 8), buffer.getDouble(offset + 16),
+                buffer.getInt(offset + 24));
+    }
+
+    private static long epochSecond(ByteBuffer buffer, int index) {
+        return buffer.getLong(index * RECORD_BYTES);
+    }
+
+    private static double orNaN(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static int checksum(ByteBuffer records, int start) {
+        CRC32C crc = new CRC32C();
+        crc.update(records.slice(start, CHECKSUMMED_BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Receives the fields of one stored record; a missing temperature or wind speed is NaN
+     */
+    @FunctionalInterface
+    public interface ObservationVisitor {
+
+        void visit(long epochSecond, double airTemperature, double windSpeed, int phenomenonCode);
+    }
+
+    /**
+     * Read-only mapping of the first {@code count} records of a station file
+     */
+    private record Mapping(MappedByteBuffer buffer, int count) {
+    }
+
+    /**
+     * The records of one station. Readers use the published {@link #mapping}; appends write past its end, force the
+     * file and then publish a new mapping that covers the new records.
+     */
+    private static final class StationFile {
+
+        private FileChannel channel;
+        private volatile Mapping mapping;
+
+        private StationFile(FileChannel channel, Mapping mapping) {
+            this.channel = channel;
+            this.mapping = mapping;
+        }
+
+        /**
+         * Opens the file and truncates it after the last record whose checksum matches and whose timestamp follows
+         * the one before it
+         */
+        private static StationFile open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE);
+            long size = channel.size();
+            if (size / RECORD_BYTES > Integer.MAX_VALUE / RECORD_BYTES) {
+                throw new IOException("Weather history file " + path + " exceeds the mappable size");
+            }
+            MappedByteBuffer all = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int count = 0;
+            long previous = Long.MIN_VALUE;
+            while ((long) (count + 1) * RECORD_BYTES <= size) {
+                int offset = count * RECORD_BYTES;
+                long epochSecond = all.getLong(offset);
+                if (epochSecond <= previous || checksum(all, offset) != all.getInt(offset + CHECKSUMMED_BYTES)) {
+                    break;
+                }
+                previous = epochSecond;
+                count++;
+            }
+            long valid = (long) count * RECORD_BYTES;
+            if (valid < size) {
+                log.warn("Truncating {} bytes of incomplete or corrupt records in {}", size - valid, path);
+                channel.truncate(valid);
+                channel.force(true);
+            }
+            return new StationFile(channel, map(channel, count));
+        }
+
+        private void append(ByteBuffer records) throws IOException {
+            if (!records.hasRemaining()) {
+                return;
+            }
+            Mapping current = mapping;
+            long committed = (long) current.count() * RECORD_BYTES;
+            int count = current.count() + records.remaining() / RECORD_BYTES;
+            try {
+                writeFully(channel, records, committed);
+                channel.force(false);
+            } catch (IOException e) {
+                channel.truncate(committed);
+                throw e;
+            }
+            mapping = map(channel, count);
+        }
+
+        /**
+         * Takes over the channel and mapping of a rebuilt file and closes the old channel; mappings already handed
+         * to readers stay valid
+         */
+        private void replaceWith(StationFile rebuilt) throws IOException {
+            FileChannel old = channel;
+            channel = rebuilt.channel;
+            mapping = rebuilt.mapping;
+            old.close();
+        }
+
+        private static Mapping map(FileChannel channel, int count) throws IOException {
+            return new Mapping(channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * RECORD_BYTES), count);
+        }
+    }
+}
@@ -1,18 +1,101 @@
 package com.calculation.fee.delivery.repository;
 
+import com.calculation.fee.delivery.model.PhenomenonClass;
 import com.calculation.fee.delivery.model.Weather;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WeatherRepository extends JpaRepository<Weather, Long> {
-    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName ORDER BY w.timestamp DESC LIMIT 1")
+
+    /*
+     * The queries order by station name as well as timestamp, even though the station is fixed by the filter, so that
+     * the order matches idx_weather_data_station_timestamp (station_name, timestamp DESC) and the database reads the
+     * index instead of sorting every observation of the station. Latest-first lookups then stop after one index entry;
+     * the oldest-first queries walk the same index backwards.
+     */
+
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName ORDER BY w.stationName, w.timestamp DESC LIMIT 1")
     Optional<Weather> getLatestWeatherForStation(String stationName);
 
-    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName AND w.timestamp <= :datetime ORDER BY w.timestamp DESC LIMIT 1")
+    /**
+     * Retrieves the first observation of a station
+     */
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName ORDER BY w.stationName DESC, w.timestamp LIMIT 1")
+    Optional<Weather> getOldestWeatherForStation(String stationName);
+
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName AND w.timestamp <= :datetime ORDER BY w.stationName, w.timestamp DESC LIMIT 1")
     Optional<Weather> getWeatherForStationAtOrBefore(String stationName, LocalDateTime datetime);
+
+    /**
+     * Retrieves the first observation of a station with a timestamp after {@code datetime}
+     */
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName AND w.timestamp > :datetime ORDER BY w.stationName DESC, w.timestamp LIMIT 1")
+    Optional<Weather> getWeatherForStationAfter(String stationName, LocalDateTime datetime);
+
+    /**
+     * Retrieves all observations of a station, oldest first
+     */
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName ORDER BY w.stationName DESC, w.timestamp")
+    List<Weather> getWeatherForStation(String stationName);
+
+    /**
+     * Retrieves the observations of a station with a timestamp at or after {@code from}, oldest first
+     */
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName AND w.timestamp >= :from ORDER BY w.stationName DESC, w.timestamp")
+    List<Weather> getWeatherForStationSince(String stationName, LocalDateTime from);
+
+    /**
+     * Retrieves the observations of a station with a timestamp after {@code from} and at or before {@code to}, oldest first
+     */
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName AND w.timestamp > :from AND w.timestamp <= :to ORDER BY w.stationName DESC, w.timestamp")
+    List<Weather> getWeatherForStationBetween(String stationName, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Retrieves the timestamps of the observations of a station from {@code from} to {@code to} inclusive
+     */
+    @Query("SELECT w.timestamp FROM Weather w WHERE w.stationName = :stationName AND w.timestamp >= :from AND w.timestamp <= :to")
+    List<LocalDateTime> getTimestampsForStationBetween(String stationName, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Retrieves a page of the observations of a station that come after the row ({@code after}, {@code afterId}) and
+     * have a timestamp before {@code before}, ordered by timestamp and id; the next page starts after the timestamp and
+     * id of the last row, so rows that share a timestamp across a page boundary are not skipped
+     */
+    @Query("SELECT w FROM Weather w WHERE w.stationName = :stationName AND (w.timestamp > :after OR (w.timestamp = :after AND w.id > :afterId)) AND w.timestamp < :before ORDER BY w.stationName DESC, w.timestamp, w.id")
+    List<Weather> getWeatherForStationPageAfterRow(String stationName, LocalDateTime after, Long afterId, LocalDateTime before, Pageable page);
+
+    /**
+     * Retrieves the distinct phenomena of rows that have not been classified yet; may contain null
+     */
+    @Query("SELECT DISTINCT w.weatherPhenomenon FROM Weather w WHERE w.phenomenonClass IS NULL")
+    List<String> getUnclassifiedPhenomena();
+
+    /**
+     * Sets the classification of all unclassified rows with the given phenomenon
+     *
+     * @return The number of updated rows
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Weather w SET w.phenomenonClass = :phenomenonClass WHERE w.phenomenonClass IS NULL AND w.weatherPhenomenon = :phenomenon")
+    int classifyPhenomenon(String phenomenon, PhenomenonClass phenomenonClass);
+
+    /**
+     * Sets the classification of all unclassified rows without a phenomenon
+     *
+     * @return The number of updated rows
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Weather w SET w.phenomenonClass = :phenomenonClass WHERE w.phenomenonClass IS NULL AND w.weatherPhenomenon IS NULL")
+    int classifyMissingPhenomenon(PhenomenonClass phenomenonClass);
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.QuoteRequest;
+import com.calculation.fee.delivery.model.QuoteResult;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.RequestDatetime;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.service.DeliveryFee.HistoricalObservation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Prices many (city, vehicle type, datetime) combinations in one call.
+ * <p>
+ * Items without a datetime are served from the current {@link FeeTable}. Historical items are grouped per station.
+ * Datetimes outside the in-memory window of the {@link WeatherHistoryIndex} are first looked up in the
+ * {@link HistoricalQuoteCache} without loading, and the remaining ones are resolved together by the index, which needs
+ * at most two queries per cluster of them. Rules are resolved from the {@link BusinessRuleCache}, and the fee is
+ * evaluated once per distinct weather row, rule and vehicle type no matter how many items resolve to it. Each
+ * evaluation is timed and traced like a single historical quote.
+ * </p>
+ * <p>
+ * When historical items span more than one station, the per-station lookups run concurrently on the application task
+ * executor, which uses virtual threads with {@code spring.threads.virtual.enabled}.
+ * </p>
+ */
+@Service
+@Slf4j
+public class BatchDeliveryFee {
+
+    private final DeliveryFee deliveryFee;
+    private final BusinessRuleCache businessRuleCache;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final HistoricalQuoteCache historicalQuoteCache;
+    private final Executor lookupExecutor;
+
+    public BatchDeliveryFee(DeliveryFee deliveryFee, BusinessRuleCache businessRuleCache, WeatherHistoryIndex weatherHistoryIndex,
+                            HistoricalQuoteCache historicalQuoteCache,
+                            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor lookupExecutor) {
+        this.deliveryFee = deliveryFee;
+        this.businessRuleCache = businessRuleCache;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.historicalQuoteCache = historicalQuoteCache;
+        this.lookupExecutor = lookupExecutor;
+    }
+
+    /**
+     * Calculates the fee of every item
+     *
+     * @param requests The items to price
+     * @return One result per item, in the same order as the requests
+     */
+    public List<QuoteResult> calculateDeliveryFees(List<QuoteRequest> requests) {
+        int size = requests.size();
+        QuoteResult[] results = new QuoteResult[size];
+        City[] cities = new City[size];
+        VehicleType[] vehicleTypes = new VehicleType[size];
+        LocalDateTime[] datetimes = new LocalDateTime[size];
+        Map<City, NavigableSet<LocalDateTime>> historicalDatetimes = new EnumMap<>(City.class);
+        FeeTable feeTable = null;
+
+        for (int i = 0; i < size; i++) {
+            QuoteRequest request = requests.get(i);
+            results[i] = decode(request, i, cities, vehicleTypes, datetimes);
+            if (results[i] != null) {
+                continue;
+            }
+            if (datetimes[i] == null) {
+                if (feeTable == null) {
+                    feeTable = deliveryFee.currentFeeTable();
+                }
+                results[i] = lookup(feeTable, cities[i], vehicleTypes[i]);
+            } else {
+                historicalDatetimes.computeIfAbsent(cities[i], city -> new TreeSet<>()).add(datetimes[i]);
+            }
+        }
+
+        if (!historicalDatetimes.isEmpty()) {
+            BusinessRuleSnapshot rules = businessRuleCache.current();
+            Map<City, Map<LocalDateTime, HistoricalObservation>> observationsByCity = resolveObservations(historicalDatetimes);
+
+            Map<FeeKey, QuoteResult> evaluated = new HashMap<>();
+            int historicalCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (results[i] == null) {
+                    results[i] = resolveHistorical(cities[i], vehicleTypes[i], observationsByCity.get(cities[i]).get(datetimes[i]), rules, evaluated);
+                    historicalCount++;
+                }
+            }
+            log.debug("Priced {} historical quotes with {} distinct fee evaluations", historicalCount, evaluated.size());
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Resolves the observations of every station with historical items. A lookup outside the index window queries the
+     * database, so with several stations the lookups are started together and joined.
+     */
+    private Map<City, Map<LocalDateTime, HistoricalObservation>> resolveObservations(Map<City, NavigableSet<LocalDateTime>> historicalDatetimes) {
+        Map<City, Map<LocalDateTime, HistoricalObservation>> observationsByCity = new EnumMap<>(City.class);
+        if (historicalDatetimes.size() == 1) {
+            historicalDatetimes.forEach((city, cityDatetimes) -> observationsByCity.put(city, resolveObservations(city, cityDatetimes)));
+            return observationsByCity;
+        }
+        Map<City, CompletableFuture<Map<LocalDateTime, HistoricalObservation>>> lookups = new EnumMap<>(City.class);
+        historicalDatetimes.forEach((city, cityDatetimes) -> lookups.put(city,
+                CompletableFuture.supplyAsync(() -> resolveObservations(city, cityDatetimes), lookupExecutor)));
+        lookups.forEach((city, lookup) -> observationsByCity.put(city, lookup.join()));
+        return observationsByCity;
+    }
+
+    /**
+     * Takes the datetimes outside the index window that the {@link HistoricalQuoteCache} already holds from it, and
+     * resolves the rest with the index. Rows the index reads are not added to the cache, since a cluster query does not
+     * tell where the interval of its last row ends.
+     */
+    private Map<LocalDateTime, HistoricalObservation> resolveObservations(City city, NavigableSet<LocalDateTime> cityDatetimes) {
+        Map<LocalDateTime, HistoricalObservation> observations = new HashMap<>();
+        NavigableSet<LocalDateTime> uncached = new TreeSet<>();
+        for (LocalDateTime datetime : cityDatetimes) {
+            HistoricalQuoteCache.Entry cached = weatherHistoryIndex.isInMemory(city, datetime)
+                    ? null
+                    : historicalQuoteCache.cached(city, datetime);
+            if (cached != null) {
+                observations.put(datetime, new HistoricalObservation(datetime, cached.weather(), cached));
+            } else {
+                uncached.add(datetime);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            Map<LocalDateTime, Weather> weatherRows = weatherHistoryIndex.atOrBefore(city, uncached);
+            for (LocalDateTime datetime : uncached) {
+                observations.put(datetime, new HistoricalObservation(datetime, weatherRows.get(datetime), null));
+            }
+        }
+        return observations;
+    }
+
+    private QuoteResult decode(QuoteRequest request, int i, City[] cities, VehicleType[] vehicleTypes, LocalDateTime[] datetimes) {
+        if (request == null) {
+            return QuoteResult.EMPTY_REQUEST;
+        }
+        if (request.getCity() == null || request.getCity().isBlank()) {
+            return QuoteResult.MISSING_CITY;
+        }
+        if (request.getVehicleType() == null || request.getVehicleType().isBlank()) {
+            return QuoteResult.MISSING_VEHICLE_TYPE;
+        }
+        cities[i] = City.lookup(request.getCity());
+        if (cities[i] == null) {
+            return QuoteResult.INVALID_CITY;
+        }
+        vehicleTypes[i] = VehicleType.lookup(request.getVehicleType());
+        if (vehicleTypes[i] == null) {
+            return QuoteResult.INVALID_VEHICLE_TYPE;
+        }
+        String datetime = request.getDatetime();
+        if (datetime != null && !datetime.isBlank()) {
+            datetimes[i] = RequestDatetime.parse(datetime);
+            if (datetimes[i] == null) {
+                return QuoteResult.INVALID_DATETIME;
+            }
+        }
+        return null;
+    }
+
+    private QuoteResult lookup(FeeTable feeTable, City city, VehicleType vehicleType) {
+        try {
+            return QuoteResult.of(feeTable.quote(city, vehicleType));
+        } catch (IllegalStateException e) {
+            return QuoteResult.error(QuoteStatus.NO_DATA, e.getMessage());
+        }
+    }
+
+    private QuoteResult resolveHistorical(City city, VehicleType vehicleType, HistoricalObservation observation,
+                                          BusinessRuleSnapshot rules, Map<FeeKey, QuoteResult> evaluated) {
+        LocalDateTime datetime = observation.datetime();
+        Weather weather = observation.weather();
+        if (weather == null) {
+            return QuoteResult.error(QuoteStatus.NO_DATA, "No weather data available for " + city.getStationName() + " at or before " + datetime);
+        }
+        BusinessRule businessRule = rules.activeAt(datetime);
+        if (businessRule == null) {
+            return QuoteResult.error(QuoteStatus.NO_DATA, "No business rules available at or before " + datetime);
+        }
+        return evaluated.computeIfAbsent(new FeeKey(weather.getId(), businessRule.getId(), vehicleType),
+                key -> QuoteResult.of(deliveryFee.quoteHistorical(city, vehicleType, observation, businessRule)));
+    }
+
+    private record FeeKey(Long weatherId, Long ruleId, VehicleType vehicleType) {
+    }
+}
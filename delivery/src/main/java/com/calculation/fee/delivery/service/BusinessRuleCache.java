@@ -0,0 +1,63 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Holds the business rules in memory so that fee quotes can read the active rule without a database query.
+ * <p>
+ * Every write through {@link com.calculation.fee.delivery.controller.BusinessRuleController} calls {@link #reload()}
+ * before returning, which bumps the version and swaps in a new {@link BusinessRuleSnapshot}. Reloads are serialized,
+ * so versions are strictly increasing and a later write always wins; readers only perform a volatile read. Every new
+ * snapshot is also handed to the {@link FeeTableCache}.
+ * </p>
+ */
+@Service
+@DependsOn("businessRuleCentsMigration")
+@Slf4j
+public class BusinessRuleCache {
+
+    private static final Sort BY_TIMESTAMP = Sort.by(Sort.Direction.ASC, "timestamp");
+
+    private final BusinessRuleRepository businessRuleRepository;
+    private final FeeTableCache feeTableCache;
+    private volatile BusinessRuleSnapshot snapshot = BusinessRuleSnapshot.EMPTY;
+
+    public BusinessRuleCache(BusinessRuleRepository businessRuleRepository, FeeTableCache feeTableCache) {
+        this.businessRuleRepository = businessRuleRepository;
+        this.feeTableCache = feeTableCache;
+    }
+
+    /**
+     * Returns the rule with the latest timestamp, or null if no rules exist
+     */
+    public BusinessRule getActiveRule() {
+        return snapshot.active();
+    }
+
+    /**
+     * Returns the currently published snapshot
+     */
+    public BusinessRuleSnapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Reads all rules from the database and publishes them as a new snapshot with the next version
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        List<BusinessRule> history = businessRuleRepository.findAll(BY_TIMESTAMP);
+        BusinessRuleSnapshot reloaded = BusinessRuleSnapshot.of(snapshot.version() + 1, history);
+        snapshot = reloaded;
+        feeTableCache.publish(reloaded);
+        log.info("Loaded {} business rules, snapshot version {}", history.size(), reloaded.version());
+    }
+}
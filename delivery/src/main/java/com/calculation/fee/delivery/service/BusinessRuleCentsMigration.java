@@ -0,0 +1,60 @@
+package com.calculation.fee.delivery.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves business rule fees stored as decimal euros into the cent columns of {@link com.calculation.fee.delivery.model.BusinessRule}.
+ * <p>
+ * Rules written before fees were held in cents have a {@code double} column per fee. Hibernate adds the new
+ * {@code *_cents} columns with a default of 0; this migration then copies each legacy column, rounded to the nearest
+ * cent, into its cent column and drops the legacy column, so it does nothing once a database has been migrated.
+ * </p>
+ */
+@Service
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class BusinessRuleCentsMigration {
+
+    static final List<String> FEE_COLUMNS = List.of(
+            "tallinn_car_base_fee", "tallinn_scooter_base_fee", "tallinn_bike_base_fee",
+            "tartu_car_base_fee", "tartu_scooter_base_fee", "tartu_bike_base_fee",
+            "parnu_car_base_fee", "parnu_scooter_base_fee", "parnu_bike_base_fee",
+            "atef_below_minus_ten", "atef_below_zero", "wsef_fee", "wpef_snow_or_sleet", "wpef_rain");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BusinessRuleCentsMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Converts every legacy euro column that still exists
+     */
+    @PostConstruct
+    public void migrate() {
+        Set<String> columns = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT LOWER(column_name) FROM information_schema.columns WHERE LOWER(table_name) = 'business_rules'",
+                String.class));
+        int migrated = 0;
+        for (String column : FEE_COLUMNS) {
+            if (!columns.contains(column)) {
+                continue;
+            }
+            jdbcTemplate.update("UPDATE business_rules SET " + column + "_cents = ROUND(" + column + " * 100) WHERE "
+                    + column + " IS NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE business_rules DROP COLUMN " + column);
+            migrated++;
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} business rule fee columns from euros to cents", migrated);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of the business rules.
+ * <p>
+ * The version, the active rule and the timestamp-ordered history always belong to the same database state,
+ * so a reader holding a snapshot can never combine a rule with the version of another write. The contained
+ * entities are shared with other readers and must not be modified.
+ * </p>
+ *
+ * @param version Monotonically increasing number, bumped on every reload
+ * @param active  The rule with the latest timestamp, or null if there are no rules
+ * @param history All rules ordered by timestamp, oldest first
+ */
+public record BusinessRuleSnapshot(long version, BusinessRule active, List<BusinessRule> history) {
+
+    static final BusinessRuleSnapshot EMPTY = new BusinessRuleSnapshot(0, null, List.of());
+
+    static BusinessRuleSnapshot of(long version, List<BusinessRule> history) {
+        BusinessRule active = history.isEmpty() ? null : history.get(history.size() - 1);
+        return new BusinessRuleSnapshot(version, active, List.copyOf(history));
+    }
+
+    /**
+     * Returns the rule that was valid at the given datetime, i.e. the latest rule with a timestamp at or before it,
+     * or null if there is none. Rules without a timestamp sort first and never match.
+     */
+    public BusinessRule activeAt(LocalDateTime datetime) {
+        BusinessRule found = null;
+        int low = 0;
+        int high = history.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            BusinessRule rule = history.get(mid);
+            LocalDateTime timestamp = rule.getTimestamp();
+            if (timestamp == null || !timestamp.isAfter(datetime)) {
+                if (timestamp != null) {
+                    found = rule;
+                }
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+}
@@ -3,10 +3,11 @@ package com.calculation.fee.delivery.service;
 import com.calculation.fee.delivery.exception.UsageForbiddenException;
 import com.calculation.fee.delivery.model.BusinessRule;
 import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.ForbiddenReason;
+import com.calculation.fee.delivery.model.PhenomenonClass;
 import com.calculation.fee.delivery.model.VehicleType;
 import com.calculation.fee.delivery.model.Weather;
-import com.calculation.fee.delivery.repository.BusinessRuleRepository;
-import com.calculation.fee.delivery.repository.WeatherRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -19,17 +20,34 @@ import java.time.LocalDateTime;
 @Slf4j
 public class DeliveryFee {
 
-    private final WeatherRepository weatherRepository;
-    private final BusinessRuleRepository businessRuleRepository;
+    private final FeeTableCache feeTableCache;
+    private final BusinessRuleCache businessRuleCache;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final HistoricalQuoteCache historicalQuoteCache;
+    private final QuoteTracer quoteTracer;
+    private final FeeMetrics feeMetrics;
 
-    public DeliveryFee(WeatherRepository weatherRepository, BusinessRuleRepository businessRuleRepository) {
-        this.weatherRepository = weatherRepository;
-        this.businessRuleRepository = businessRuleRepository;
+    public DeliveryFee(FeeTableCache feeTableCache, BusinessRuleCache businessRuleCache,
+                       WeatherHistoryIndex weatherHistoryIndex, HistoricalQuoteCache historicalQuoteCache,
+                       QuoteTracer quoteTracer, FeeMetrics feeMetrics) {
+        this.feeTableCache = feeTableCache;
+        this.businessRuleCache = businessRuleCache;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.historicalQuoteCache = historicalQuoteCache;
+        this.quoteTracer = quoteTracer;
+        this.feeMetrics = feeMetrics;
     }
 
     /**
      * Calculates the total delivery fee for a given city and vehicle type, considering weather conditions
-     * and business rules for latest timestapm
+     * and business rules for latest timestapm. This is an adapter over {@link #quote} that throws for a forbidden
+     * vehicle type; callers that expect forbidden results often should use {@link #quote} directly.
+     * <p>
+     * Without a datetime the fee is looked up in the {@link FeeTable} that the {@link FeeTableCache} compiled from the
+     * in-memory {@link LatestWeatherCache} and {@link BusinessRuleCache} when they were published; with a datetime the
+     * historical observation is resolved by the {@link WeatherHistoryIndex}, or by the {@link HistoricalQuoteCache} when
+     * it lies outside the index window, and the rule by the timestamp-ordered history of the {@link BusinessRuleSnapshot}.
+     * </p>
      * <p>
      * The total fee is calculated as the sum of:
      * - Regional Base Fee (RBF): Base fee for the city and vehicle type
@@ -41,7 +59,7 @@ public class DeliveryFee {
      * @param city The cities are TALLINN, TARTU or PARNU
      * @param vehicleType The type of vehicle used are CAR, SCOOTER or BIKE
      * @param datetime
-     * @return The total delivery fee
+     * @return The total delivery fee in euro cents
      * @throws IllegalStateException If no weather data or business rules are available for the specified city or datetime
      * @throws UsageForbiddenException If the weather conditions does not allow the use of the selected vehicle type
      * @see City
@@ -51,7 +69,8 @@ public class DeliveryFee {
      *
      * <p><b>Example Usage:</b></p>
      * <pre>
-     * DeliveryFee deliveryFee = new DeliveryFee(weatherRepository, businessRuleRepository);
+     * DeliveryFee deliveryFee = new DeliveryFee(feeTableCache, businessRuleCache, weatherHistoryIndex, historicalQuoteCache,
+     *         quoteTracer, feeMetrics);
      * <p>
      * City city = City.TALLINN;
      * <p>
@@ -59,100 +78,267 @@ public class DeliveryFee {
      * <p>
      * LocalDateTime datetime = LocalDateTime.of(2025, 3, 22, 10, 0);
      * <p>
-     * double fee = feeService.calculateDeliveryFee(city, vehicleType, datetime);
+     * long feeCents = deliveryFee.calculateDeliveryFee(city, vehicleType, datetime);
      * <p>
-     * System.out.println("Delivery fee: " + fee + " EUR");
+     * System.out.println("Delivery fee: " + EuroCents.toEuros(feeCents) + " EUR");
      * </pre>
      */
-    public double calculateDeliveryFee(City city, VehicleType vehicleType, LocalDateTime datetime) {
-        Weather weather;
-        BusinessRule businessRule;
-        if (datetime == null) {
-            weather = weatherRepository.getLatestWeatherForStation(city.getStationName())
-                    .orElseThrow(() -> new IllegalStateException("No weather data available for " + city.getStationName()));
-            businessRule = businessRuleRepository.findFirstByOrderByTimestampDesc()
-                    .orElseThrow(() -> new IllegalStateException("No business rules available"));
-        } else {
-            weather = weatherRepository.getWeatherForStationAtOrBefore(city.getStationName(), datetime)
-                    .orElseThrow(() -> new IllegalStateException("No business rules available"));
-            businessRule = businessRuleRepository.findFirstByTimestampLessThanEqualOrderByTimestampDesc(datetime)
-                    .orElseThrow(() -> new IllegalStateException("No business rules available at or before " + datetime));
-        }
-
-        log.info("Calculating fee for city: {}, vehicle: {}, weather: {}, datetime: {}. Using business rule: {}", city, vehicleType, weather, datetime, businessRule);
-
-        double baseFee = calculateRegionalBaseFee(city, vehicleType, businessRule);
-        double atef = calculateAirTemperatureExtraFee(weather.getAirTemperature(), businessRule);
-        double wsef = calculateWindSpeedExtraFee(weather.getWindSpeed(), vehicleType, businessRule);
-        double wpef = calculateWeatherPhenomenonExtraFee(weather.getWeatherPhenomenon(), vehicleType, businessRule);
-
-        double totalFee = baseFee + atef + wsef + wpef;
-        log.info("Total delivery fee: {} (RBF: {}, ATEF: {}, WSEF: {}, WPEF: {})", totalFee, baseFee, atef, wsef, wpef);
-        return totalFee;
-    }
-
-    private double calculateRegionalBaseFee(City city, VehicleType vehicleType, BusinessRule businessRules) {
+    public long calculateDeliveryFee(City city, VehicleType vehicleType, LocalDateTime datetime) {
+        FeeQuote quote = quote(city, vehicleType, datetime);
+        if (quote.isForbidden()) {
+            throw new UsageForbiddenException(quote.forbiddenMessage());
+        }
+        return quote.feeCents();
+    }
+
+    /**
+     * Calculates the delivery fee like {@link #calculateDeliveryFee}, but returns a forbidden vehicle type as a
+     * {@link FeeQuote} with a reason code instead of throwing, so that no exception or message is created for it.
+     * Every call, including one that finds no data, is timed by {@link FeeMetrics}.
+     *
+     * @throws IllegalStateException If no weather data or business rules are available for the specified city or datetime
+     */
+    public FeeQuote quote(City city, VehicleType vehicleType, LocalDateTime datetime) {
+        long started = System.nanoTime();
+        try {
+            return datetime == null ? currentQuote(city, vehicleType) : historicalQuote(city, vehicleType, resolve(city, datetime));
+        } finally {
+            feeMetrics.recordQuote(city, vehicleType, datetime != null, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Calculates the delivery fee like {@link #quote(City, VehicleType, LocalDateTime)} with an observation that
+     * {@link #resolve} already returned, or the current fee if it is null. The resolution is not timed again.
+     *
+     * @throws IllegalStateException If no weather data or business rules are available for the observation's datetime
+     */
+    public FeeQuote quoteResolved(City city, VehicleType vehicleType, HistoricalObservation observation) {
+        long started = System.nanoTime();
+        try {
+            return observation == null ? currentQuote(city, vehicleType) : historicalQuote(city, vehicleType, observation);
+        } finally {
+            feeMetrics.recordQuote(city, vehicleType, observation != null, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Resolves the observation a quote of the city at the datetime is priced with, from the {@link WeatherHistoryIndex}
+     * or, outside its window, the {@link HistoricalQuoteCache}. Resolving once lets a caller derive the HTTP validator
+     * and the quote from the same row. May query the database.
+     */
+    public HistoricalObservation resolve(City city, LocalDateTime datetime) {
+        if (weatherHistoryIndex.isInMemory(city, datetime)) {
+            return new HistoricalObservation(datetime, weatherHistoryIndex.atOrBefore(city, datetime), null);
+        }
+        // The cache already ran the floor query, so a null entry means there is no row, not a second query
+        HistoricalQuoteCache.Entry cached = historicalQuoteCache.resolve(city, datetime);
+        return new HistoricalObservation(datetime, cached == null ? null : cached.weather(), cached);
+    }
+
+    private FeeQuote currentQuote(City city, VehicleType vehicleType) {
+        FeeTable table = currentFeeTable();
+        FeeQuote quote = table.quote(city, vehicleType);
+        if (quoteTracer.isSampled(city, vehicleType)) {
+            quoteTracer.trace(city, vehicleType, null, quote, table.weather(city), table.businessRule());
+        }
+        return quote;
+    }
+
+    /**
+     * Prices an observation that has weather with a rule the caller already resolved, like {@link BatchDeliveryFee}
+     * does for a whole snapshot. The evaluation is timed by {@link FeeMetrics} and sampled by {@link QuoteTracer}.
+     */
+    FeeQuote quoteHistorical(City city, VehicleType vehicleType, HistoricalObservation observation, BusinessRule businessRule) {
+        long started = System.nanoTime();
+        try {
+            return priceHistorical(city, vehicleType, observation, businessRule);
+        } finally {
+            feeMetrics.recordQuote(city, vehicleType, true, System.nanoTime() - started);
+        }
+    }
+
+    private FeeQuote historicalQuote(City city, VehicleType vehicleType, HistoricalObservation observation) {
+        LocalDateTime datetime = observation.datetime();
+        if (observation.weather() == null) {
+            throw new IllegalStateException("No weather data available for " + city.getStationName() + " at or before " + datetime);
+        }
+        BusinessRule businessRule = businessRuleCache.current().activeAt(datetime);
+        if (businessRule == null) {
+            throw new IllegalStateException("No business rules available at or before " + datetime);
+        }
+        return priceHistorical(city, vehicleType, observation, businessRule);
+    }
+
+    private FeeQuote priceHistorical(City city, VehicleType vehicleType, HistoricalObservation observation, BusinessRule businessRule) {
+        LocalDateTime datetime = observation.datetime();
+        Weather weather = observation.weather();
+        FeeQuote quote = observation.cached == null
+                ? calculateFee(city, vehicleType, weather, businessRule)
+                : observation.cached.quote(city, vehicleType, businessRule);
+        if (quoteTracer.isSampled(city, vehicleType)) {
+            quoteTracer.trace(city, vehicleType, datetime, quote, weather, businessRule);
+        }
+        return quote;
+    }
+
+    /**
+     * Returns the fee table of the currently published weather and rule snapshots
+     */
+    FeeTable currentFeeTable() {
+        return feeTableCache.current();
+    }
+
+    /**
+     * Sums RBF, ATEF, WSEF and WPEF in euro cents for the given weather observation and business rule, or returns the
+     * reason why the weather conditions do not allow the use of the selected vehicle type
+     */
+    static FeeQuote calculateFee(City city, VehicleType vehicleType, Weather weather, BusinessRule businessRule) {
+        ForbiddenReason forbiddenReason = findForbiddenReason(vehicleType, weather);
+        if (forbiddenReason != null) {
+            return FeeQuote.forbidden(forbiddenReason, vehicleType, weather);
+        }
+        long baseFee = calculateRegionalBaseFee(city, vehicleType, businessRule);
+        long atef = calculateAirTemperatureExtraFee(weather.getAirTemperature(), businessRule);
+        long wsef = calculateWindSpeedExtraFee(weather.getWindSpeed(), businessRule);
+        long wpef = calculateWeatherPhenomenonExtraFee(weather.getPhenomenonClass(), businessRule);
+
+        long totalFee = baseFee + atef + wsef + wpef;
+        if (log.isDebugEnabled()) {
+            log.debug("Total delivery fee in cents: {} (RBF: {}, ATEF: {}, WSEF: {}, WPEF: {})", totalFee, baseFee, atef, wsef, wpef);
+        }
+        return FeeQuote.allowed(totalFee);
+    }
+
+    /**
+     * Returns the parts of the observation that quotes depend on. Observations with equal inputs give the same quote,
+     * including the forbidden message, for every city, vehicle type and rule, so {@link WeatherRetention} may drop
+     * all but the first of a run of them.
+     */
+    static FeeInputs feeInputs(Weather weather) {
+        int temperatureBand = temperatureBand(weather.getAirTemperature());
+        Double windSpeed = weather.getWindSpeed();
+        int windBand = windBand(windSpeed);
+        PhenomenonClass phenomenonClass = weather.getPhenomenonClass();
+        return new FeeInputs(temperatureBand, windBand, windBand == 2 ? windSpeed : null, phenomenonClass,
+                phenomenonClass == PhenomenonClass.FORBIDDEN_FOR_TWO_WHEELERS ? weather.getWeatherPhenomenon() : null);
+    }
+
+    /**
+     * Returns 0 for no ATEF, 1 below 0 °C and 2 below -10 °C
+     */
+    static int temperatureBand(Double airTemperature) {
+        return airTemperature == null || airTemperature >= 0 ? 0 : airTemperature < -10 ? 2 : 1;
+    }
+
+    /**
+     * Returns 0 for no WSEF, 1 for the WSEF band and 2 for wind that forbids scooters and bikes
+     */
+    static int windBand(Double windSpeed) {
+        return windSpeed == null || windSpeed < 10 ? 0 : windSpeed < 20 ? 1 : 2;
+    }
+
+    /**
+     * Scooters and bikes may not be used in wind of 20 m/s or more, nor in glaze, hail or thunder; wind is checked first
+     */
+    private static ForbiddenReason findForbiddenReason(VehicleType vehicleType, Weather weather) {
+        if (vehicleType != VehicleType.SCOOTER && vehicleType != VehicleType.BIKE) {
+            return null;
+        }
+        Double windSpeed = weather.getWindSpeed();
+        if (windSpeed != null && windSpeed >= 20) {
+            return ForbiddenReason.WIND_SPEED;
+        }
+        if (weather.getPhenomenonClass() == PhenomenonClass.FORBIDDEN_FOR_TWO_WHEELERS) {
+            return ForbiddenReason.PHENOMENON;
+        }
+        return null;
+    }
+
+    private static long calculateRegionalBaseFee(City city, VehicleType vehicleType, BusinessRule businessRules) {
         switch (city) {
             case TALLINN:
                 return switch (vehicleType) {
-                    case CAR -> businessRules.getTallinnCarBaseFee();
-                    case SCOOTER -> businessRules.getTallinnScooterBaseFee();
-                    case BIKE -> businessRules.getTallinnBikeBaseFee();
+                    case CAR -> businessRules.getTallinnCarBaseFeeCents();
+                    case SCOOTER -> businessRules.getTallinnScooterBaseFeeCents();
+                    case BIKE -> businessRules.getTallinnBikeBaseFeeCents();
                 };
             case TARTU:
                 return switch (vehicleType) {
-                    case CAR -> businessRules.getTartuCarBaseFee();
-                    case SCOOTER -> businessRules.getTartuScooterBaseFee();
-                    case BIKE -> businessRules.getTartuBikeBaseFee();
+                    case CAR -> businessRules.getTartuCarBaseFeeCents();
+                    case SCOOTER -> businessRules.getTartuScooterBaseFeeCents();
+                    case BIKE -> businessRules.getTartuBikeBaseFeeCents();
                 };
             case PARNU:
                 return switch (vehicleType) {
-                    case CAR -> businessRules.getParnuCarBaseFee();
-                    case SCOOTER -> businessRules.getParnuScooterBaseFee();
-                    case BIKE -> businessRules.getParnuBikeBaseFee();
+                    case CAR -> businessRules.getParnuCarBaseFeeCents();
+                    case SCOOTER -> businessRules.getParnuScooterBaseFeeCents();
+                    case BIKE -> businessRules.getParnuBikeBaseFeeCents();
                 };
         }
         throw new IllegalStateException("Invalid city or vehicle type combination");
     }
 
-    private double calculateAirTemperatureExtraFee(Double airTemperature, BusinessRule businessRules) {
-        if (airTemperature == null) return 0.0;
-        if (airTemperature < -10) return businessRules.getAtefBelowMinusTen();
-        if (airTemperature < 0) return businessRules.getAtefBelowZero();
-        return 0.0;
+    private static long calculateAirTemperatureExtraFee(Double airTemperature, BusinessRule businessRules) {
+        if (airTemperature == null) return 0;
+        if (airTemperature < -10) return businessRules.getAtefBelowMinusTenCents();
+        if (airTemperature < 0) return businessRules.getAtefBelowZeroCents();
+        return 0;
     }
 
-    private double calculateWindSpeedExtraFee(Double windSpeed, VehicleType vehicleType, BusinessRule businessRules) {
+    private static long calculateWindSpeedExtraFee(Double windSpeed, BusinessRule businessRules) {
         if (windSpeed == null) {
-            return 0.0;
-        }
-        if (windSpeed >= 20 && (vehicleType == VehicleType.SCOOTER || vehicleType == VehicleType.BIKE)) {
-            throw new UsageForbiddenException("Usage of selected vehicle type is forbidden. Vehicle type: " + vehicleType.name() + " Wind speed: " + windSpeed + " m/s");
+            return 0;
         }
         if (windSpeed >= 10 && windSpeed < 20) {
-            return businessRules.getWsefFee();
+            return businessRules.getWsefFeeCents();
         }
-        return 0.0;
+        return 0;
     }
 
-    private double calculateWeatherPhenomenonExtraFee(String phenomenon, VehicleType vehicleType, BusinessRule businessRules) {
-        if (phenomenon == null || phenomenon.trim().isEmpty()) {
-            return 0.0;
-        }
-        String phenomenonLower = phenomenon.toLowerCase();
+    private static long calculateWeatherPhenomenonExtraFee(PhenomenonClass phenomenonClass, BusinessRule businessRules) {
+        return switch (phenomenonClass) {
+            case SNOW_OR_SLEET -> businessRules.getWpefSnowOrSleetCents();
+            case RAIN -> businessRules.getWpefRainCents();
+            case NONE, FORBIDDEN_FOR_TWO_WHEELERS -> 0;
+        };
+    }
+
+    /**
+     * Fee-relevant inputs of an observation, see {@link #feeInputs(Weather)}; the wind speed and phenomenon text are
+     * only kept when they appear in a forbidden message
+     */
+    record FeeInputs(int temperatureBand, int windBand, Double forbiddingWindSpeed, PhenomenonClass phenomenonClass,
+                     String forbiddingPhenomenon) {
+    }
 
-        if (vehicleType == VehicleType.SCOOTER || vehicleType == VehicleType.BIKE) {
-            if (phenomenonLower.contains("glaze") || phenomenonLower.contains("hail") || phenomenonLower.contains("thunder")) {
-                throw new UsageForbiddenException("Usage of selected vehicle type is forbidden. Vehicle type: " + vehicleType.name() + ". Phenomenon: " + phenomenon);
-            }
+    /**
+     * The observation a historical quote is priced with, and the {@link HistoricalQuoteCache} entry it came from
+     */
+    public static final class HistoricalObservation {
+
+        private final LocalDateTime datetime;
+        private final Weather weather;
+        private final HistoricalQuoteCache.Entry cached;
+
+        HistoricalObservation(LocalDateTime datetime, Weather weather, HistoricalQuoteCache.Entry cached) {
+            this.datetime = datetime;
+            this.weather = weather;
+            this.cached = cached;
         }
 
-        if (phenomenonLower.contains("snow") || phenomenonLower.contains("sleet")) {
-            return businessRules.getWpefSnowOrSleet();
+        /**
+         * Returns the quoted datetime
+         */
+        public LocalDateTime datetime() {
+            return datetime;
         }
-        if (phenomenonLower.contains("rain")) {
-            return businessRules.getWpefRain();
+
+        /**
+         * Returns the observation at or before the datetime, or null if the station has none
+         */
+        public Weather weather() {
+            return weather;
         }
-        return 0.0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.VehicleType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the fee calculation, exposed with the rest of the registry at /actuator/prometheus.
+ * <p>
+ * {@value #QUOTE_TIMER} times every {@link DeliveryFee#quote} call, tagged by city, vehicle and whether the quote is for
+ * the current weather or a historical datetime, and publishes a percentile histogram. {@value #OUTCOME_COUNTER} counts
+ * the answered quotes of the single and batch endpoints by outcome. Every tag combination is registered up front, so
+ * recording is an array lookup and never builds tags on the request path.
+ * </p>
+ */
+@Service
+public class FeeMetrics {
+
+    public static final String QUOTE_TIMER = "delivery.fee.quote";
+    public static final String OUTCOME_COUNTER = "delivery.fee.outcomes";
+
+    private static final int CURRENT = 0;
+    private static final int HISTORICAL = 1;
+
+    private final Timer[][][] quoteTimers = new Timer[City.values().length][VehicleType.values().length][2];
+    private final Counter[] outcomeCounters = new Counter[QuoteStatus.values().length];
+
+    public FeeMetrics(MeterRegistry meterRegistry) {
+        for (City city : City.values()) {
+            for (VehicleType vehicleType : VehicleType.values()) {
+                quoteTimers[city.ordinal()][vehicleType.ordinal()][CURRENT] = quoteTimer(meterRegistry, city, vehicleType, "current");
+                quoteTimers[city.ordinal()][vehicleType.ordinal()][HISTORICAL] = quoteTimer(meterRegistry, city, vehicleType, "historical");
+            }
+        }
+        for (QuoteStatus status : QuoteStatus.values()) {
+            outcomeCounters[status.ordinal()] = Counter.builder(OUTCOME_COUNTER)
+                    .description("Answered delivery fee quotes by outcome")
+                    .tag("outcome", status.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    private static Timer quoteTimer(MeterRegistry meterRegistry, City city, VehicleType vehicleType, String mode) {
+        return Timer.builder(QUOTE_TIMER)
+                .description("Time to calculate a delivery fee quote")
+                .tag("city", city.name().toLowerCase(Locale.ROOT))
+                .tag("vehicle", vehicleType.name().toLowerCase(Locale.ROOT))
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the duration of one quote; a datetime makes it a historical quote
+     */
+    public void recordQuote(City city, VehicleType vehicleType, boolean historical, long nanos) {
+        quoteTimers[city.ordinal()][vehicleType.ordinal()][historical ? HISTORICAL : CURRENT].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts one answered quote; an unexpected error is not an outcome and is not counted
+     */
+    public void countOutcome(QuoteStatus status) {
+        outcomeCounters[status.ordinal()].increment();
+    }
+}
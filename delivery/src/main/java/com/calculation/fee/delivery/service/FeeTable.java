@@ -0,0 +1,84 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+
+/**
+ * Precomputed outcome of the fee calculation for every city and vehicle type.
+ * <p>
+ * For a given {@link WeatherSnapshot} and {@link BusinessRuleSnapshot} the fee of all combinations is fully
+ * determined, so the table is compiled once per pair of snapshots and looked up by
+ * {@code [City.ordinal()][VehicleType.ordinal()]}. A cell holds the {@link FeeQuote} with either the total fee or the
+ * reason why the vehicle type is forbidden, so a lookup allocates nothing; a city without weather data or a missing
+ * rule is recorded per city.
+ * </p>
+ */
+public final class FeeTable {
+
+    private static final int CITIES = City.values().length;
+    private static final int VEHICLE_TYPES = VehicleType.values().length;
+
+    private final WeatherSnapshot weatherSnapshot;
+    private final BusinessRuleSnapshot ruleSnapshot;
+    private final FeeQuote[][] quotes = new FeeQuote[CITIES][VEHICLE_TYPES];
+    private final String[] unavailableReasons = new String[CITIES];
+
+    private FeeTable(WeatherSnapshot weatherSnapshot, BusinessRuleSnapshot ruleSnapshot) {
+        this.weatherSnapshot = weatherSnapshot;
+        this.ruleSnapshot = ruleSnapshot;
+    }
+
+    /**
+     * Evaluates the fee rules for every city and vehicle type against the given snapshots
+     */
+    static FeeTable compile(WeatherSnapshot weatherSnapshot, BusinessRuleSnapshot ruleSnapshot) {
+        FeeTable table = new FeeTable(weatherSnapshot, ruleSnapshot);
+        BusinessRule businessRule = ruleSnapshot.active();
+        for (City city : City.values()) {
+            Weather weather = weatherSnapshot.get(city);
+            if (weather == null) {
+                table.unavailableReasons[city.ordinal()] = "No weather data available for " + city.getStationName();
+                continue;
+            }
+            if (businessRule == null) {
+                table.unavailableReasons[city.ordinal()] = "No business rules available";
+                continue;
+            }
+            for (VehicleType vehicleType : VehicleType.values()) {
+                table.quotes[city.ordinal()][vehicleType.ordinal()] =
+                        DeliveryFee.calculateFee(city, vehicleType, weather, businessRule);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the observation the quotes of the city were compiled from, or null if there is none
+     */
+    Weather weather(City city) {
+        return weatherSnapshot.get(city);
+    }
+
+    /**
+     * Returns the rule the quotes were compiled from, or null if there is none
+     */
+    BusinessRule businessRule() {
+        return ruleSnapshot.active();
+    }
+
+    /**
+     * Returns the precomputed quote
+     *
+     * @throws IllegalStateException If there is no weather data for the city or no business rule
+     */
+    public FeeQuote quote(City city, VehicleType vehicleType) {
+        String unavailable = unavailableReasons[city.ordinal()];
+        if (unavailable != null) {
+            throw new IllegalStateException(unavailable);
+        }
+        return quotes[city.ordinal()][vehicleType.ordinal()];
+    }
+}
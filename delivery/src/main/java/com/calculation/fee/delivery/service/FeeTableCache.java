@@ -0,0 +1,49 @@
+package com.calculation.fee.delivery.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds the {@link FeeTable} of the latest published weather and business rule snapshots.
+ * <p>
+ * {@link LatestWeatherCache} and {@link BusinessRuleCache} hand every snapshot they publish to this cache, which
+ * compiles the new table before the publishing call returns. Publishes are serialized, so the table always matches
+ * the last snapshot of each source. Current quotes read the table with a single volatile read and never compile.
+ * </p>
+ */
+@Service
+@Slf4j
+public class FeeTableCache {
+
+    private WeatherSnapshot weatherSnapshot = WeatherSnapshot.EMPTY;
+    private BusinessRuleSnapshot ruleSnapshot = BusinessRuleSnapshot.EMPTY;
+    private volatile FeeTable table = FeeTable.compile(weatherSnapshot, ruleSnapshot);
+
+    /**
+     * Returns the table compiled from the latest published snapshots
+     */
+    public FeeTable current() {
+        return table;
+    }
+
+    /**
+     * Compiles the table for a newly published weather snapshot
+     */
+    synchronized void publish(WeatherSnapshot weatherSnapshot) {
+        this.weatherSnapshot = weatherSnapshot;
+        compile();
+    }
+
+    /**
+     * Compiles the table for a newly published business rule snapshot
+     */
+    synchronized void publish(BusinessRuleSnapshot ruleSnapshot) {
+        this.ruleSnapshot = ruleSnapshot;
+        compile();
+    }
+
+    private void compile() {
+        table = FeeTable.compile(weatherSnapshot, ruleSnapshot);
+        log.debug("Compiled fee table for {} and business rule version {}", weatherSnapshot, ruleSnapshot.version());
+    }
+}
@@ -0,0 +1,224 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.EuroCents;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.TimelineEntry;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Fee of one city and vehicle type over a datetime range, as the intervals in which the quote stays the same.
+ * <p>
+ * The quote only changes when a new observation of the station or a new business rule takes effect, so the range is
+ * one merge of two ordered sequences: the observations of the station, read from the database in keyset pages of
+ * {@value #PAGE_SIZE} rows, and the timestamps of the rule history in {@link BusinessRuleCache}. Every interval
+ * between two consecutive change points is priced once with the observation and rule in effect, and is handed on
+ * before the next page is read, so memory does not grow with the length of the range.
+ * </p>
+ */
+@Service
+public class FeeTimeline {
+
+    static final int PAGE_SIZE = 1000;
+
+    private static final String CSV_HEADER = "from,to,status,fee,feeCents,error,weatherId,businessRuleId\n";
+
+    private final WeatherRepository weatherRepository;
+    private final BusinessRuleCache businessRuleCache;
+    private final ObjectWriter entryWriter;
+
+    public FeeTimeline(WeatherRepository weatherRepository, BusinessRuleCache businessRuleCache, ObjectMapper objectMapper) {
+        this.weatherRepository = weatherRepository;
+        this.businessRuleCache = businessRuleCache;
+        this.entryWriter = objectMapper.writerFor(TimelineEntry.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Output formats of {@link #write}
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * Writes the timeline from {@code from} inclusive to {@code to} exclusive as newline-delimited JSON or as CSV
+     * with a header line
+     */
+    public void write(City city, VehicleType vehicleType, LocalDateTime from, LocalDateTime to, Format format,
+                      OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+            }
+            forEach(city, vehicleType, from, to, entry -> {
+                try {
+                    if (format == Format.CSV) {
+                        writeCsv(writer, entry);
+                    } else {
+                        entryWriter.writeValue(writer, entry);
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Passes the intervals from {@code from} inclusive to {@code to} exclusive to the consumer, oldest first. Adjacent
+     * intervals may have the same fee when the observation or rule changed without changing it.
+     */
+    public void forEach(City city, VehicleType vehicleType, LocalDateTime from, LocalDateTime to,
+                        Consumer<TimelineEntry> consumer) {
+        List<BusinessRule> rules = businessRuleCache.current().history();
+        BusinessRule rule = null;
+        int nextRule = 0;
+        while (nextRule < rules.size() && startsAtOrBefore(rules.get(nextRule), from)) {
+            if (rules.get(nextRule).getTimestamp() != null) {
+                rule = rules.get(nextRule);
+            }
+            nextRule++;
+        }
+
+        WeatherPages pages = new WeatherPages(city.getStationName(), from, to);
+        Weather weather = weatherRepository.getWeatherForStationAtOrBefore(city.getStationName(), from).orElse(null);
+        Weather nextWeather = pages.next();
+
+        LocalDateTime start = from;
+        while (start.isBefore(to)) {
+            LocalDateTime end = to;
+            if (nextWeather != null && nextWeather.getTimestamp().isBefore(end)) {
+                end = nextWeather.getTimestamp();
+            }
+            if (nextRule < rules.size() && rules.get(nextRule).getTimestamp().isBefore(end)) {
+                end = rules.get(nextRule).getTimestamp();
+            }
+            consumer.accept(entry(city, vehicleType, start, end, weather, rule));
+
+            while (nextWeather != null && !nextWeather.getTimestamp().isAfter(end)) {
+                weather = nextWeather;
+                nextWeather = pages.next();
+            }
+            while (nextRule < rules.size() && startsAtOrBefore(rules.get(nextRule), end)) {
+                rule = rules.get(nextRule++);
+            }
+            start = end;
+        }
+    }
+
+    private static boolean startsAtOrBefore(BusinessRule rule, LocalDateTime datetime) {
+        return rule.getTimestamp() == null || !rule.getTimestamp().isAfter(datetime);
+    }
+
+    private static TimelineEntry entry(City city, VehicleType vehicleType, LocalDateTime from, LocalDateTime to,
+                                       Weather weather, BusinessRule rule) {
+        Long weatherId = weather == null ? null : weather.getId();
+        Long ruleId = rule == null ? null : rule.getId();
+        if (weather == null) {
+            return new TimelineEntry(from, to, QuoteStatus.NO_DATA, null, null,
+                    "No weather data available for " + city.getStationName(), null, ruleId);
+        }
+        if (rule == null) {
+            return new TimelineEntry(from, to, QuoteStatus.NO_DATA, null, null, "No business rules available", weatherId, null);
+        }
+        FeeQuote quote = DeliveryFee.calculateFee(city, vehicleType, weather, rule);
+        if (quote.isForbidden()) {
+            return new TimelineEntry(from, to, QuoteStatus.FORBIDDEN, null, null, quote.forbiddenMessage(), weatherId, ruleId);
+        }
+        return new TimelineEntry(from, to, QuoteStatus.OK, EuroCents.toEuros(quote.feeCents()), quote.feeCents(), null,
+                weatherId, ruleId);
+    }
+
+    private static void writeCsv(Writer writer, TimelineEntry entry) throws IOException {
+        writer.write(entry.from().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        writer.write(',');
+        writer.write(entry.to().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        writer.write(',');
+        writer.write(entry.status().name());
+        writer.write(',');
+        writer.write(entry.fee() == null ? "" : entry.fee().toString());
+        writer.write(',');
+        writer.write(entry.feeCents() == null ? "" : entry.feeCents().toString());
+        writer.write(',');
+        if (entry.error() != null) {
+            writer.write('"');
+            writer.write(entry.error().replace("\"", "\"\""));
+            writer.write('"');
+        }
+        writer.write(',');
+        writer.write(entry.weatherId() == null ? "" : entry.weatherId().toString());
+        writer.write(',');
+        writer.write(entry.businessRuleId() == null ? "" : entry.businessRuleId().toString());
+        writer.write('\n');
+    }
+
+    /**
+     * The observations of a station after {@code from} and before {@code to}, oldest first, loaded one page at a time;
+     * each page starts after the timestamp and id of the last row, so rows sharing a timestamp are all returned
+     */
+    private final class WeatherPages {
+
+        private final String stationName;
+        private final LocalDateTime to;
+        private LocalDateTime after;
+        private long afterId = Long.MAX_VALUE;
+        private List<Weather> page = List.of();
+        private int index;
+        private boolean exhausted;
+
+        private WeatherPages(String stationName, LocalDateTime from, LocalDateTime to) {
+            this.stationName = stationName;
+            this.after = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the next observation, or null after the last one
+         */
+        private Weather next() {
+            if (index == page.size()) {
+                if (exhausted) {
+                    return null;
+                }
+                page = weatherRepository.getWeatherForStationPageAfterRow(stationName, after, afterId, to,
+                        PageRequest.ofSize(PAGE_SIZE));
+                index = 0;
+                exhausted = page.size() < PAGE_SIZE;
+                if (page.isEmpty()) {
+                    return null;
+                }
+                Weather last = page.get(page.size() - 1);
+                after = last.getTimestamp();
+                afterId = last.getId();
+            }
+            return page.get(index++);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of historical quotes outside the in-memory window of the {@link WeatherHistoryIndex}.
+ * <p>
+ * An entry is one weather row together with the interval in which it is the observation "at or before" a datetime:
+ * from its own timestamp up to the timestamp of the next row of the station. Entries are held per city by interval
+ * start, so every datetime of the interval finds the same entry with a floor lookup. An entry also keeps the quotes of
+ * each vehicle type for the rule they were evaluated with. A rule is matched by identity, and every write through the
+ * rule API makes {@link BusinessRuleCache} load new rule instances, so a PUT or DELETE invalidates those quotes.
+ * </p>
+ * <p>
+ * A miss costs two queries: the row at or before the datetime and the next row after it. A row without a next row
+ * is the latest one of the station; it is returned but not cached, because the next import ends its interval.
+ * Concurrent misses for the same city and datetime share one load, and misses for different datetimes that resolve
+ * the same row share the query for its next row, so each interval is loaded and inserted once. The cache holds at most
+ * {@code delivery.history-cache.max-entries} entries; when it is full, the tenth of the entries that were used least
+ * recently is evicted, and 0 disables caching. An entry expires {@code delivery.history-cache.ttl} after it was loaded, which bounds how long a
+ * row inserted into an already cached interval stays unseen. {@link #clear()} starts a new generation, and a load that
+ * began in an earlier generation returns its entry without caching it.
+ * </p>
+ * <p>
+ * Lookups are counted by result in {@value #LOOKUP_COUNTER}, evictions by cause in {@value #EVICTION_COUNTER}, and the
+ * number of entries is the {@value #SIZE_GAUGE} gauge.
+ * </p>
+ */
+@Service
+@Slf4j
+public class HistoricalQuoteCache {
+
+    static final String LOOKUP_COUNTER = "delivery.fee.history.cache.lookups";
+    static final String EVICTION_COUNTER = "delivery.fee.history.cache.evictions";
+    static final String SIZE_GAUGE = "delivery.fee.history.cache.size";
+
+    private final WeatherRepository weatherRepository;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<City, ConcurrentSkipListMap<LocalDateTime, Entry>> entries = new EnumMap<>(City.class);
+    private final Map<LoadKey, CompletableFuture<Entry>> floorLoads = new ConcurrentHashMap<>();
+    private final Map<LoadKey, CompletableFuture<Entry>> intervalLoads = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    public HistoricalQuoteCache(WeatherRepository weatherRepository, MeterRegistry meterRegistry,
+                                @Value("${delivery.history-cache.max-entries:10000}") int maxEntries,
+                                @Value("${delivery.history-cache.ttl:PT1H}") Duration ttl) {
+        this.weatherRepository = weatherRepository;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        for (City city : City.values()) {
+            entries.put(city, new ConcurrentSkipListMap<>());
+        }
+        this.hits = Counter.builder(LOOKUP_COUNTER).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(LOOKUP_COUNTER).tag("result", "miss").register(meterRegistry);
+        this.sizeEvictions = Counter.builder(EVICTION_COUNTER).tag("cause", "size").register(meterRegistry);
+        this.expiredEvictions = Counter.builder(EVICTION_COUNTER).tag("cause", "expired").register(meterRegistry);
+        Gauge.builder(SIZE_GAUGE, size, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Returns the entry of the weather row of the city at or before the datetime, loading it on a miss, or null if
+     * the city has no observation at or before it
+     */
+    Entry resolve(City city, LocalDateTime datetime) {
+        long now = System.nanoTime();
+        Entry entry = lookup(city, datetime, now);
+        if (entry != null) {
+            return entry;
+        }
+        return singleFlight(floorLoads, new LoadKey(city, datetime), () -> load(city, datetime, now));
+    }
+
+    /**
+     * Returns the cached entry that answers the datetime, or null on a miss, which is counted but not loaded
+     */
+    Entry cached(City city, LocalDateTime datetime) {
+        return lookup(city, datetime, System.nanoTime());
+    }
+
+    private Entry lookup(City city, LocalDateTime datetime, long now) {
+        ConcurrentSkipListMap<LocalDateTime, Entry> cityEntries = entries.get(city);
+        Map.Entry<LocalDateTime, Entry> floor = cityEntries.floorEntry(datetime);
+        if (floor != null && floor.getValue().covers(datetime)) {
+            Entry entry = floor.getValue();
+            if (now - entry.loadedAt < ttlNanos) {
+                entry.lastUsed = now;
+                hits.increment();
+                return entry;
+            }
+            if (cityEntries.remove(floor.getKey(), entry)) {
+                size.decrementAndGet();
+                expiredEvictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Drops every entry, e.g. after rows were inserted into or deleted from already cached intervals
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        for (ConcurrentSkipListMap<LocalDateTime, Entry> cityEntries : entries.values()) {
+            while (cityEntries.pollFirstEntry() != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private Entry load(City city, LocalDateTime datetime, long now) {
+        long loadGeneration = generation.get();
+        Weather weather = weatherRepository.getWeatherForStationAtOrBefore(city.getStationName(), datetime).orElse(null);
+        if (weather == null) {
+            return null;
+        }
+        // Misses for other datetimes of the interval may have resolved the same row, so only one of them loads its end
+        Entry cached = entries.get(city).get(weather.getTimestamp());
+        if (cached != null && now - cached.loadedAt < ttlNanos) {
+            return cached;
+        }
+        return singleFlight(intervalLoads, new LoadKey(city, weather.getTimestamp()), () -> loadInterval(city, weather, now, loadGeneration));
+    }
+
+    private Entry loadInterval(City city, Weather weather, long now, long loadGeneration) {
+        LocalDateTime end = weatherRepository.getWeatherForStationAfter(city.getStationName(), weather.getTimestamp())
+                .map(Weather::getTimestamp)
+                .orElse(null);
+        Entry entry = new Entry(weather, end, now);
+        if (end != null && maxEntries > 0 && generation.get() == loadGeneration) {
+            ConcurrentSkipListMap<LocalDateTime, Entry> cityEntries = entries.get(city);
+            Entry previous = cityEntries.put(weather.getTimestamp(), entry);
+            if (previous == null) {
+                size.incrementAndGet();
+            }
+            // A clear() between the check and the put may have missed the entry, so take it out again
+            if (generation.get() != loadGeneration) {
+                if (cityEntries.remove(weather.getTimestamp(), entry)) {
+                    size.decrementAndGet();
+                }
+            } else if (size.get() > maxEntries) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Runs the loader unless a load with the same key is already running, in which case its result is shared
+     */
+    private static Entry singleFlight(Map<LoadKey, CompletableFuture<Entry>> running, LoadKey key, Supplier<Entry> loader) {
+        CompletableFuture<Entry> load = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = running.putIfAbsent(key, load);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            Entry loaded = loader.get();
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(key, load);
+        }
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        if (size.get() <= maxEntries) {
+            return;
+        }
+        List<Entry> all = new ArrayList<>(size.get());
+        entries.values().forEach(cityEntries -> all.addAll(cityEntries.values()));
+        all.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        int target = maxEntries - maxEntries / 10;
+        for (Entry entry : all) {
+            if (size.get() <= target) {
+                break;
+            }
+            City city = City.fromStationName(entry.weather.getStationName());
+            if (entries.get(city).remove(entry.weather.getTimestamp(), entry)) {
+                size.decrementAndGet();
+                sizeEvictions.increment();
+            }
+        }
+        log.debug("Evicted historical quote cache down to {} entries", size.get());
+    }
+
+    /**
+     * A weather row and the datetimes it answers, from its timestamp up to but excluding {@code end}; a null end
+     * marks the latest row of the station, which is never cached
+     */
+    static final class Entry {
+
+        private final Weather weather;
+        private final LocalDateTime end;
+        private final long loadedAt;
+        private volatile long lastUsed;
+        private volatile RuleQuotes quotes;
+
+        private Entry(Weather weather, LocalDateTime end, long loadedAt) {
+            this.weather = weather;
+            this.end = end;
+            this.loadedAt = loadedAt;
+            this.lastUsed = loadedAt;
+        }
+
+        Weather weather() {
+            return weather;
+        }
+
+        /**
+         * Returns the quote of the vehicle type under the given rule, evaluating all vehicle types once per rule
+         */
+        FeeQuote quote(City city, VehicleType vehicleType, BusinessRule businessRule) {
+            RuleQuotes current = quotes;
+            if (current == null || current.businessRule != businessRule) {
+                FeeQuote[] byVehicleType = new FeeQuote[VehicleType.values().length];
+                for (VehicleType type : VehicleType.values()) {
+                    byVehicleType[type.ordinal()] = DeliveryFee.calculateFee(city, type, weather, businessRule);
+                }
+                current = new RuleQuotes(businessRule, byVehicleType);
+                quotes = current;
+            }
+            return current.byVehicleType[vehicleType.ordinal()];
+        }
+
+        private boolean covers(LocalDateTime datetime) {
+            return datetime.isBefore(end);
+        }
+    }
+
+    private record RuleQuotes(BusinessRule businessRule, FeeQuote[] byVehicleType) {
+    }
+
+    private record LoadKey(City city, LocalDateTime datetime) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.calculation.fee.delivery.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the id sequences of {@link com.calculation.fee.delivery.model.Weather} and
+ * {@link com.calculation.fee.delivery.model.BusinessRule} past the ids that already exist.
+ * <p>
+ * Rows written before the ids came from pooled sequences got identity ids. Hibernate creates the new sequences starting
+ * at 1 next to those rows, so the first insert would collide with an existing primary key. Hibernate hands out ids up
+ * to one increment below the value it fetches, so this migration restarts a sequence at
+ * {@code MAX(id) + increment + 1} when its next value is lower; it does nothing once a database has been migrated.
+ * </p>
+ */
+@Service
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class IdSequenceMigration {
+
+    static final Map<String, String> SEQUENCES = Map.of(
+            "weather_data", "weather_data_seq",
+            "business_rules", "business_rules_seq");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Restarts every sequence whose next value could return an id that is already taken
+     */
+    @PostConstruct
+    public void migrate() {
+        SEQUENCES.forEach(this::migrate);
+    }
+
+    private void migrate(String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        if (maxId == null) {
+            return;
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT base_value, increment FROM information_schema.sequences WHERE LOWER(sequence_name) = ?",
+                sequence);
+        if (rows.isEmpty()) {
+            return;
+        }
+        long next = ((Number) rows.get(0).get("base_value")).longValue();
+        long increment = ((Number) rows.get(0).get("increment")).longValue();
+        long restart = maxId + increment + 1;
+        if (next >= restart) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restart);
+        log.info("Restarted {} at {} above the highest existing id {}", sequence, restart, maxId);
+    }
+}
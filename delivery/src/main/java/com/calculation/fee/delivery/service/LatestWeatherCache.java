@@ -0,0 +1,74 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds the latest weather observation per city in memory so that current-time fee quotes never hit the database.
+ * <p>
+ * The snapshot is loaded from the database on startup and replaced by {@link WeatherImport} after every successful
+ * import. Readers get an immutable {@link WeatherSnapshot} through a single volatile read and never block. Every new
+ * snapshot is also handed to the {@link FeeTableCache}; publishes are serialized so it sees them in order.
+ * </p>
+ */
+@Service
+@Slf4j
+public class LatestWeatherCache {
+
+    private final WeatherRepository weatherRepository;
+    private final FeeTableCache feeTableCache;
+    private volatile WeatherSnapshot snapshot = WeatherSnapshot.EMPTY;
+
+    public LatestWeatherCache(WeatherRepository weatherRepository, FeeTableCache feeTableCache) {
+        this.weatherRepository = weatherRepository;
+        this.feeTableCache = feeTableCache;
+    }
+
+    /**
+     * Returns the latest weather for the given city, or null if no observation is available
+     */
+    public Weather get(City city) {
+        return snapshot.get(city);
+    }
+
+    /**
+     * Returns the currently published snapshot
+     */
+    public WeatherSnapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Publishes freshly persisted observations, replacing the current snapshot atomically
+     */
+    public synchronized void publish(Map<City, Weather> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        snapshot = snapshot.withUpdates(updates);
+        feeTableCache.publish(snapshot);
+        log.info("Published latest weather snapshot for {}", updates.keySet());
+    }
+
+    /**
+     * Rebuilds the snapshot from the database, discarding whatever is currently held
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        Map<City, Weather> loaded = new EnumMap<>(City.class);
+        for (City city : City.values()) {
+            weatherRepository.getLatestWeatherForStation(city.getStationName())
+                    .ifPresent(weather -> loaded.put(city, weather));
+        }
+        snapshot = WeatherSnapshot.of(loaded);
+        feeTableCache.publish(snapshot);
+        log.info("Loaded latest weather snapshot from database for {}", loaded.keySet());
+    }
+}
@@ -0,0 +1,206 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.xml.Observation;
+import com.calculation.fee.delivery.model.xml.Station;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Pull parser for the observations.php feed that only materializes the stations it is asked for.
+ * <p>
+ * The feed is read straight from the response stream. Element text is collected into reusable buffers, and a
+ * {@link Station} is only created, with name, wmocode, airtemperature, windspeed and phenomenon set, once the station
+ * name matches one of the wanted stations. Any other station is skipped as soon as its name is known, so it allocates
+ * nothing. The stations are returned in feed order together with the {@code timestamp} attribute of the root element.
+ * </p>
+ * <p>
+ * Instances are thread-safe; the buffers belong to a single {@link #parse(InputStream)} call.
+ * </p>
+ */
+public final class ObservationStreamParser {
+
+    private static final String OBSERVATIONS = "observations";
+    private static final String STATION = "station";
+    private static final String NAME = "name";
+    private static final String WMO_CODE = "wmocode";
+    private static final String AIR_TEMPERATURE = "airtemperature";
+    private static final String WIND_SPEED = "windspeed";
+    private static final String PHENOMENON = "phenomenon";
+    private static final String TIMESTAMP = "timestamp";
+
+    private static final int NAME_FIELD = 0;
+    private static final int WMO_CODE_FIELD = 1;
+    private static final int AIR_TEMPERATURE_FIELD = 2;
+    private static final int WIND_SPEED_FIELD = 3;
+    private static final int PHENOMENON_FIELD = 4;
+
+    private final XMLInputFactory xmlInputFactory;
+    private final String[] stationNames;
+
+    public ObservationStreamParser(Collection<String> stationNames) {
+        this.stationNames = stationNames.toArray(String[]::new);
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Reads the whole feed from the stream; the stream is not closed
+     *
+     * @return The root timestamp attribute and the wanted stations that occur in the feed
+     * @throws XMLStreamException If the payload is not well-formed XML
+     */
+    public Observation parse(InputStream in) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+        try {
+            String timestamp = null;
+            List<Station> stations = new ArrayList<>(stationNames.length);
+            StationFields fields = new StationFields();
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String element = reader.getLocalName();
+                if (OBSERVATIONS.equals(element)) {
+                    timestamp = reader.getAttributeValue(null, TIMESTAMP);
+                } else if (STATION.equals(element)) {
+                    Station station = readStation(reader, fields);
+                    if (station != null) {
+                        stations.add(station);
+                    }
+                }
+            }
+            return new Observation(timestamp, stations);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Consumes one station element, leaving the reader on its end tag
+     *
+     * @return The station, or null if it is not one of the wanted stations
+     */
+    private Station readStation(XMLStreamReader reader, StationFields fields) throws XMLStreamException {
+        fields.clear();
+        String matchedName = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth > 1) {
+                    depth++;
+                    continue;
+                }
+                String element = reader.getLocalName();
+                if (NAME.equals(element)) {
+                    readText(reader, fields.text[NAME_FIELD]);
+                    matchedName = matchStationName(fields.text[NAME_FIELD]);
+                    if (matchedName == null) {
+                        skipElement(reader);
+                        return null;
+                    }
+                } else if (WMO_CODE.equals(element)) {
+                    fields.read(reader, WMO_CODE_FIELD);
+                } else if (AIR_TEMPERATURE.equals(element)) {
+                    fields.read(reader, AIR_TEMPERATURE_FIELD);
+                } else if (WIND_SPEED.equals(element)) {
+                    fields.read(reader, WIND_SPEED_FIELD);
+                } else if (PHENOMENON.equals(element)) {
+                    fields.read(reader, PHENOMENON_FIELD);
+                } else {
+                    depth++;
+                }
+            }
+        }
+        if (matchedName == null) {
+            return null;
+        }
+        Station station = new Station();
+        station.setName(matchedName);
+        station.setWmoCode(fields.value(WMO_CODE_FIELD));
+        station.setAirtemperature(fields.value(AIR_TEMPERATURE_FIELD));
+        station.setWindspeed(fields.value(WIND_SPEED_FIELD));
+        station.setPhenomenon(fields.value(PHENOMENON_FIELD));
+        return station;
+    }
+
+    /**
+     * Appends the text content of the current element to the buffer, leaving the reader on its end tag
+     */
+    private static void readText(XMLStreamReader reader, StringBuilder buffer) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        buffer.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of the station whose name has just been read, leaving the reader on the station end tag
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private String matchStationName(CharSequence name) {
+        for (String stationName : stationNames) {
+            if (stationName.contentEquals(name)) {
+                return stationName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Text of the station fields that are imported, reused for every station of one feed. A field whose element does
+     * not occur in the station is null, like in the Jackson binding.
+     */
+    private static final class StationFields {
+
+        private final StringBuilder[] text = {
+                new StringBuilder(32), new StringBuilder(8), new StringBuilder(8), new StringBuilder(8), new StringBuilder(32)
+        };
+        private int present;
+
+        private void clear() {
+            for (StringBuilder buffer : text) {
+                buffer.setLength(0);
+            }
+            present = 0;
+        }
+
+        private void read(XMLStreamReader reader, int field) throws XMLStreamException {
+            readText(reader, text[field]);
+            present |= 1 << field;
+        }
+
+        private String value(int field) {
+            return (present & 1 << field) == 0 ? null : text[field].toString();
+        }
+    }
+}
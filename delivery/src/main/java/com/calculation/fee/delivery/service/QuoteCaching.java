@@ -0,0 +1,108 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * HTTP validators for single fee quotes, derived from the inputs of the quote without calculating it.
+ * <p>
+ * A current quote only changes when a weather import publishes a new observation for the city or the active business
+ * rule changes, so its ETag is built from the observation id and the rule id and timestamp; a rule update keeps its id
+ * but gets a new timestamp. It may be cached until the next run of {@code weather.import.cron}.
+ * </p>
+ * <p>
+ * A historical quote is validated by the observation it resolves to and the rule that was active at the datetime. A
+ * backfill or a retention run can still change which observation a past datetime resolves to, so a quote whose
+ * datetime lies before the latest observation of the city is cached for {@link #SETTLED_MAX_AGE} and then revalidated.
+ * A datetime at or after the latest observation resolves to that observation and is cached like a current quote.
+ * </p>
+ * <p>
+ * Current quotes are validated from {@link LatestWeatherCache} and {@link BusinessRuleCache} without a query. A
+ * historical quote is validated by the observation that {@link DeliveryFee#resolve} returned, which the caller then
+ * passes to {@link DeliveryFee#quoteResolved}, so the observation is resolved once per request.
+ * </p>
+ */
+@Service
+public class QuoteCaching {
+
+    static final Duration SETTLED_MAX_AGE = Duration.ofHours(1);
+
+    private final LatestWeatherCache latestWeatherCache;
+    private final BusinessRuleCache businessRuleCache;
+    private final CronExpression importSchedule;
+
+    public QuoteCaching(LatestWeatherCache latestWeatherCache, BusinessRuleCache businessRuleCache,
+                        @Value("${weather.import.cron:0 15 * * * *}") String importCron) {
+        this.latestWeatherCache = latestWeatherCache;
+        this.businessRuleCache = businessRuleCache;
+        this.importSchedule = "-".equals(importCron) ? null : CronExpression.parse(importCron);
+    }
+
+    /**
+     * Returns the validator of the quote, or null if its inputs are missing and the quote would fail. A historical
+     * quote is validated by the observation that {@link DeliveryFee#resolve} returned for it and that the quote is then
+     * priced with, so both come from the same row.
+     *
+     * @param observation The resolved observation of a historical quote, or null for a current quote
+     */
+    public Validator validator(City city, DeliveryFee.HistoricalObservation observation) {
+        Weather latest = latestWeatherCache.get(city);
+        BusinessRuleSnapshot rules = businessRuleCache.current();
+        if (observation == null) {
+            BusinessRule active = rules.active();
+            if (latest == null || active == null) {
+                return null;
+            }
+            return new Validator(etag(latest.getId() + "-" + ruleTag(active)), untilNextImport());
+        }
+        LocalDateTime datetime = observation.datetime();
+        Weather weather = observation.weather();
+        BusinessRule activeAt = rules.activeAt(datetime);
+        if (latest == null || weather == null || activeAt == null) {
+            return null;
+        }
+        String etag = etag(weather.getId() + "-" + ruleTag(activeAt));
+        return latest.getTimestamp().isAfter(datetime)
+                ? new Validator(etag, CacheControl.maxAge(SETTLED_MAX_AGE).cachePublic())
+                : new Validator(etag, untilNextImport());
+    }
+
+    /**
+     * Cache lifetime of a quote that changes with the next import; without a schedule caches must revalidate
+     */
+    CacheControl untilNextImport() {
+        if (importSchedule == null) {
+            return CacheControl.noCache();
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = importSchedule.next(now);
+        if (next == null) {
+            return CacheControl.noCache();
+        }
+        return CacheControl.maxAge(Duration.between(now, next)).cachePublic();
+    }
+
+    private static String ruleTag(BusinessRule rule) {
+        return rule.getId() + "." + rule.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static String etag(String value) {
+        return "\"" + value + "\"";
+    }
+
+    /**
+     * ETag and Cache-Control of a quote response
+     */
+    public record Validator(String etag, CacheControl cacheControl) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.QuoteTraceSettings;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes a sample of fee quotes to the {@value #LOGGER_NAME} logger, which logback-spring.xml routes through an
+ * asynchronous appender.
+ * <p>
+ * Tracing is off by default and then costs one volatile read per quote. It is enabled by {@code delivery.trace.*}
+ * on startup or at runtime through {@link #update(QuoteTraceSettings)}: either a random share of all quotes, or every
+ * quote for selected cities or vehicle types when debugging. A trace line is a set of key=value fields taken from the
+ * quote, the observation and the rule; they are only formatted for quotes that are traced.
+ * </p>
+ */
+@Service
+@Slf4j
+public class QuoteTracer {
+
+    public static final String LOGGER_NAME = "quote-trace";
+
+    private static final Logger trace = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private volatile QuoteTraceSettings settings;
+
+    public QuoteTracer(@Value("${delivery.trace.sample-rate:0}") double sampleRate,
+                       @Value("${delivery.trace.cities:}") List<City> cities,
+                       @Value("${delivery.trace.vehicle-types:}") List<VehicleType> vehicleTypes) {
+        this.settings = new QuoteTraceSettings(sampleRate, Set.copyOf(cities), Set.copyOf(vehicleTypes));
+    }
+
+    /**
+     * Returns a tracer that traces nothing until it is updated
+     */
+    public static QuoteTracer off() {
+        return new QuoteTracer(0, List.of(), List.of());
+    }
+
+    public QuoteTraceSettings settings() {
+        return settings;
+    }
+
+    /**
+     * Replaces the settings; quotes calculated afterwards use the new ones
+     */
+    public void update(QuoteTraceSettings settings) {
+        this.settings = settings;
+        log.info("Quote trace settings changed to {}", settings);
+    }
+
+    /**
+     * Decides whether the quote for this city and vehicle type is traced
+     */
+    public boolean isSampled(City city, VehicleType vehicleType) {
+        QuoteTraceSettings current = settings;
+        if (current.isOff() || !trace.isInfoEnabled()) {
+            return false;
+        }
+        if (current.cities().contains(city) || current.vehicleTypes().contains(vehicleType)) {
+            return true;
+        }
+        double sampleRate = current.sampleRate();
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Writes one quote; call only if {@link #isSampled} returned true
+     *
+     * @param datetime Null for a current-time quote
+     */
+    public void trace(City city, VehicleType vehicleType, LocalDateTime datetime, FeeQuote quote, Weather weather,
+                      BusinessRule businessRule) {
+        trace.info("quote city={} vehicleType={} datetime={} feeCents={} forbidden={} weatherId={} observedAt={} ruleId={}",
+                city, vehicleType, datetime, quote.isForbidden() ? null : quote.feeCents(), quote.forbiddenReason(),
+                weather == null ? null : weather.getId(), weather == null ? null : weather.getTimestamp(),
+                businessRule == null ? null : businessRule.getId());
+    }
+}
@@ -0,0 +1,112 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.QuoteRequest;
+import com.calculation.fee.delivery.model.QuoteResult;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.RequestDatetime;
+import com.calculation.fee.delivery.model.VehicleType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+
+/**
+ * Non-blocking front of {@link DeliveryFee} for the reactive web stack.
+ * <p>
+ * Current quotes and historical quotes inside the {@link WeatherHistoryIndex} window are answered from memory on the
+ * subscribing thread. A historical quote that needs a database query is moved to a bounded elastic scheduler, so no
+ * event loop thread ever waits on JDBC. The scheduler has one thread per connection of the Hikari pool
+ * ({@code spring.datasource.hikari.maximum-pool-size}): Reactor's shared scheduler allows only ten threads per core,
+ * which left most of the pool idle while lookups queued.
+ * </p>
+ */
+@Service
+public class ReactiveDeliveryFee {
+
+    private final DeliveryFee deliveryFee;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final int maxConcurrentLookups;
+    private final Scheduler lookupScheduler;
+
+    public ReactiveDeliveryFee(DeliveryFee deliveryFee, WeatherHistoryIndex weatherHistoryIndex,
+                               @Value("${delivery.stream.max-concurrent-lookups:4}") int maxConcurrentLookups,
+                               @Value("${spring.datasource.hikari.maximum-pool-size:10}") int lookupThreads) {
+        this.deliveryFee = deliveryFee;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.maxConcurrentLookups = maxConcurrentLookups;
+        this.lookupScheduler = Schedulers.newBoundedElastic(lookupThreads, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                "fee-lookup");
+    }
+
+    @PreDestroy
+    public void close() {
+        lookupScheduler.dispose();
+    }
+
+    /**
+     * Calculates the fee like {@link DeliveryFee#quote}; the Mono fails with {@link IllegalStateException} if no weather
+     * data or business rules are available
+     */
+    public Mono<FeeQuote> quote(City city, VehicleType vehicleType, LocalDateTime datetime) {
+        return lookup(city, datetime, Mono.fromCallable(() -> deliveryFee.quote(city, vehicleType, datetime)));
+    }
+
+    /**
+     * Runs a lookup of the city's weather at the datetime on the subscribing thread if it is answered from memory, or
+     * on the lookup scheduler if it may query the database. The choice is made at subscription time, since
+     * the in-memory window moves between assembly and subscription.
+     */
+    public <T> Mono<T> lookup(City city, LocalDateTime datetime, Mono<T> lookup) {
+        return Mono.defer(() -> datetime == null || weatherHistoryIndex.isInMemory(city, datetime)
+                ? lookup
+                : lookup.subscribeOn(lookupScheduler));
+    }
+
+    /**
+     * Prices a stream of quote requests and emits one result per request, in request order.
+     * <p>
+     * Requests are taken from upstream only as fast as the results are consumed, and at most
+     * {@code delivery.stream.max-concurrent-lookups} quotes wait for the database at a time.
+     * </p>
+     */
+    public Flux<QuoteResult> quotes(Flux<QuoteRequest> requests) {
+        return requests.flatMapSequential(this::quote, maxConcurrentLookups);
+    }
+
+    /**
+     * Prices one raw request; an invalid request or one without data becomes an error result instead of an error signal
+     */
+    public Mono<QuoteResult> quote(QuoteRequest request) {
+        if (request.getCity() == null || request.getCity().isBlank()) {
+            return Mono.just(QuoteResult.MISSING_CITY);
+        }
+        if (request.getVehicleType() == null || request.getVehicleType().isBlank()) {
+            return Mono.just(QuoteResult.MISSING_VEHICLE_TYPE);
+        }
+        City city = City.lookup(request.getCity());
+        if (city == null) {
+            return Mono.just(QuoteResult.INVALID_CITY);
+        }
+        VehicleType vehicleType = VehicleType.lookup(request.getVehicleType());
+        if (vehicleType == null) {
+            return Mono.just(QuoteResult.INVALID_VEHICLE_TYPE);
+        }
+        LocalDateTime datetime = null;
+        if (request.getDatetime() != null && !request.getDatetime().isBlank()) {
+            datetime = RequestDatetime.parse(request.getDatetime());
+            if (datetime == null) {
+                return Mono.just(QuoteResult.INVALID_DATETIME);
+            }
+        }
+        return quote(city, vehicleType, datetime)
+                .map(QuoteResult::of)
+                .onErrorResume(IllegalStateException.class, e -> Mono.just(QuoteResult.error(QuoteStatus.NO_DATA, e.getMessage())));
+    }
+}
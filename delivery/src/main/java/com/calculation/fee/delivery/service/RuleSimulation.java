@@ -0,0 +1,327 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.PhenomenonClass;
+import com.calculation.fee.delivery.model.SimulationResult;
+import com.calculation.fee.delivery.model.SimulationTotals;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * What-if pricing of a draft business rule against the whole weather history, before the rule is created.
+ * <p>
+ * Every whole hour from the first to the latest observation of a city is priced with the observation at or before it,
+ * like a historical quote, and weighed by the orders of the volume profile for the city, vehicle type and hour of the
+ * day. The quote of an hour only depends on the band of the temperature and wind speed and on the class of the
+ * phenomenon (see {@link DeliveryFee#feeInputs}), so the history is first reduced to the number of hours per city,
+ * hour of the day and weather state. Both rules are then priced once per state by {@link DeliveryFee#calculateFee},
+ * so a run costs one pass over the history whatever the profile.
+ * </p>
+ * <p>
+ * The pass is split into chunks of {@code delivery.simulation.chunk-days} per city, counted in parallel on a fork-join
+ * pool of {@code delivery.simulation.parallelism} threads (0 uses all processors). Chunks read the
+ * {@link WeatherHistoryStore} when it is enabled, and keyset pages of the weather table otherwise.
+ * </p>
+ */
+@Service
+@Slf4j
+public class RuleSimulation {
+
+    static final int PAGE_SIZE = 1000;
+
+    private static final int PHENOMENON_CLASSES = PhenomenonClass.values().length;
+    private static final int STATES = 3 * 3 * PHENOMENON_CLASSES;
+    private static final int HOURS_PER_DAY = 24;
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final long SECONDS_PER_DAY = HOURS_PER_DAY * SECONDS_PER_HOUR;
+    private static final Weather[] REPRESENTATIVES = representatives();
+
+    private final WeatherRepository weatherRepository;
+    private final WeatherHistoryStore weatherHistoryStore;
+    private final BusinessRuleCache businessRuleCache;
+    private final int parallelism;
+    private final int chunkHours;
+
+    public RuleSimulation(WeatherRepository weatherRepository, WeatherHistoryStore weatherHistoryStore,
+                          BusinessRuleCache businessRuleCache,
+                          @Value("${delivery.simulation.parallelism:0}") int parallelism,
+                          @Value("${delivery.simulation.chunk-days:28}") int chunkDays) {
+        this.weatherRepository = weatherRepository;
+        this.weatherHistoryStore = weatherHistoryStore;
+        this.businessRuleCache = businessRuleCache;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkHours = chunkDays * HOURS_PER_DAY;
+    }
+
+    /**
+     * Prices the order volume with the draft and with the active business rule
+     *
+     * @param draft         The rule to try; it is not stored
+     * @param ordersPerHour Orders per hour by {@code [City.ordinal()][VehicleType.ordinal()][hour of the day]}
+     * @throws IllegalStateException If there is no active business rule, or the history could not be read
+     */
+    public SimulationResult simulate(BusinessRule draft, long[][][] ordersPerHour) {
+        long started = System.nanoTime();
+        BusinessRule active = businessRuleCache.current().active();
+        if (active == null) {
+            throw new IllegalStateException("No business rules available");
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (City city : City.values()) {
+            chunks.addAll(chunks(city));
+        }
+        List<Walk> walks;
+        try (ForkJoinPool pool = new ForkJoinPool(parallelism)) {
+            walks = pool.submit(() -> chunks.parallelStream().map(this::count).toList()).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rule simulation was interrupted", e);
+        }
+
+        long[][] hours = new long[City.values().length][HOURS_PER_DAY * STATES];
+        long observations = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            long[] cityHours = hours[chunks.get(i).city().ordinal()];
+            Walk walk = walks.get(i);
+            for (int cell = 0; cell < cityHours.length; cell++) {
+                cityHours[cell] += walk.hours[cell];
+            }
+            observations += walk.observations;
+        }
+
+        List<SimulationTotals> cities = new ArrayList<>();
+        long[] sums = new long[6];
+        for (City city : City.values()) {
+            long[] citySums = price(city, hours[city.ordinal()], ordersPerHour[city.ordinal()], active, draft);
+            cities.add(totals(city.getStationName(), citySums));
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += citySums[i];
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        log.info("Simulated a business rule draft over {} observations in {} chunks in {} s",
+                observations, chunks.size(), elapsedSeconds);
+        return new SimulationResult(active.getId(), observations, totals(null, sums), cities, elapsedSeconds);
+    }
+
+    /**
+     * Splits the whole hours from the first to the latest observation of the city into chunks
+     */
+    private List<Chunk> chunks(City city) {
+        Optional<Weather> oldest = weatherRepository.getOldestWeatherForStation(city.getStationName());
+        Optional<Weather> latest = weatherRepository.getLatestWeatherForStation(city.getStationName());
+        if (oldest.isEmpty() || latest.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime first = oldest.get().getTimestamp().truncatedTo(ChronoUnit.HOURS);
+        if (first.isBefore(oldest.get().getTimestamp())) {
+            first = first.plusHours(1);
+        }
+        LocalDateTime end = latest.get().getTimestamp().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        List<Chunk> chunks = new ArrayList<>();
+        for (LocalDateTime start = first; start.isBefore(end); start = start.plusHours(chunkHours)) {
+            LocalDateTime chunkEnd = start.plusHours(chunkHours);
+            LocalDateTime readFrom = chunks.isEmpty() ? oldest.get().getTimestamp() : start;
+            chunks.add(new Chunk(city, start, chunkEnd.isBefore(end) ? chunkEnd : end, readFrom));
+        }
+        return chunks;
+    }
+
+    /**
+     * Counts the hours of the chunk by hour of the day and weather state
+     */
+    private Walk count(Chunk chunk) {
+        Walk walk = new Walk(epochSecond(chunk.from()), epochSecond(chunk.to()));
+        String stationName = chunk.city().getStationName();
+        if (weatherHistoryStore.isEnabled()) {
+            Map<Integer, PhenomenonClass> classes = new HashMap<>();
+            WeatherHistoryStore.ObservationVisitor visitor = (epochSecond, airTemperature, windSpeed, phenomenonCode) ->
+                    walk.observe(epochSecond, state(
+                            Double.isNaN(airTemperature) ? null : airTemperature,
+                            Double.isNaN(windSpeed) ? null : windSpeed,
+                            classes.computeIfAbsent(phenomenonCode,
+                                    code -> PhenomenonClass.classify(weatherHistoryStore.phenomenon(code)))));
+            weatherHistoryStore.atOrBefore(chunk.city(), chunk.readFrom(), visitor);
+            walk.observations = weatherHistoryStore.scan(chunk.city(), chunk.readFrom(), chunk.to(), visitor);
+        } else {
+            Optional<Weather> previous = weatherRepository.getWeatherForStationAtOrBefore(stationName, chunk.readFrom());
+            previous.ifPresent(weather -> walk.observe(epochSecond(weather.getTimestamp()), state(weather)));
+            if (previous.isPresent() && previous.get().getTimestamp().equals(chunk.readFrom())) {
+                walk.observations++;
+            }
+            // The row at or before readFrom was read above, so the first page starts after that timestamp
+            LocalDateTime after = chunk.readFrom();
+            long afterId = Long.MAX_VALUE;
+            List<Weather> page;
+            do {
+                page = weatherRepository.getWeatherForStationPageAfterRow(stationName, after, afterId, chunk.to(),
+                        PageRequest.ofSize(PAGE_SIZE));
+                for (Weather weather : page) {
+                    walk.observe(epochSecond(weather.getTimestamp()), state(weather));
+                }
+                walk.observations += page.size();
+                if (!page.isEmpty()) {
+                    Weather last = page.get(page.size() - 1);
+                    after = last.getTimestamp();
+                    afterId = last.getId();
+                }
+            } while (page.size() == PAGE_SIZE);
+        }
+        walk.finish();
+        return walk;
+    }
+
+    /**
+     * Returns hours, orders, forbidden orders, forbidden vehicle hours, and the active and draft revenue in cents
+     */
+    private static long[] price(City city, long[] hours, long[][] ordersPerHour, BusinessRule active, BusinessRule draft) {
+        VehicleType[] vehicleTypes = VehicleType.values();
+        long[][] activeFees = fees(city, active);
+        long[][] draftFees = fees(city, draft);
+        long[] sums = new long[6];
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            for (int state = 0; state < STATES; state++) {
+                long count = hours[hour * STATES + state];
+                if (count == 0) {
+                    continue;
+                }
+                sums[0] += count;
+                for (VehicleType vehicleType : vehicleTypes) {
+                    int v = vehicleType.ordinal();
+                    long orders = count * ordersPerHour[v][hour];
+                    sums[1] += orders;
+                    if (activeFees[v][state] < 0) {
+                        sums[2] += orders;
+                        sums[3] += count;
+                    } else {
+                        sums[4] += orders * activeFees[v][state];
+                        sums[5] += orders * draftFees[v][state];
+                    }
+                }
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Returns the fee in cents of every vehicle type and weather state, or -1 where the vehicle type is forbidden
+     */
+    private static long[][] fees(City city, BusinessRule rule) {
+        long[][] fees = new long[VehicleType.values().length][STATES];
+        for (VehicleType vehicleType : VehicleType.values()) {
+            for (int state = 0; state < STATES; state++) {
+                FeeQuote quote = DeliveryFee.calculateFee(city, vehicleType, REPRESENTATIVES[state], rule);
+                fees[vehicleType.ordinal()][state] = quote.isForbidden() ? -1 : quote.feeCents();
+            }
+        }
+        return fees;
+    }
+
+    private static SimulationTotals totals(String city, long[] sums) {
+        return SimulationTotals.of(city, sums[0], sums[1], sums[2], sums[3], sums[4], sums[5]);
+    }
+
+    private static int state(Weather weather) {
+        return state(weather.getAirTemperature(), weather.getWindSpeed(), weather.getPhenomenonClass());
+    }
+
+    private static int state(Double airTemperature, Double windSpeed, PhenomenonClass phenomenonClass) {
+        return (DeliveryFee.temperatureBand(airTemperature) * 3 + DeliveryFee.windBand(windSpeed)) * PHENOMENON_CLASSES
+                + phenomenonClass.ordinal();
+    }
+
+    /**
+     * Builds one observation per weather state, with a temperature, wind speed and phenomenon inside its bands
+     */
+    private static Weather[] representatives() {
+        double[] airTemperatures = {5.0, -5.0, -15.0};
+        double[] windSpeeds = {5.0, 15.0, 25.0};
+        Weather[] representatives = new Weather[STATES];
+        for (double airTemperature : airTemperatures) {
+            for (double windSpeed : windSpeeds) {
+                for (PhenomenonClass phenomenonClass : PhenomenonClass.values()) {
+                    Weather weather = new Weather();
+                    weather.setAirTemperature(airTemperature);
+                    weather.setWindSpeed(windSpeed);
+                    weather.setWeatherPhenomenon(switch (phenomenonClass) {
+                        case NONE -> null;
+                        case RAIN -> "Light rain";
+                        case SNOW_OR_SLEET -> "Light snow";
+                        case FORBIDDEN_FOR_TWO_WHEELERS -> "Glaze";
+                    });
+                    representatives[state(weather)] = weather;
+                }
+            }
+        }
+        return representatives;
+    }
+
+    private static long epochSecond(LocalDateTime datetime) {
+        return datetime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * The hours from {@code from} inclusive to {@code to} exclusive of one city. The observations from {@code readFrom}
+     * inclusive are counted by this chunk: {@code from} for all chunks but the first, which also counts the observations
+     * before the first whole hour.
+     */
+    private record Chunk(City city, LocalDateTime from, LocalDateTime to, LocalDateTime readFrom) {
+    }
+
+    /**
+     * Counts each whole hour of a chunk by hour of the day and the state of the observation at or before it; the
+     * observations are passed in timestamp order
+     */
+    private static final class Walk {
+
+        private final long[] hours = new long[HOURS_PER_DAY * STATES];
+        private final long end;
+        private long next;
+        private int state = -1;
+        private long observations;
+
+        private Walk(long from, long to) {
+            this.next = from;
+            this.end = to;
+        }
+
+        private void observe(long epochSecond, int newState) {
+            countUntil(Math.min(epochSecond, end));
+            state = newState;
+        }
+
+        private void finish() {
+            countUntil(end);
+        }
+
+        private void countUntil(long until) {
+            for (; next < until; next += SECONDS_PER_HOUR) {
+                if (state >= 0) {
+                    hours[(int) (Math.floorMod(next, SECONDS_PER_DAY) / SECONDS_PER_HOUR) * STATES + state]++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BackfillProgress;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.model.xml.Observation;
+import com.calculation.fee.delivery.model.xml.Station;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Bulk import of archived observations.php payloads, for standing up an environment with weather history.
+ * <p>
+ * All {@code *.xml} files of a directory are loaded in name order, in batches of {@code weather.backfill.files-per-batch}.
+ * The files of a batch are parsed in parallel on a fork-join pool of {@code weather.backfill.parallelism} threads
+ * (0 uses all processors) by the same {@link ObservationStreamParser} and field parsing as {@link WeatherImport}. Their
+ * rows are deduplicated by station and timestamp, within the batch and against the rows already stored, and inserted
+ * with batched JDBC inserts. The names of the files of a loaded batch are then appended to {@value #CHECKPOINT_FILE} in
+ * the directory, so a run that is interrupted resumes after the last loaded batch. A file that cannot be parsed is
+ * logged and not recorded, so it is tried again by the next run.
+ * </p>
+ * <p>
+ * When the run ends, the {@link WeatherHistoryStore} is rebuilt per station from the oldest inserted row, the
+ * in-memory weather caches are reloaded and the historical quote cache is cleared. Files are
+ * counted by result in {@value #FILE_COUNTER} and rows in {@value #ROW_COUNTER}, and {@link #progress()} reports the
+ * throughput of the current run.
+ * </p>
+ * <p>
+ * Backfills requested over HTTP with {@link #start(String)} only read subdirectories of {@code weather.backfill.root};
+ * without a root they are disabled.
+ * </p>
+ */
+@Service
+@Slf4j
+public class WeatherBackfill {
+
+    static final String FILE_COUNTER = "weather.backfill.files";
+    static final String ROW_COUNTER = "weather.backfill.rows";
+    static final String CHECKPOINT_FILE = ".backfill-done";
+
+    private final WeatherRepository weatherRepository;
+    private final LatestWeatherCache latestWeatherCache;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final HistoricalQuoteCache historicalQuoteCache;
+    private final WeatherHistoryStore weatherHistoryStore;
+    private final Path root;
+    private final ObservationStreamParser observationParser = new ObservationStreamParser(WeatherImport.REQUIRED_STATIONS);
+    private final int parallelism;
+    private final int filesPerBatch;
+    private final AtomicReference<Run> current = new AtomicReference<>();
+
+    private final Counter processedFiles;
+    private final Counter failedFiles;
+    private final Counter insertedRows;
+    private final Counter duplicateRows;
+
+    public WeatherBackfill(WeatherRepository weatherRepository, LatestWeatherCache latestWeatherCache,
+                           WeatherHistoryIndex weatherHistoryIndex, HistoricalQuoteCache historicalQuoteCache,
+                           WeatherHistoryStore weatherHistoryStore, MeterRegistry meterRegistry,
+                           @Value("${weather.backfill.root:#{null}}") Path root,
+                           @Value("${weather.backfill.parallelism:0}") int parallelism,
+                           @Value("${weather.backfill.files-per-batch:500}") int filesPerBatch) {
+        this.weatherRepository = weatherRepository;
+        this.latestWeatherCache = latestWeatherCache;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.historicalQuoteCache = historicalQuoteCache;
+        this.weatherHistoryStore = weatherHistoryStore;
+        this.root = root;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.filesPerBatch = filesPerBatch;
+        this.processedFiles = Counter.builder(FILE_COUNTER).tag("result", "processed").register(meterRegistry);
+        this.failedFiles = Counter.builder(FILE_COUNTER).tag("result", "failed").register(meterRegistry);
+        this.insertedRows = Counter.builder(ROW_COUNTER).tag("result", "inserted").register(meterRegistry);
+        this.duplicateRows = Counter.builder(ROW_COUNTER).tag("result", "duplicate").register(meterRegistry);
+    }
+
+    /**
+     * Returns whether backfills can be started with {@link #start(String)}, i.e. whether a root directory is configured
+     */
+    public boolean isRootConfigured() {
+        return root != null;
+    }
+
+    /**
+     * Starts a backfill in the background of a directory given relative to {@code weather.backfill.root}
+     *
+     * @throws IllegalArgumentException If the directory is absolute, leaves the root or does not exist
+     * @throws IllegalStateException    If no root is configured or a backfill is already running
+     */
+    public BackfillProgress start(String directory) {
+        Run run = begin(underRoot(directory));
+        Thread.ofPlatform().name("weather-backfill").start(() -> execute(run));
+        return run.progress();
+    }
+
+    /**
+     * Backfills the directory in the calling thread
+     *
+     * @throws IllegalArgumentException If the directory does not exist
+     * @throws IllegalStateException    If a backfill is already running
+     */
+    public BackfillProgress run(Path directory) {
+        Run run = begin(directory);
+        execute(run);
+        return run.progress();
+    }
+
+    /**
+     * Returns the progress of the running or last backfill, or null if there was none since startup
+     */
+    public BackfillProgress progress() {
+        Run run = current.get();
+        return run == null ? null : run.progress();
+    }
+
+    /**
+     * Resolves a relative directory against the root, following links, and rejects it unless it stays inside the root
+     */
+    private Path underRoot(String directory) {
+        if (root == null) {
+            throw new IllegalStateException("No weather.backfill.root is configured");
+        }
+        Path relative = Path.of(directory);
+        if (relative.isAbsolute()) {
+            throw new IllegalArgumentException("Directory must be relative to the backfill root: " + directory);
+        }
+        for (Path name : relative) {
+            if (name.toString().equals("..")) {
+                throw new IllegalArgumentException("Directory must not contain '..': " + directory);
+            }
+        }
+        Path resolved = root.resolve(relative).normalize();
+        if (!Files.isDirectory(resolved)) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        try {
+            Path real = resolved.toRealPath();
+            if (!real.startsWith(root.toRealPath())) {
+                throw new IllegalArgumentException("Directory leaves the backfill root: " + directory);
+            }
+            return real;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot resolve directory " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Run begin(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        Run previous = current.get();
+        Run run = new Run(directory);
+        if (previous != null && previous.state == BackfillProgress.State.RUNNING || !current.compareAndSet(previous, run)) {
+            throw new IllegalStateException("A weather backfill is already running");
+        }
+        return run;
+    }
+
+    private void execute(Run run) {
+        try {
+            load(run);
+            run.state = BackfillProgress.State.COMPLETED;
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            run.state = BackfillProgress.State.FAILED;
+            log.error("Weather backfill of {} failed: {}", run.directory, e.getMessage(), e);
+        } catch (InterruptedException e) {
+            run.state = BackfillProgress.State.FAILED;
+            Thread.currentThread().interrupt();
+            log.warn("Weather backfill of {} was interrupted", run.directory);
+        } finally {
+            if (run.insertedRows > 0) {
+                run.oldestInserted.forEach(weatherHistoryStore::rebuild);
+                latestWeatherCache.reload();
+                weatherHistoryIndex.reload();
+                historicalQuoteCache.clear();
+            }
+        }
+        log.info("Weather backfill of {} ended: {}", run.directory, run.progress());
+    }
+
+    private void load(Run run) throws IOException, ExecutionException, InterruptedException {
+        Path checkpoint = run.directory.resolve(CHECKPOINT_FILE);
+        Set<String> loaded = Files.exists(checkpoint)
+                ? new HashSet<>(Files.readAllLines(checkpoint, StandardCharsets.UTF_8))
+                : Set.of();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(run.directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(".xml")).sorted().toList();
+        }
+        List<Path> pending = files.stream().filter(file -> !loaded.contains(file.getFileName().toString())).toList();
+        run.totalFiles = files.size();
+        run.resumedFiles = files.size() - pending.size();
+        log.info("Backfilling weather from {}: {} files, {} already loaded", run.directory, files.size(), run.resumedFiles);
+
+        try (ForkJoinPool pool = new ForkJoinPool(parallelism);
+             FileChannel checkpointChannel = FileChannel.open(checkpoint, CREATE, WRITE, APPEND)) {
+            for (int from = 0; from < pending.size(); from += filesPerBatch) {
+                List<Path> batch = pending.subList(from, Math.min(from + filesPerBatch, pending.size()));
+                List<ParsedFile> parsed = pool.submit(() -> batch.parallelStream().map(this::parse).toList()).get();
+                insert(run, parsed);
+
+                StringBuilder names = new StringBuilder();
+                for (ParsedFile file : parsed) {
+                    if (file.rows() != null) {
+                        names.append(file.name()).append('\n');
+                    }
+                }
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(names.toString());
+                while (bytes.hasRemaining()) {
+                    checkpointChannel.write(bytes);
+                }
+                checkpointChannel.force(false);
+                log.info("Weather backfill progress: {}", run.progress());
+            }
+        }
+    }
+
+    /**
+     * Parses one archived payload; the rows are null if the file cannot be read or has no valid root timestamp
+     */
+    private ParsedFile parse(Path file) {
+        String name = file.getFileName().toString();
+        try (InputStream in = Files.newInputStream(file)) {
+            Observation observation = observationParser.parse(in);
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(Long.parseLong(observation.getTimestamp()), 0, ZoneOffset.UTC);
+            List<Weather> rows = new ArrayList<>(observation.getStations().size());
+            for (Station station : observation.getStations()) {
+                rows.add(WeatherImport.toWeather(station, timestamp));
+            }
+            return new ParsedFile(name, rows);
+        } catch (IOException | XMLStreamException | NumberFormatException e) {
+            log.warn("Skipping archived observations file {}: {}", file, e.getMessage());
+            return new ParsedFile(name, null);
+        }
+    }
+
+    /**
+     * Inserts the rows of a batch whose station and timestamp occur neither earlier in the batch nor in the database
+     */
+    private void insert(Run run, List<ParsedFile> parsed) {
+        Map<StationTimestamp, Weather> unique = new LinkedHashMap<>();
+        long rows = 0;
+        for (ParsedFile file : parsed) {
+            if (file.rows() == null) {
+                run.failedFiles++;
+                failedFiles.increment();
+                continue;
+            }
+            for (Weather weather : file.rows()) {
+                rows++;
+                unique.putIfAbsent(new StationTimestamp(weather.getStationName(), weather.getTimestamp()), weather);
+            }
+        }
+        Map<String, List<Weather>> byStation = new HashMap<>();
+        unique.values().forEach(weather -> byStation.computeIfAbsent(weather.getStationName(), s -> new ArrayList<>()).add(weather));
+
+        List<Weather> fresh = new ArrayList<>(unique.size());
+        byStation.forEach((station, stationRows) -> {
+            LocalDateTime first = stationRows.get(0).getTimestamp();
+            LocalDateTime last = first;
+            for (Weather weather : stationRows) {
+                first = weather.getTimestamp().isBefore(first) ? weather.getTimestamp() : first;
+                last = weather.getTimestamp().isAfter(last) ? weather.getTimestamp() : last;
+            }
+            Set<LocalDateTime> stored = new HashSet<>(weatherRepository.getTimestampsForStationBetween(station, first, last));
+            for (Weather weather : stationRows) {
+                if (!stored.contains(weather.getTimestamp())) {
+                    fresh.add(weather);
+                }
+            }
+        });
+        if (!fresh.isEmpty()) {
+            weatherRepository.saveAll(fresh);
+            for (Weather weather : fresh) {
+                City city = City.fromStationName(weather.getStationName());
+                if (city != null) {
+                    run.oldestInserted.merge(city, weather.getTimestamp(), (a, b) -> a.isBefore(b) ? a : b);
+                }
+            }
+        }
+
+        long processed = parsed.size() - parsed.stream().filter(file -> file.rows() == null).count();
+        run.processedFiles += processed;
+        run.insertedRows += fresh.size();
+        run.duplicateRows += rows - fresh.size();
+        processedFiles.increment(processed);
+        insertedRows.increment(fresh.size());
+        duplicateRows.increment(rows - fresh.size());
+    }
+
+    private record ParsedFile(String name, List<Weather> rows) {
+    }
+
+    private record StationTimestamp(String stationName, LocalDateTime timestamp) {
+    }
+
+    /**
+     * State of one backfill; the counters are written by the backfilling thread only
+     */
+    private static final class Run {
+
+        private final Path directory;
+        private final long startedNanos = System.nanoTime();
+        private final Map<City, LocalDateTime> oldestInserted = new EnumMap<>(City.class);
+        private volatile BackfillProgress.State state = BackfillProgress.State.RUNNING;
+        private volatile long totalFiles;
+        private volatile long resumedFiles;
+        private volatile long processedFiles;
+        private volatile long failedFiles;
+        private volatile long insertedRows;
+        private volatile long duplicateRows;
+
+        private Run(Path directory) {
+            this.directory = directory;
+        }
+
+        private BackfillProgress progress() {
+            double elapsedSeconds = (System.nanoTime() - startedNanos) / 1e9;
+            return new BackfillProgress(directory.toString(), state, totalFiles, resumedFiles, processedFiles,
+                    failedFiles, insertedRows, duplicateRows, elapsedSeconds,
+                    elapsedSeconds > 0 ? processedFiles / elapsedSeconds : 0,
+                    elapsedSeconds > 0 ? insertedRows / elapsedSeconds : 0);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory time index of weather observations per city, used to resolve historical fee quotes without SQL.
+ * <p>
+ * Each city has a navigable map from observation timestamp to {@link Weather}, filled from the database on startup and
+ * appended to by {@link WeatherImport}. "At or before" resolution is a floor lookup.
+ * </p>
+ * <p>
+ * Only observations inside {@code weather.history.horizon} ({@code P90D} by default) are held, so memory does not grow
+ * with the history. The index guarantees that every row newer than its low watermark is present, and datetimes whose
+ * floor falls behind the watermark are resolved from the database. A null horizon keeps the whole history.
+ * </p>
+ */
+@Service
+@Slf4j
+public class WeatherHistoryIndex {
+
+    static final Duration COLD_CLUSTER_SPAN = Duration.ofDays(1);
+
+    private final WeatherRepository weatherRepository;
+    private final Duration horizon;
+    private volatile Map<City, CityIndex> indexes;
+
+    public WeatherHistoryIndex(WeatherRepository weatherRepository,
+                               @Value("${weather.history.horizon:P90D}") Duration horizon) {
+        this.weatherRepository = weatherRepository;
+        this.horizon = horizon;
+        Map<City, CityIndex> empty = new EnumMap<>(City.class);
+        for (City city : City.values()) {
+            empty.put(city, new CityIndex(null));
+        }
+        this.indexes = empty;
+    }
+
+    /**
+     * Returns the observation of the city at or before the given datetime, or null if there is none
+     */
+    public Weather atOrBefore(City city, LocalDateTime datetime) {
+        CityIndex index = indexes.get(city);
+        Map.Entry<LocalDateTime, Weather> entry = index.rows.floorEntry(datetime);
+        if (entry != null) {
+            return entry.getValue();
+        }
+        if (index.complete()) {
+            return null;
+        }
+        return weatherRepository.getWeatherForStationAtOrBefore(city.getStationName(), datetime).orElse(null);
+    }
+
+    /**
+     * Returns true if {@link #atOrBefore(City, LocalDateTime)} answers the datetime from memory without a query
+     */
+    public boolean isInMemory(City city, LocalDateTime datetime) {
+        CityIndex index = indexes.get(city);
+        return index.complete() || index.rows.floorKey(datetime) != null;
+    }
+
+    /**
+     * Resolves many datetimes of one city at once. Datetimes outside the in-memory window are grouped into clusters
+     * spanning at most {@link #COLD_CLUSTER_SPAN}; each cluster costs a query for the row at or before its earliest
+     * datetime and, if it holds more than one datetime, a query for the rows up to its latest one. A range query thus
+     * never reads more than one cluster span of rows, however far apart the datetimes are.
+     *
+     * @return The observation per datetime; datetimes without an observation are absent
+     */
+    public Map<LocalDateTime, Weather> atOrBefore(City city, NavigableSet<LocalDateTime> datetimes) {
+        CityIndex index = indexes.get(city);
+        Map<LocalDateTime, Weather> resolved = new HashMap<>();
+        List<LocalDateTime> cold = new ArrayList<>();
+        for (LocalDateTime datetime : datetimes) {
+            Map.Entry<LocalDateTime, Weather> entry = index.rows.floorEntry(datetime);
+            if (entry != null) {
+                resolved.put(datetime, entry.getValue());
+            } else if (!index.complete()) {
+                cold.add(datetime);
+            }
+        }
+        int start = 0;
+        while (start < cold.size()) {
+            LocalDateTime limit = cold.get(start).plus(COLD_CLUSTER_SPAN);
+            int end = start + 1;
+            while (end < cold.size() && !cold.get(end).isAfter(limit)) {
+                end++;
+            }
+            resolveCold(city, cold.subList(start, end), resolved);
+            start = end;
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolves the sorted datetimes of one cold cluster with a floor query and, for more than one datetime, a range query
+     */
+    private void resolveCold(City city, List<LocalDateTime> cluster, Map<LocalDateTime, Weather> resolved) {
+        LocalDateTime first = cluster.get(0);
+        LocalDateTime last = cluster.get(cluster.size() - 1);
+        NavigableMap<LocalDateTime, Weather> rows = new TreeMap<>();
+        weatherRepository.getWeatherForStationAtOrBefore(city.getStationName(), first)
+                .ifPresent(weather -> rows.put(weather.getTimestamp(), weather));
+        if (last.isAfter(first)) {
+            for (Weather weather : weatherRepository.getWeatherForStationBetween(city.getStationName(), first, last)) {
+                rows.put(weather.getTimestamp(), weather);
+            }
+        }
+        for (LocalDateTime datetime : cluster) {
+            Map.Entry<LocalDateTime, Weather> entry = rows.floorEntry(datetime);
+            if (entry != null) {
+                resolved.put(datetime, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Adds freshly persisted observations and, in bounded mode, drops observations that left the horizon
+     */
+    public synchronized void append(Collection<Weather> observations) {
+        Map<City, CityIndex> current = indexes;
+        for (Weather weather : observations) {
+            City city = City.fromStationName(weather.getStationName());
+            if (city != null) {
+                current.get(city).rows.put(weather.getTimestamp(), weather);
+            }
+        }
+        if (horizon != null) {
+            LocalDateTime cutoff = horizonStart();
+            current.values().forEach(index -> index.evictBefore(cutoff));
+        }
+    }
+
+    /**
+     * Drops observations that were deleted from the database
+     */
+    public synchronized void remove(Collection<Weather> observations) {
+        Map<City, CityIndex> current = indexes;
+        for (Weather weather : observations) {
+            City city = City.fromStationName(weather.getStationName());
+            if (city != null) {
+                current.get(city).rows.remove(weather.getTimestamp(), weather);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        LocalDateTime cutoff = horizon == null ? null : horizonStart();
+        Map<City, CityIndex> reloaded = new EnumMap<>(City.class);
+        for (City city : City.values()) {
+            List<Weather> rows = cutoff == null
+                    ? weatherRepository.getWeatherForStation(city.getStationName())
+                    : weatherRepository.getWeatherForStationSince(city.getStationName(), cutoff);
+            CityIndex index = new CityIndex(cutoff);
+            rows.forEach(weather -> index.rows.put(weather.getTimestamp(), weather));
+            reloaded.put(city, index);
+            log.info("Indexed {} weather observations for {}{}", rows.size(), city.getStationName(),
+                    cutoff == null ? "" : " since " + cutoff);
+        }
+        indexes = reloaded;
+    }
+
+    private LocalDateTime horizonStart() {
+        return LocalDateTime.now(ZoneOffset.UTC).minus(horizon);
+    }
+
+    /**
+     * Observations of one city. All rows with a timestamp at or after {@code lowWatermark} are present;
+     * a null watermark means the full history is held.
+     */
+    private static final class CityIndex {
+
+        private final ConcurrentSkipListMap<LocalDateTime, Weather> rows = new ConcurrentSkipListMap<>();
+        private volatile LocalDateTime lowWatermark;
+
+        private CityIndex(LocalDateTime lowWatermark) {
+            this.lowWatermark = lowWatermark;
+        }
+
+        private boolean complete() {
+            return lowWatermark == null;
+        }
+
+        private void evictBefore(LocalDateTime cutoff) {
+            lowWatermark = cutoff;
+            rows.headMap(cutoff).clear();
+        }
+    }
+}
@@ -2,91 +2,305 @@ package com.calculation.fee.delivery.service;
 
 import com.calculation.fee.delivery.model.City;
 import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
 import com.calculation.fee.delivery.repository.WeatherRepository;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.calculation.fee.delivery.model.xml.Observation;
 import com.calculation.fee.delivery.model.xml.Station;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class WeatherImport {
 
-    private static final List<String> REQUIRED_STATIONS = Arrays.stream(City.values())
+    public static final String STAGE_TIMER = "weather.import.stage";
+    public static final String RUN_COUNTER = "weather.import.runs";
+    public static final String RECORD_COUNTER = "weather.import.records";
+    public static final String OBSERVATION_AGE_GAUGE = "weather.observation.age";
+
+    static final List<String> REQUIRED_STATIONS = Arrays.stream(City.values())
             .map(City::getStationName)
             .collect(Collectors.toList());
 
     private final WeatherRepository weatherRepository;
+    private final LatestWeatherCache latestWeatherCache;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final WeatherHistoryStore weatherHistoryStore;
     private final RestTemplate restTemplate;
-    private final XmlMapper xmlMapper;
+    private final ObservationStreamParser observationParser;
+
+    private final AtomicLong notModifiedResponses = new AtomicLong();
+    private final AtomicLong fetchedRecords = new AtomicLong();
+    private final AtomicLong unchangedRecords = new AtomicLong();
+    private final AtomicLong insertedRecords = new AtomicLong();
+
+    private final Timer fetchTimer;
+    private final Timer parseTimer;
+    private final Timer persistTimer;
+    private final Counter importedRuns;
+    private final Counter notModifiedRuns;
+    private final Counter failedRuns;
+
+    /**
+     * Validators of the last response whose observations were imported, sent back as If-None-Match and If-Modified-Since
+     */
+    private volatile String eTag;
+    private volatile String lastModified;
 
     @Value("${weather.api.url:https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php}")
     private String weatherApiUrl;
 
-    public WeatherImport(WeatherRepository weatherRepository) {
+    public WeatherImport(WeatherRepository weatherRepository, LatestWeatherCache latestWeatherCache,
+                         WeatherHistoryIndex weatherHistoryIndex, WeatherHistoryStore weatherHistoryStore,
+                         MeterRegistry meterRegistry,
+                         @Value("${weather.api.connect-timeout:5s}") Duration connectTimeout,
+                         @Value("${weather.api.read-timeout:20s}") Duration readTimeout) {
         this.weatherRepository = weatherRepository;
-        this.restTemplate = new RestTemplate();
-        this.xmlMapper = new XmlMapper();
+        this.latestWeatherCache = latestWeatherCache;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.weatherHistoryStore = weatherHistoryStore;
+        // The connect timeout keeps a stalled host from holding the scheduler thread, the read timeout a stalled feed
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.observationParser = new ObservationStreamParser(REQUIRED_STATIONS);
+
+        this.fetchTimer = stageTimer(meterRegistry, "fetch");
+        this.parseTimer = stageTimer(meterRegistry, "parse");
+        this.persistTimer = stageTimer(meterRegistry, "persist");
+        this.importedRuns = runCounter(meterRegistry, "imported");
+        this.notModifiedRuns = runCounter(meterRegistry, "not_modified");
+        this.failedRuns = runCounter(meterRegistry, "failed");
+        recordCounter(meterRegistry, "fetched", fetchedRecords);
+        recordCounter(meterRegistry, "unchanged", unchangedRecords);
+        recordCounter(meterRegistry, "inserted", insertedRecords);
+        for (City city : City.values()) {
+            Gauge.builder(OBSERVATION_AGE_GAUGE, latestWeatherCache, cache -> observationAgeSeconds(cache.get(city)))
+                    .description("Age of the newest observation held for the station")
+                    .tag("station", city.getStationName())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Time spent in one stage of a weather import run")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private static Counter runCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(RUN_COUNTER)
+                .description("Weather import runs by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void recordCounter(MeterRegistry meterRegistry, String state, AtomicLong count) {
+        FunctionCounter.builder(RECORD_COUNTER, count, AtomicLong::doubleValue)
+                .description("Station records seen by weather imports")
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Observation timestamps are stored in UTC; a station without an observation has no age
+     */
+    private static double observationAgeSeconds(Weather weather) {
+        if (weather == null || weather.getTimestamp() == null) {
+            return Double.NaN;
+        }
+        return Duration.between(weather.getTimestamp(), LocalDateTime.now(ZoneOffset.UTC)).getSeconds();
     }
 
     /**
      * Imports weather data from the Estonian Environment Agency and saves it to the database.
      * <p>
      * This method is scheduled to run periodically (default: every hour at HH:15:00) to fetch weather data
-     * from the configured URL (<a href="https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php">...</a>). It processes
-     * the XML response and extracts weather data for the stations Tallinn-Harku, Tartu-Tõravere, and Pärnu.
+     * from the configured URL (<a href="https://www.ilmateenistus.ee/ilma_andmed/xml/observations.php">...</a>). It streams
+     * the XML response through an {@link ObservationStreamParser} and extracts weather data only for the stations
+     * Tallinn-Harku, Tartu-Tõravere, and Pärnu; the other stations of the feed are skipped without being bound.
      * The data includes air temperature, wind speed, weather phenomenon etc., and a timestamp, which are saved to
-     * the database as a Weather entity, preserving historical records.
+     * the database as Weather entities in one transaction with batched inserts, preserving historical records. Once
+     * all stations are persisted, the new observations are published to the {@link LatestWeatherCache} used by
+     * current-time fee quotes and appended to the {@link WeatherHistoryIndex} used by historical ones and, if enabled, to
+     * the {@link WeatherHistoryStore}.
+     * </p>
+     * <p>
+     * The request carries the ETag and Last-Modified validators of the last imported response, so an unchanged feed is
+     * answered with 304 Not Modified and nothing is parsed. A station whose observation timestamp is not newer than the
+     * latest row already held for it is skipped, so running the import more often than the feed updates adds no rows.
+     * </p>
+     * <p>
+     * Each run is counted by result in {@value #RUN_COUNTER}, and the fetch, parse and persist stages are timed in
+     * {@value #STAGE_TIMER}. Parsing streams from the open response, so the fetch stage is the request time without the
+     * time spent parsing.
      * </p>
      * <p>
-     * If the data fetch or parsing fails (e.g., due to network issues, invalid XML, or missing data), an error
-     * is logged, and the process continues on the next scheduled run. The method handles null or empty values
-     * gracefully by setting corresponding fields to null in the Weather entity.
+     * If the data fetch or parsing fails (e.g., due to network issues, a connect or read timeout, invalid XML, or missing
+     * data), an error is logged, and the process continues on the next scheduled run. The method handles null or empty
+     * values gracefully by setting corresponding fields to null in the Weather entity.
      * </p>
      */
     @Scheduled(cron = "${weather.import.cron:0 15 * * * *}")
     public void importWeatherData() {
         try {
             log.info("Starting weather data import from {}", weatherApiUrl);
-            String xmlData = restTemplate.getForObject(weatherApiUrl, String.class);
-            log.info("Raw XML response: {}", xmlData);
-            if (xmlData == null) {
+            long started = System.nanoTime();
+            FetchedFeed feed = restTemplate.execute(weatherApiUrl, HttpMethod.GET, this::addValidators, this::readFeed);
+            if (feed == null) {
+                failedRuns.increment();
                 log.error("Failed to fetch weather data: response is null");
                 return;
             }
-
-            Observation observation = xmlMapper.readValue(xmlData, Observation.class);
-            log.info("Parsed observation: stations count = {}", observation.getStations() != null ? observation.getStations().size() : 0);
-            if (observation == null || observation.getStations() == null) {
-                log.error("Failed to parse weather data: observation or stations list is null");
+            fetchTimer.record(System.nanoTime() - started - feed.parseNanos(), TimeUnit.NANOSECONDS);
+            if (feed.notModified()) {
+                notModifiedResponses.incrementAndGet();
+                notModifiedRuns.increment();
+                log.info("Weather data not modified since the last import");
                 return;
             }
+            Observation observation = feed.observation();
+            log.info("Parsed observation: required stations found = {}", observation.getStations().size());
 
             LocalDateTime observationTime = parseTimestamp(observation.getTimestamp());
 
+            List<Weather> rows = new ArrayList<>(observation.getStations().size());
+            int unchanged = 0;
             for (Station station : observation.getStations()) {
-                if (station != null && REQUIRED_STATIONS.contains(station.getName())) {
-                    saveWeatherData(station, observationTime);
+                fetchedRecords.incrementAndGet();
+                City city = City.fromStationName(station.getName());
+                if (isAlreadyImported(city, observationTime)) {
+                    unchanged++;
+                    continue;
                 }
+                rows.add(toWeather(station, observationTime));
             }
+            Map<City, Weather> imported = new EnumMap<>(City.class);
+            for (Weather saved : saveWeatherData(rows)) {
+                imported.put(City.fromStationName(saved.getStationName()), saved);
+            }
+            unchangedRecords.addAndGet(unchanged);
+            insertedRecords.addAndGet(imported.size());
+            latestWeatherCache.publish(imported);
+            weatherHistoryIndex.append(imported.values());
+            weatherHistoryStore.append(imported.values());
+            eTag = feed.eTag();
+            lastModified = feed.lastModified();
+            importedRuns.increment();
 
-            log.info("Weather data import completed successfully");
+            log.info("Weather data import completed successfully: {} inserted, {} unchanged", imported.size(), unchanged);
         } catch (Exception e) {
+            failedRuns.increment();
             log.error("Error during weather data import: {}", e.getMessage(), e);
         }
     }
 
-    private void saveWeatherData(Station station, LocalDateTime timestamp) {
+    /**
+     * Returns the totals of all imports since startup
+     */
+    public WeatherImportCounters counters() {
+        return new WeatherImportCounters(notModifiedResponses.get(), fetchedRecords.get(), unchangedRecords.get(), insertedRecords.get());
+    }
+
+    /**
+     * Makes the request conditional on the validators of the last successfully imported response
+     */
+    private void addValidators(ClientHttpRequest request) {
+        String knownETag = eTag;
+        String knownLastModified = lastModified;
+        if (knownETag != null) {
+            request.getHeaders().setIfNoneMatch(knownETag);
+        }
+        if (knownLastModified != null) {
+            request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, knownLastModified);
+        }
+    }
+
+    private FetchedFeed readFeed(ClientHttpResponse response) throws IOException {
+        if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            return FetchedFeed.NOT_MODIFIED;
+        }
+        HttpHeaders headers = response.getHeaders();
+        long started = System.nanoTime();
+        Observation observation = parseObservation(response.getBody());
+        long parseNanos = System.nanoTime() - started;
+        parseTimer.record(parseNanos, TimeUnit.NANOSECONDS);
+        return new FetchedFeed(observation, headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED), parseNanos);
+    }
+
+    /**
+     * An observation is already imported if the station's latest row is at least as new, so a feed that has not
+     * moved on since the last run, or has gone back in time, adds no rows
+     */
+    private boolean isAlreadyImported(City city, LocalDateTime observationTime) {
+        Weather latest = latestWeatherCache.get(city);
+        return latest != null && !observationTime.isAfter(latest.getTimestamp());
+    }
+
+    /**
+     * Streams an observations.php payload and keeps only the required stations
+     *
+     * @throws IOException If the payload cannot be read or is not well-formed XML
+     */
+    public Observation parseObservation(InputStream xmlData) throws IOException {
+        try {
+            return observationParser.parse(xmlData);
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid observations XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Persists the rows of one import run in a single transaction; with sequence-generated ids Hibernate sends the
+     * inserts as JDBC batches of {@code hibernate.jdbc.batch_size}
+     */
+    private List<Weather> saveWeatherData(List<Weather> rows) {
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        long started = System.nanoTime();
+        List<Weather> saved = weatherRepository.saveAll(rows);
+        persistTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.info("Saved weather data for {} stations", saved.size());
+        return saved;
+    }
+
+    /**
+     * Maps a parsed station of the feed to a weather row; also used by {@link WeatherBackfill} for archived feeds
+     */
+    static Weather toWeather(Station station, LocalDateTime timestamp) {
         Weather weatherData = new Weather();
         weatherData.setStationName(station.getName());
         weatherData.setWmoCode(station.getWmoCode());
@@ -101,9 +315,7 @@ public class WeatherImport {
 
         weatherData.setWeatherPhenomenon(station.getPhenomenon());
         weatherData.setTimestamp(timestamp);
-
-        weatherRepository.save(weatherData);
-        log.info("Saved weather data for station: {}", station.getName());
+        return weatherData;
     }
 
     private LocalDateTime parseTimestamp(String timestamp) {
@@ -120,7 +332,7 @@ public class WeatherImport {
         }
     }
 
-    private Double parseNumericValue(String value) {
+    private static Double parseNumericValue(String value) {
         if (value == null || value.trim().isEmpty()) return null;
         try {
             String[] parts = value.split("[ /><]");
@@ -135,4 +347,17 @@ public class WeatherImport {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * A fetched response: either not modified, or the parsed observation with the validators to send next time and
+     * the time it took to parse
+     */
+    private record FetchedFeed(boolean notModified, Observation observation, String eTag, String lastModified, long parseNanos) {
+
+        private static final FetchedFeed NOT_MODIFIED = new FetchedFeed(true, null, null, null, 0);
+
+        private FetchedFeed(Observation observation, String eTag, String lastModified, long parseNanos) {
+            this(false, observation, eTag, lastModified, parseNanos);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.calculation.fee.delivery.service;
+
+/**
+ * Totals of all weather imports since startup
+ *
+ * @param notModified Responses answered with 304 Not Modified, where nothing was parsed
+ * @param fetched     Observations of the required stations found in modified responses
+ * @param unchanged   Fetched observations that were skipped because the station already had them
+ * @param inserted    Fetched observations that were persisted
+ */
+public record WeatherImportCounters(long notModified, long fetched, long unchanged, long inserted) {
+}
@@ -0,0 +1,43 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.PhenomenonClass;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fills the phenomenon_class column of weather rows stored before it existed.
+ * <p>
+ * The feed only uses a few dozen phenomenon texts, so rather than loading every row the backfill classifies each
+ * distinct unclassified phenomenon once and updates all of its rows with one statement. Rows written since then are
+ * classified on import and are not touched.
+ * </p>
+ */
+@Service
+@Slf4j
+public class WeatherPhenomenonBackfill {
+
+    private final WeatherRepository weatherRepository;
+
+    public WeatherPhenomenonBackfill(WeatherRepository weatherRepository) {
+        this.weatherRepository = weatherRepository;
+    }
+
+    /**
+     * Classifies all unclassified rows
+     */
+    @PostConstruct
+    public void backfill() {
+        int updated = 0;
+        for (String phenomenon : weatherRepository.getUnclassifiedPhenomena()) {
+            PhenomenonClass phenomenonClass = PhenomenonClass.classify(phenomenon);
+            updated += phenomenon == null
+                    ? weatherRepository.classifyMissingPhenomenon(phenomenonClass)
+                    : weatherRepository.classifyPhenomenon(phenomenon, phenomenonClass);
+        }
+        if (updated > 0) {
+            log.info("Classified the weather phenomenon of {} stored observations", updated);
+        }
+    }
+}
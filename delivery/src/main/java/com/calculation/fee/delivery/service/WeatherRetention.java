@@ -0,0 +1,134 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compacts weather history older than the full-resolution window.
+ * <p>
+ * Observations inside {@code weather.retention.full-resolution} are kept as imported. Older ones are read per station,
+ * oldest first with ties in id order, in pages of {@code weather.retention.batch-size} rows that continue after the
+ * timestamp and id of the previous page's last row, and an observation is deleted when its
+ * {@link DeliveryFee#feeInputs(Weather) fee inputs} equal those of the observation kept before it. A datetime that
+ * resolved to a deleted row then resolves to that earlier row, which gives the same quote, so historical quotes do not
+ * change. Rows are deleted in batches of at most {@code batch-size} ids, each in its own short transaction, so quotes
+ * and imports are never blocked behind one large delete.
+ * </p>
+ * <p>
+ * Deleted rows are counted in {@value #DELETED_COUNTER}.
+ * </p>
+ */
+@Service
+@Slf4j
+public class WeatherRetention {
+
+    static final String DELETED_COUNTER = "weather.retention.deleted";
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1, 1, 1, 0, 0);
+
+    private final WeatherRepository weatherRepository;
+    private final WeatherHistoryIndex weatherHistoryIndex;
+    private final HistoricalQuoteCache historicalQuoteCache;
+    private final Duration fullResolution;
+    private final int batchSize;
+    private final Counter deletedRows;
+
+    public WeatherRetention(WeatherRepository weatherRepository, WeatherHistoryIndex weatherHistoryIndex,
+                            HistoricalQuoteCache historicalQuoteCache, MeterRegistry meterRegistry,
+                            @Value("${weather.retention.full-resolution:P90D}") Duration fullResolution,
+                            @Value("${weather.retention.batch-size:1000}") int batchSize) {
+        this.weatherRepository = weatherRepository;
+        this.weatherHistoryIndex = weatherHistoryIndex;
+        this.historicalQuoteCache = historicalQuoteCache;
+        this.fullResolution = fullResolution;
+        this.batchSize = batchSize;
+        this.deletedRows = Counter.builder(DELETED_COUNTER)
+                .description("Weather observations deleted by history compaction")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${weather.retention.cron:0 30 3 * * *}")
+    public void compactHistory() {
+        try {
+            compact(LocalDateTime.now(ZoneOffset.UTC).minus(fullResolution));
+        } catch (RuntimeException e) {
+            log.error("Weather history compaction failed", e);
+        }
+    }
+
+    /**
+     * Deletes the observations before the cutoff whose fee inputs did not change since the previous kept observation
+     *
+     * @return The number of deleted observations
+     */
+    public int compact(LocalDateTime cutoff) {
+        int deleted = 0;
+        for (City city : City.values()) {
+            deleted += compact(city, cutoff);
+        }
+        if (deleted > 0) {
+            historicalQuoteCache.clear();
+        }
+        log.info("Compacted weather history before {}: deleted {} observations", cutoff, deleted);
+        return deleted;
+    }
+
+    private int compact(City city, LocalDateTime cutoff) {
+        PageRequest page = PageRequest.ofSize(batchSize);
+        List<Weather> redundant = new ArrayList<>(batchSize);
+        DeliveryFee.FeeInputs kept = null;
+        LocalDateTime after = BEGINNING;
+        Long afterId = 0L;
+        int deleted = 0;
+        List<Weather> rows;
+        do {
+            rows = weatherRepository.getWeatherForStationPageAfterRow(city.getStationName(), after, afterId, cutoff, page);
+            for (Weather weather : rows) {
+                DeliveryFee.FeeInputs inputs = DeliveryFee.feeInputs(weather);
+                if (inputs.equals(kept)) {
+                    redundant.add(weather);
+                } else {
+                    kept = inputs;
+                }
+            }
+            if (!rows.isEmpty()) {
+                Weather last = rows.get(rows.size() - 1);
+                after = last.getTimestamp();
+                afterId = last.getId();
+            }
+            while (redundant.size() >= batchSize) {
+                deleted += delete(redundant.subList(0, batchSize));
+            }
+        } while (rows.size() == batchSize);
+        if (!redundant.isEmpty()) {
+            deleted += delete(redundant);
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes the observations in one batch and clears the list
+     */
+    private int delete(List<Weather> batch) {
+        int count = batch.size();
+        weatherRepository.deleteAllByIdInBatch(batch.stream().map(Weather::getId).toList());
+        weatherHistoryIndex.remove(batch);
+        deletedRows.increment(count);
+        batch.clear();
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable view of the latest weather observation per city.
+ * <p>
+ * A snapshot is never modified after construction; a new weather import produces a new snapshot
+ * through {@link #withUpdates(Map)} which is then published by {@link LatestWeatherCache}.
+ * </p>
+ */
+public final class WeatherSnapshot {
+
+    static final WeatherSnapshot EMPTY = new WeatherSnapshot(new EnumMap<>(City.class));
+
+    private final EnumMap<City, Weather> latest;
+
+    private WeatherSnapshot(EnumMap<City, Weather> latest) {
+        this.latest = latest;
+    }
+
+    static WeatherSnapshot of(Map<City, Weather> weather) {
+        return EMPTY.withUpdates(weather);
+    }
+
+    /**
+     * Returns the latest weather for the given city, or null if nothing has been imported for it yet
+     */
+    public Weather get(City city) {
+        return latest.get(city);
+    }
+
+    /**
+     * Creates a new snapshot where the given observations replace the current ones. An observation older than
+     * the one already held for the same city is ignored, so a late or replayed import can never move a city back in time.
+     */
+    WeatherSnapshot withUpdates(Map<City, Weather> updates) {
+        EnumMap<City, Weather> merged = new EnumMap<>(City.class);
+        merged.putAll(latest);
+        updates.forEach((city, weather) -> {
+            Weather current = merged.get(city);
+            if (current == null || !weather.getTimestamp().isBefore(current.getTimestamp())) {
+                merged.put(city, weather);
+            }
+        });
+        return new WeatherSnapshot(merged);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("WeatherSnapshot{");
+        latest.forEach((city, weather) -> builder.append(city).append('=').append(weather.getTimestamp()).append(' '));
+        return builder.append('}').toString();
+    }
+}
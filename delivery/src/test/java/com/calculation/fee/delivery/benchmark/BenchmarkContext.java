@@ -0,0 +1,62 @@
+package com.calculation.fee.delivery.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.calculation.fee.delivery.DeliveryApplication;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application for benchmarks: no scheduled import and quiet logging, but the real H2 database and JPA
+ * repositories. The web server is only started by {@link #startWeb}.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Starts the context; each property is given as key=value and overrides application.yml
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Starts the context with the embedded web server on a free port, for benchmarks that go through HTTP; the port
+     * is {@code local.server.port} of the returned context's environment. Tomcat is started unless the properties set
+     * {@code spring.main.web-application-type=reactive}.
+     */
+    public static ConfigurableApplicationContext startWeb(String... properties) {
+        List<String> webProperties = new ArrayList<>(List.of(properties));
+        webProperties.add("server.port=0");
+        return run(WebApplicationType.SERVLET, webProperties.toArray(String[]::new));
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType webApplicationType, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--weather.import.cron=-",
+                "--spring.jpa.show-sql=false",
+                "--spring.datasource.url=jdbc:h2:mem:benchmark_" + System.nanoTime(),
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(DeliveryApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Raises the root log level to WARN for benchmarks that use the services without a Spring context
+     */
+    public static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+}
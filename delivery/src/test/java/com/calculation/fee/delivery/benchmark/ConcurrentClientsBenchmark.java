@@ -0,0 +1,165 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import com.calculation.fee.delivery.service.WeatherHistoryIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+
+/**
+ * Load test of GET /api/delivery-fee with 5000 concurrent clients against three servers: Tomcat with its default pool
+ * of 200 platform request threads ({@code platform}), Tomcat on virtual threads ({@code virtual}), and Netty with the
+ * reactive controller ({@code reactive}).
+ * <p>
+ * One operation is a wave: every client sends {@code requestsPerClient} requests one after another, and the wave ends
+ * when the last response has arrived. Requests per second are {@code clients * requestsPerClient} divided by the wave
+ * time. {@code currentFee} is answered from memory; {@code coldHistoricalFee} asks for datetimes outside the one-day
+ * {@code weather.history.horizon} with the historical quote cache disabled, so every request needs a JDBC query
+ * through the Hikari pool, which the reactive server runs on the bounded elastic scheduler. The clients always run on
+ * virtual threads so that only the server side differs. A 403 for a scooter or bike in strong wind is an answer; any
+ * other status or an exception fails the wave, and the failure lists how many requests got each status or exception. The client opens one connection per client, so raise {@code ulimit -n}
+ * above 10000 before running. Pass e.g. {@code -p clients=20000} to look for the point where a server stops keeping up.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ConcurrentClientsBenchmark {
+
+    private static final DateTimeFormatter DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    @Param({"platform", "virtual", "reactive"})
+    public String server;
+
+    @Param({"currentFee", "coldHistoricalFee"})
+    public String request;
+
+    @Param("5000")
+    public int clients;
+
+    @Param("4")
+    public int requestsPerClient;
+
+    /**
+     * Imported hours of history per station
+     */
+    @Param("2160")
+    public int hoursOfHistory;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private ExecutorService clientThreads;
+    private HttpRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.startWeb(
+                "spring.main.web-application-type=" + (server.equals("reactive") ? "reactive" : "servlet"),
+                "spring.threads.virtual.enabled=" + server.equals("virtual"),
+                "weather.history.horizon=P1D",
+                "delivery.history-cache.max-entries=0");
+        WeatherRepository weatherRepository = context.getBean(WeatherRepository.class);
+        BusinessRuleRepository businessRuleRepository = context.getBean(BusinessRuleRepository.class);
+
+        LocalDateTime start = LocalDateTime.now().withNano(0).minusHours(hoursOfHistory);
+        List<Weather> rows = new ArrayList<>();
+        for (int hour = 0; hour < hoursOfHistory; hour++) {
+            for (City city : City.values()) {
+                Weather weather = new Weather();
+                weather.setStationName(city.getStationName());
+                weather.setWmoCode("26000");
+                weather.setAirTemperature(-5.0 + hour % 15);
+                weather.setWindSpeed((double) (hour % 25));
+                weather.setWeatherPhenomenon(hour % 3 == 0 ? "Light rain" : "Clear");
+                weather.setTimestamp(start.plusHours(hour));
+                rows.add(weather);
+            }
+        }
+        weatherRepository.saveAll(rows);
+        BusinessRule businessRule = createBusinessRule();
+        businessRule.setTimestamp(start.minusDays(1));
+        businessRuleRepository.save(businessRule);
+        context.getBean(LatestWeatherCache.class).reload();
+        context.getBean(BusinessRuleCache.class).reload();
+        context.getBean(WeatherHistoryIndex.class).reload();
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/delivery-fee";
+        String[] cities = {"Tallinn", "Tartu", "Parnu"};
+        String[] vehicleTypes = {"Car", "Scooter", "Bike"};
+        requests = new HttpRequest[64];
+        for (int i = 0; i < requests.length; i++) {
+            String url = baseUrl + "?city=" + cities[i % 3] + "&vehicleType=" + vehicleTypes[i / 3 % 3];
+            if (request.equals("coldHistoricalFee")) {
+                url += "&datetime=" + start.plusHours(24 + i * 29L % (hoursOfHistory - 48)).plusMinutes(17).format(DATETIME);
+            }
+            requests[i] = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(60)).GET().build();
+        }
+        clientThreads = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        clientThreads.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int wave() {
+        Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        try (ExecutorService wave = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < clients; client++) {
+                int first = client;
+                wave.execute(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        try {
+                            HttpResponse<Void> response = httpClient.send(requests[(first + i) % requests.length],
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200 && response.statusCode() != 403) {
+                                failures.computeIfAbsent("HTTP " + response.statusCode(), key -> new LongAdder()).increment();
+                            }
+                        } catch (Exception e) {
+                            failures.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(),
+                                    key -> new LongAdder()).increment();
+                        }
+                    }
+                });
+            }
+        }
+        if (!failures.isEmpty()) {
+            long failed = failures.values().stream().mapToLong(LongAdder::sum).sum();
+            throw new IllegalStateException(failed + " of " + clients * requestsPerClient + " requests failed: " + failures);
+        }
+        return clients * requestsPerClient;
+    }
+}
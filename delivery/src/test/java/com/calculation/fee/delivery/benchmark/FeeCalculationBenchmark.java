@@ -0,0 +1,191 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.exception.UsageForbiddenException;
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.DeliveryFee;
+import com.calculation.fee.delivery.service.FeeMetrics;
+import com.calculation.fee.delivery.service.FeeTableCache;
+import com.calculation.fee.delivery.service.HistoricalQuoteCache;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import com.calculation.fee.delivery.service.QuoteTracer;
+import com.calculation.fee.delivery.service.WeatherHistoryIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of {@link DeliveryFee#calculateDeliveryFee} for current and historical quotes, without a database.
+ * <p>
+ * The repositories are Mockito mocks that are only read while the caches load, so the measured path is the same one
+ * a request takes. Every invocation quotes the next of the nine city and vehicle type combinations; the weather
+ * parameter decides how many of them end in a {@link UsageForbiddenException}.
+ * </p>
+ * <p>
+ * The {@code *Quote} methods go through the throwing {@link DeliveryFee#calculateDeliveryFee} adapter and the
+ * {@code *QuoteResult} methods through {@link DeliveryFee#quote}; under {@code STORM} and {@code THUNDER}, where scooters
+ * and bikes are forbidden in six of the nine combinations, the difference between the two is the cost of the exceptions.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeeCalculationBenchmark {
+
+    /**
+     * Weather observed at all three stations
+     */
+    public enum Conditions {
+        CLEAR(5.0, 3.0, "Clear"),
+        COLD_AND_WINDY(-12.0, 15.0, "Overcast"),
+        SNOW(-3.0, 8.0, "Moderate snow shower"),
+        STORM(2.0, 24.0, "Moderate rain"),
+        THUNDER(12.0, 6.0, "Thunder");
+
+        private final double airTemperature;
+        private final double windSpeed;
+        private final String phenomenon;
+
+        Conditions(double airTemperature, double windSpeed, String phenomenon) {
+            this.airTemperature = airTemperature;
+            this.windSpeed = windSpeed;
+            this.phenomenon = phenomenon;
+        }
+    }
+
+    @Param
+    public Conditions conditions;
+
+    /**
+     * Imported hours of history per station
+     */
+    @Param("2160")
+    public int hoursOfHistory;
+
+    private DeliveryFee deliveryFee;
+    private LocalDateTime historyStart;
+    private City[] cities;
+    private VehicleType[] vehicleTypes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkContext.quietLogging();
+        historyStart = LocalDateTime.now().minusHours(hoursOfHistory);
+        WeatherRepository weatherRepository = mock(WeatherRepository.class);
+        for (City city : City.values()) {
+            List<Weather> history = new ArrayList<>();
+            for (int hour = 0; hour < hoursOfHistory; hour++) {
+                history.add(weather(city, historyStart.plusHours(hour)));
+            }
+            when(weatherRepository.getLatestWeatherForStation(city.getStationName()))
+                    .thenReturn(Optional.of(history.get(history.size() - 1)));
+            when(weatherRepository.getWeatherForStation(city.getStationName()))
+                    .thenReturn(history);
+        }
+        BusinessRule businessRule = createBusinessRule();
+        businessRule.setTimestamp(historyStart.minusDays(1));
+        BusinessRuleRepository businessRuleRepository = mock(BusinessRuleRepository.class);
+        when(businessRuleRepository.findAll(any(Sort.class)))
+                .thenReturn(List.of(businessRule));
+
+        FeeTableCache feeTableCache = new FeeTableCache();
+
+        LatestWeatherCache latestWeatherCache = new LatestWeatherCache(weatherRepository, feeTableCache);
+        latestWeatherCache.reload();
+        BusinessRuleCache businessRuleCache = new BusinessRuleCache(businessRuleRepository, feeTableCache);
+        businessRuleCache.reload();
+        WeatherHistoryIndex weatherHistoryIndex = new WeatherHistoryIndex(weatherRepository, null);
+        weatherHistoryIndex.reload();
+        deliveryFee = new DeliveryFee(feeTableCache, businessRuleCache, weatherHistoryIndex,
+                new HistoricalQuoteCache(weatherRepository, new SimpleMeterRegistry(), 10000, Duration.ofHours(1)),
+                QuoteTracer.off(),
+                new FeeMetrics(new SimpleMeterRegistry()));
+
+        int combinations = City.values().length * VehicleType.values().length;
+        cities = new City[combinations];
+        vehicleTypes = new VehicleType[combinations];
+        int i = 0;
+        for (City city : City.values()) {
+            for (VehicleType vehicleType : VehicleType.values()) {
+                cities[i] = city;
+                vehicleTypes[i] = vehicleType;
+                i++;
+            }
+        }
+    }
+
+    private Weather weather(City city, LocalDateTime timestamp) {
+        Weather weather = new Weather();
+        weather.setStationName(city.getStationName());
+        weather.setWmoCode("26000");
+        weather.setAirTemperature(conditions.airTemperature);
+        weather.setWindSpeed(conditions.windSpeed);
+        weather.setWeatherPhenomenon(conditions.phenomenon);
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+
+    @Benchmark
+    public void currentQuote(Blackhole blackhole) {
+        int i = nextCombination();
+        try {
+            blackhole.consume(deliveryFee.calculateDeliveryFee(cities[i], vehicleTypes[i], null));
+        } catch (UsageForbiddenException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void historicalQuote(Blackhole blackhole) {
+        int i = nextCombination();
+        LocalDateTime datetime = historyStart.plusMinutes(ThreadLocalRandom.current().nextLong(hoursOfHistory * 60L));
+        try {
+            blackhole.consume(deliveryFee.calculateDeliveryFee(cities[i], vehicleTypes[i], datetime));
+        } catch (UsageForbiddenException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public FeeQuote currentQuoteResult() {
+        int i = nextCombination();
+        return deliveryFee.quote(cities[i], vehicleTypes[i], null);
+    }
+
+    @Benchmark
+    public FeeQuote historicalQuoteResult() {
+        int i = nextCombination();
+        LocalDateTime datetime = historyStart.plusMinutes(ThreadLocalRandom.current().nextLong(hoursOfHistory * 60L));
+        return deliveryFee.quote(cities[i], vehicleTypes[i], datetime);
+    }
+
+    private int nextCombination() {
+        int i = next;
+        next = i + 1 == cities.length ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,111 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.DeliveryFee;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import com.calculation.fee.delivery.service.WeatherHistoryIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+
+/**
+ * Historical quotes outside the one-day {@code weather.history.horizon}, with the historical quote cache disabled
+ * ({@code maxEntries=0}) and enabled.
+ * <p>
+ * Each quote picks a random city, vehicle type and minute from a pool of {@code distinctHours} past hours, the way
+ * reconciliation jobs ask for the same past periods again and again. Every minute of an hour resolves to the same
+ * hourly observation, so with the cache all datetimes of an hour share one entry. Without it every quote runs the
+ * at-or-before query. Runs with many threads so that concurrent misses for the same datetime occur.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class HistoricalQuoteBenchmark {
+
+    @Param({"0", "10000"})
+    public int maxEntries;
+
+    /**
+     * Imported hours of history per station
+     */
+    @Param("2160")
+    public int hoursOfHistory;
+
+    /**
+     * Past hours that quotes are asked for
+     */
+    @Param("500")
+    public int distinctHours;
+
+    private ConfigurableApplicationContext context;
+    private DeliveryFee deliveryFee;
+    private LocalDateTime start;
+    private City[] cities;
+    private VehicleType[] vehicleTypes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(
+                "weather.history.horizon=P1D",
+                "delivery.history-cache.max-entries=" + maxEntries);
+        WeatherRepository weatherRepository = context.getBean(WeatherRepository.class);
+        BusinessRuleRepository businessRuleRepository = context.getBean(BusinessRuleRepository.class);
+
+        start = LocalDateTime.now().withNano(0).minusHours(hoursOfHistory);
+        List<Weather> rows = new ArrayList<>();
+        for (int hour = 0; hour < hoursOfHistory; hour++) {
+            for (City city : City.values()) {
+                Weather weather = new Weather();
+                weather.setStationName(city.getStationName());
+                weather.setWmoCode("26000");
+                weather.setAirTemperature(-5.0 + hour % 15);
+                weather.setWindSpeed((double) (hour % 25));
+                weather.setWeatherPhenomenon(hour % 3 == 0 ? "Light rain" : "Clear");
+                weather.setTimestamp(start.plusHours(hour));
+                rows.add(weather);
+            }
+        }
+        weatherRepository.saveAll(rows);
+        BusinessRule businessRule = createBusinessRule();
+        businessRule.setTimestamp(start.minusDays(1));
+        businessRuleRepository.save(businessRule);
+        context.getBean(LatestWeatherCache.class).reload();
+        context.getBean(BusinessRuleCache.class).reload();
+        context.getBean(WeatherHistoryIndex.class).reload();
+        deliveryFee = context.getBean(DeliveryFee.class);
+        cities = City.values();
+        vehicleTypes = VehicleType.values();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public FeeQuote coldHistoricalQuote() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hour = 24 + random.nextInt(distinctHours) * 3 % (hoursOfHistory - 48);
+        LocalDateTime datetime = start.plusHours(hour).plusMinutes(random.nextInt(60));
+        return deliveryFee.quote(cities[random.nextInt(cities.length)], vehicleTypes[random.nextInt(vehicleTypes.length)], datetime);
+    }
+}
@@ -0,0 +1,84 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency distribution of the current-weather lookup through {@link WeatherRepository} (one
+ * ORDER BY ... LIMIT 1 query per quote) against the in-memory {@link LatestWeatherCache}.
+ * <p>
+ * Runs in sample-time mode with many threads to emulate a high request rate; compare the p0.99 rows of both methods.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class LatestWeatherBenchmark {
+
+    /**
+     * Imported hours of history per station
+     */
+    @Param("2160")
+    public int hoursOfHistory;
+
+    private ConfigurableApplicationContext context;
+    private WeatherRepository weatherRepository;
+    private LatestWeatherCache latestWeatherCache;
+    private City[] cities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        weatherRepository = context.getBean(WeatherRepository.class);
+        latestWeatherCache = context.getBean(LatestWeatherCache.class);
+        cities = City.values();
+
+        LocalDateTime start = LocalDateTime.now().minusHours(hoursOfHistory);
+        List<Weather> rows = new ArrayList<>();
+        for (int hour = 0; hour < hoursOfHistory; hour++) {
+            for (City city : cities) {
+                Weather weather = new Weather();
+                weather.setStationName(city.getStationName());
+                weather.setWmoCode("26000");
+                weather.setAirTemperature(-5.0 + hour % 15);
+                weather.setWindSpeed((double) (hour % 25));
+                weather.setWeatherPhenomenon(hour % 3 == 0 ? "Light rain" : "Clear");
+                weather.setTimestamp(start.plusHours(hour));
+                rows.add(weather);
+            }
+        }
+        weatherRepository.saveAll(rows);
+        latestWeatherCache.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Weather repositoryLookup() {
+        City city = cities[ThreadLocalRandom.current().nextInt(cities.length)];
+        return weatherRepository.getLatestWeatherForStation(city.getStationName()).orElseThrow();
+    }
+
+    @Benchmark
+    public Weather snapshotLookup() {
+        City city = cities[ThreadLocalRandom.current().nextInt(cities.length)];
+        return latestWeatherCache.get(city);
+    }
+}
@@ -0,0 +1,170 @@
+package com.calculation.fee.delivery.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.QuoteTraceSettings;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.DeliveryFee;
+import com.calculation.fee.delivery.service.FeeMetrics;
+import com.calculation.fee.delivery.service.FeeTableCache;
+import com.calculation.fee.delivery.service.HistoricalQuoteCache;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import com.calculation.fee.delivery.service.QuoteTracer;
+import com.calculation.fee.delivery.service.WeatherHistoryIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Quote throughput of {@link DeliveryFee#quote} with the quote trace off, sampling 1% of the quotes, and tracing all.
+ * <p>
+ * The {@value QuoteTracer#LOGGER_NAME} logger is wired like logback-spring.xml does it, through a non-blocking
+ * {@link AsyncAppender}, but writes to target/quote-trace-benchmark.log instead of the console.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class QuoteTraceBenchmark {
+
+    @Param({"0", "0.01", "1"})
+    public double sampleRate;
+
+    /**
+     * Imported hours of history per station
+     */
+    @Param("2160")
+    public int hoursOfHistory;
+
+    private DeliveryFee deliveryFee;
+    private AsyncAppender asyncAppender;
+    private LocalDateTime historyStart;
+    private City[] cities;
+    private VehicleType[] vehicleTypes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkContext.quietLogging();
+        asyncAppender = traceToFile();
+
+        historyStart = LocalDateTime.now().minusHours(hoursOfHistory);
+        WeatherRepository weatherRepository = mock(WeatherRepository.class);
+        for (City city : City.values()) {
+            List<Weather> history = new ArrayList<>();
+            for (int hour = 0; hour < hoursOfHistory; hour++) {
+                Weather weather = new Weather();
+                weather.setId((long) city.ordinal() * hoursOfHistory + hour);
+                weather.setStationName(city.getStationName());
+                weather.setWmoCode("26000");
+                weather.setAirTemperature(-5.0 + hour % 15);
+                weather.setWindSpeed((double) (hour % 25));
+                weather.setWeatherPhenomenon(hour % 3 == 0 ? "Light rain" : "Clear");
+                weather.setTimestamp(historyStart.plusHours(hour));
+                history.add(weather);
+            }
+            when(weatherRepository.getLatestWeatherForStation(city.getStationName()))
+                    .thenReturn(Optional.of(history.get(history.size() - 1)));
+            when(weatherRepository.getWeatherForStation(city.getStationName()))
+                    .thenReturn(history);
+        }
+        BusinessRule businessRule = createBusinessRule();
+        businessRule.setId(1L);
+        businessRule.setTimestamp(historyStart.minusDays(1));
+        BusinessRuleRepository businessRuleRepository = mock(BusinessRuleRepository.class);
+        when(businessRuleRepository.findAll(any(Sort.class)))
+                .thenReturn(List.of(businessRule));
+
+        FeeTableCache feeTableCache = new FeeTableCache();
+
+        LatestWeatherCache latestWeatherCache = new LatestWeatherCache(weatherRepository, feeTableCache);
+        latestWeatherCache.reload();
+        BusinessRuleCache businessRuleCache = new BusinessRuleCache(businessRuleRepository, feeTableCache);
+        businessRuleCache.reload();
+        WeatherHistoryIndex weatherHistoryIndex = new WeatherHistoryIndex(weatherRepository, null);
+        weatherHistoryIndex.reload();
+        QuoteTracer quoteTracer = QuoteTracer.off();
+        quoteTracer.update(new QuoteTraceSettings(sampleRate, Set.of(), Set.of()));
+        deliveryFee = new DeliveryFee(feeTableCache, businessRuleCache, weatherHistoryIndex,
+                new HistoricalQuoteCache(weatherRepository, new SimpleMeterRegistry(), 10000, Duration.ofHours(1)),
+                quoteTracer,
+                new FeeMetrics(new SimpleMeterRegistry()));
+        cities = City.values();
+        vehicleTypes = VehicleType.values();
+    }
+
+    private AsyncAppender traceToFile() {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%d %msg%n");
+        encoder.start();
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(loggerContext);
+        fileAppender.setFile("target/quote-trace-benchmark.log");
+        fileAppender.setAppend(false);
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(loggerContext);
+        async.setQueueSize(8192);
+        async.setDiscardingThreshold(0);
+        async.setNeverBlock(true);
+        async.addAppender(fileAppender);
+        async.start();
+
+        Logger trace = loggerContext.getLogger(QuoteTracer.LOGGER_NAME);
+        trace.detachAndStopAllAppenders();
+        trace.setLevel(ch.qos.logback.classic.Level.INFO);
+        trace.setAdditive(false);
+        trace.addAppender(async);
+        return async;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        asyncAppender.stop();
+    }
+
+    @Benchmark
+    public FeeQuote currentQuote() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return deliveryFee.quote(cities[random.nextInt(cities.length)], vehicleTypes[random.nextInt(vehicleTypes.length)], null);
+    }
+
+    @Benchmark
+    public FeeQuote historicalQuote() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDateTime datetime = historyStart.plusMinutes(random.nextLong(hoursOfHistory * 60L));
+        return deliveryFee.quote(cities[random.nextInt(cities.length)], vehicleTypes[random.nextInt(vehicleTypes.length)], datetime);
+    }
+}
@@ -0,0 +1,189 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.controller.DeliveryFeeController;
+import com.calculation.fee.delivery.exception.InvalidCityName;
+import com.calculation.fee.delivery.exception.InvalidVehicleType;
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeResponse;
+import com.calculation.fee.delivery.model.RequestDatetime;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BatchDeliveryFee;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.DeliveryFee;
+import com.calculation.fee.delivery.service.FeeMetrics;
+import com.calculation.fee.delivery.service.FeeTableCache;
+import com.calculation.fee.delivery.service.HistoricalQuoteCache;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import com.calculation.fee.delivery.service.QuoteCaching;
+import com.calculation.fee.delivery.service.QuoteTracer;
+import com.calculation.fee.delivery.service.WeatherHistoryIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of decoding the city, vehicleType and datetime request parameters, and of a whole GET /api/delivery-fee call
+ * through {@link DeliveryFeeController} without the web server.
+ * <p>
+ * {@code validNames}, {@code invalidNames} and {@code formatterDatetime} measure the previous decoding:
+ * {@link City#fromString} and {@link VehicleType#fromString}, which throw for invalid names, and a
+ * {@link DateTimeFormatter} built per request. The {@code lookup*} and {@code requestDatetime} methods measure the
+ * lookup tables and {@link RequestDatetime}. Run with {@code -prof gc} to compare the bytes allocated per operation.
+ * {@code notModifiedFeeRequest} sends the ETag of the current quote in If-None-Match and is answered without a
+ * calculation.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestDecodingBenchmark {
+
+    private static final String[] CITIES = {"Tallinn", "tartu", "PARNU", "Pärnu", "Tallinn-Harku", "parnu"};
+    private static final String[] VEHICLE_TYPES = {"Car", "scooter", "BIKE", "car", "Scooter", "Bike"};
+    private static final String[] INVALID_CITIES = {"Narva", "Viljandi", "Tallinn Harku"};
+    private static final String[] INVALID_VEHICLE_TYPES = {"Truck", "Motorbike", "Van"};
+    private static final String[] DATETIMES = {"2025-03-22T10:00:00", "2024-02-29T23:59:59", "2025-12-31T00:15:00"};
+
+    private DeliveryFeeController controller;
+    private WebRequest webRequest;
+    private WebRequest revalidation;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkContext.quietLogging();
+        WeatherRepository weatherRepository = mock(WeatherRepository.class);
+        for (City city : City.values()) {
+            Weather weather = new Weather();
+            weather.setStationName(city.getStationName());
+            weather.setWmoCode("26000");
+            weather.setAirTemperature(-3.0);
+            weather.setWindSpeed(8.0);
+            weather.setWeatherPhenomenon("Light snow shower");
+            weather.setTimestamp(LocalDateTime.now());
+            when(weatherRepository.getLatestWeatherForStation(city.getStationName())).thenReturn(Optional.of(weather));
+            when(weatherRepository.getWeatherForStation(city.getStationName())).thenReturn(List.of(weather));
+        }
+        BusinessRule businessRule = createBusinessRule();
+        BusinessRuleRepository businessRuleRepository = mock(BusinessRuleRepository.class);
+        when(businessRuleRepository.findAll(any(Sort.class))).thenReturn(List.of(businessRule));
+
+        FeeTableCache feeTableCache = new FeeTableCache();
+
+        LatestWeatherCache latestWeatherCache = new LatestWeatherCache(weatherRepository, feeTableCache);
+        latestWeatherCache.reload();
+        BusinessRuleCache businessRuleCache = new BusinessRuleCache(businessRuleRepository, feeTableCache);
+        businessRuleCache.reload();
+        WeatherHistoryIndex weatherHistoryIndex = new WeatherHistoryIndex(weatherRepository, null);
+        weatherHistoryIndex.reload();
+        FeeMetrics feeMetrics = new FeeMetrics(new SimpleMeterRegistry());
+        HistoricalQuoteCache historicalQuoteCache = new HistoricalQuoteCache(weatherRepository, new SimpleMeterRegistry(), 10000, Duration.ofHours(1));
+        DeliveryFee deliveryFee = new DeliveryFee(feeTableCache, businessRuleCache, weatherHistoryIndex, historicalQuoteCache,
+                QuoteTracer.off(), feeMetrics);
+        BatchDeliveryFee batchDeliveryFee = new BatchDeliveryFee(deliveryFee, businessRuleCache, weatherHistoryIndex, historicalQuoteCache,
+                Runnable::run);
+        QuoteCaching quoteCaching = new QuoteCaching(latestWeatherCache, businessRuleCache, "10 * * * * *");
+        controller = new DeliveryFeeController(deliveryFee, batchDeliveryFee, feeMetrics, quoteCaching, null,
+                new ObjectMapper());
+        webRequest = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/delivery-fee"), new MockHttpServletResponse());
+        MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/api/delivery-fee");
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, quoteCaching.validator(City.TALLINN, null).etag());
+        revalidation = new ServletWebRequest(conditional, new MockHttpServletResponse());
+    }
+
+    @Benchmark
+    public void validNames(Blackhole blackhole) {
+        int i = next(CITIES.length);
+        blackhole.consume(City.fromString(CITIES[i]));
+        blackhole.consume(VehicleType.fromString(VEHICLE_TYPES[i]));
+    }
+
+    @Benchmark
+    public void invalidNames(Blackhole blackhole) {
+        int i = next(INVALID_CITIES.length);
+        try {
+            blackhole.consume(City.fromString(INVALID_CITIES[i]));
+        } catch (InvalidCityName e) {
+            blackhole.consume(e);
+        }
+        try {
+            blackhole.consume(VehicleType.fromString(INVALID_VEHICLE_TYPES[i]));
+        } catch (InvalidVehicleType e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void lookupValidNames(Blackhole blackhole) {
+        int i = next(CITIES.length);
+        blackhole.consume(City.lookup(CITIES[i]));
+        blackhole.consume(VehicleType.lookup(VEHICLE_TYPES[i]));
+    }
+
+    @Benchmark
+    public void lookupInvalidNames(Blackhole blackhole) {
+        int i = next(INVALID_CITIES.length);
+        blackhole.consume(City.lookup(INVALID_CITIES[i]));
+        blackhole.consume(VehicleType.lookup(INVALID_VEHICLE_TYPES[i]));
+    }
+
+    @Benchmark
+    public LocalDateTime formatterDatetime() {
+        return LocalDateTime.parse(DATETIMES[next(DATETIMES.length)], DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
+    }
+
+    @Benchmark
+    public LocalDateTime requestDatetime() {
+        return RequestDatetime.parse(DATETIMES[next(DATETIMES.length)]);
+    }
+
+    @Benchmark
+    public ResponseEntity<FeeResponse> currentFeeRequest() {
+        int i = next(CITIES.length);
+        return controller.calculateDeliveryFee(CITIES[i], VEHICLE_TYPES[i], null, webRequest);
+    }
+
+    @Benchmark
+    public ResponseEntity<FeeResponse> notModifiedFeeRequest() {
+        return controller.calculateDeliveryFee("Tallinn", "Car", null, revalidation);
+    }
+
+    @Benchmark
+    public ResponseEntity<FeeResponse> invalidFeeRequest() {
+        int i = next(INVALID_CITIES.length);
+        return controller.calculateDeliveryFee(INVALID_CITIES[i], INVALID_VEHICLE_TYPES[i], null, webRequest);
+    }
+
+    private int next(int length) {
+        int i = next % length;
+        next = i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,113 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.SimulationResult;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.RuleSimulation;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to price a draft business rule against {@code observationsPerStation} ten-minute observations of every station,
+ * read from the weather table or from the memory-mapped {@link WeatherHistoryStore}, with one thread versus all
+ * processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleSimulationBenchmark {
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+    @Param("350000")
+    public int observationsPerStation;
+
+    @Param({"false", "true"})
+    public boolean store;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private RuleSimulation ruleSimulation;
+    private BusinessRule draft;
+    private final long[][][] ordersPerHour = new long[City.values().length][VehicleType.values().length][24];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rule-simulation");
+        context = store
+                ? BenchmarkContext.start("delivery.simulation.parallelism=" + parallelism,
+                "weather.history.store.directory=" + directory)
+                : BenchmarkContext.start("delivery.simulation.parallelism=" + parallelism);
+        WeatherRepository weatherRepository = context.getBean(WeatherRepository.class);
+        WeatherHistoryStore weatherHistoryStore = context.getBean(WeatherHistoryStore.class);
+        ruleSimulation = context.getBean(RuleSimulation.class);
+
+        List<Weather> rows = new ArrayList<>();
+        for (int i = 0; i < observationsPerStation; i++) {
+            for (City city : City.values()) {
+                Weather weather = new Weather();
+                weather.setStationName(city.getStationName());
+                weather.setWmoCode("26000");
+                weather.setAirTemperature(-15.0 + i % 35);
+                weather.setWindSpeed((double) (i % 23));
+                weather.setWeatherPhenomenon(i % 7 == 0 ? "Light snow" : i % 5 == 0 ? "Glaze" : "Clear");
+                weather.setTimestamp(HISTORY_START.plusMinutes(10L * i));
+                rows.add(weather);
+            }
+            if (rows.size() >= 10_000) {
+                weatherHistoryStore.append(weatherRepository.saveAll(rows));
+                rows.clear();
+            }
+        }
+        weatherHistoryStore.append(weatherRepository.saveAll(rows));
+
+        for (long[][] cityOrders : ordersPerHour) {
+            for (long[] hours : cityOrders) {
+                Arrays.fill(hours, 10);
+            }
+        }
+        BusinessRule active = new BusinessRule();
+        active.setTallinnCarBaseFeeCents(400);
+        active.setTartuBikeBaseFeeCents(250);
+        active.setTimestamp(LocalDateTime.now());
+        context.getBean(BusinessRuleRepository.class).save(active);
+        context.getBean(BusinessRuleCache.class).reload();
+        draft = new BusinessRule();
+        draft.setTallinnCarBaseFeeCents(450);
+        draft.setTartuBikeBaseFeeCents(300);
+        draft.setWpefSnowOrSleetCents(120);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public SimulationResult simulate() {
+        return ruleSimulation.simulate(draft, ordersPerHour);
+    }
+}
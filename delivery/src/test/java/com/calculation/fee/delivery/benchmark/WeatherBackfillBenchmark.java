@@ -0,0 +1,74 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.BackfillProgress;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.WeatherBackfill;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to backfill a directory of {@code files} archived full-size observations.php payloads with one parsing thread
+ * versus all processors. Every invocation starts from an empty weather table and without a checkpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WeatherBackfillBenchmark {
+
+    private static final long FIRST_TIMESTAMP = 1742637600L;
+
+    @Param("2000")
+    public int files;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private WeatherRepository weatherRepository;
+    private WeatherBackfill weatherBackfill;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String feed;
+        try (InputStream in = WeatherBackfillBenchmark.class.getResourceAsStream("/observations/observations-full.xml")) {
+            feed = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        directory = Files.createTempDirectory("weather-backfill");
+        for (int hour = 0; hour < files; hour++) {
+            Files.writeString(directory.resolve(String.format("observations-%06d.xml", hour)),
+                    feed.replace("timestamp=\"" + FIRST_TIMESTAMP + "\"", "timestamp=\"" + (FIRST_TIMESTAMP - hour * 3600L) + "\""));
+        }
+        context = BenchmarkContext.start("weather.backfill.parallelism=" + parallelism);
+        weatherRepository = context.getBean(WeatherRepository.class);
+        weatherBackfill = context.getBean(WeatherBackfill.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() throws IOException {
+        weatherRepository.deleteAllInBatch();
+        Files.deleteIfExists(directory.resolve(".backfill-done"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public BackfillProgress backfill() {
+        return weatherBackfill.run(directory);
+    }
+}
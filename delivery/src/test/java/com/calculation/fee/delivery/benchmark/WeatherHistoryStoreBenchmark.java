@@ -0,0 +1,113 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading weather history through JPA entities from {@link WeatherRepository} versus the memory-mapped
+ * {@link WeatherHistoryStore}: an "at or before" lookup at a random datetime, and a scan of the 720 hourly observations
+ * of a random 30-day range. Use {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WeatherHistoryStoreBenchmark {
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    /**
+     * Hourly observations per station
+     */
+    @Param("43800")
+    public int hoursOfHistory;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private WeatherRepository weatherRepository;
+    private WeatherHistoryStore weatherHistoryStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("weather-history");
+        context = BenchmarkContext.start("weather.history.store.directory=" + directory);
+        weatherRepository = context.getBean(WeatherRepository.class);
+        weatherHistoryStore = context.getBean(WeatherHistoryStore.class);
+
+        List<Weather> rows = new ArrayList<>();
+        for (int hour = 0; hour < hoursOfHistory; hour++) {
+            for (City city : City.values()) {
+                Weather weather = new Weather();
+                weather.setStationName(city.getStationName());
+                weather.setWmoCode("26000");
+                weather.setAirTemperature(-10.0 + hour % 30);
+                weather.setWindSpeed((double) (hour % 25));
+                weather.setWeatherPhenomenon(hour % 3 == 0 ? "Light rain" : "Clear");
+                weather.setTimestamp(HISTORY_START.plusHours(hour));
+                rows.add(weather);
+            }
+            if (rows.size() >= 10_000) {
+                weatherHistoryStore.append(weatherRepository.saveAll(rows));
+                rows.clear();
+            }
+        }
+        weatherHistoryStore.append(weatherRepository.saveAll(rows));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Weather repositoryAtOrBefore() {
+        return weatherRepository.getWeatherForStationAtOrBefore(City.TARTU.getStationName(), randomDatetime()).orElse(null);
+    }
+
+    @Benchmark
+    public boolean storeAtOrBefore(Blackhole blackhole) {
+        return weatherHistoryStore.atOrBefore(City.TARTU, randomDatetime(), (epochSecond, temperature, wind, code) -> {
+            blackhole.consume(epochSecond);
+            blackhole.consume(temperature);
+            blackhole.consume(wind);
+            blackhole.consume(code);
+        });
+    }
+
+    @Benchmark
+    public void repositoryMonthScan(Blackhole blackhole) {
+        LocalDateTime from = randomDatetime();
+        for (Weather weather : weatherRepository.getWeatherForStationBetween(City.TARTU.getStationName(), from, from.plusDays(30))) {
+            blackhole.consume(weather.getAirTemperature());
+        }
+    }
+
+    @Benchmark
+    public int storeMonthScan(Blackhole blackhole) {
+        LocalDateTime from = randomDatetime();
+        return weatherHistoryStore.scan(City.TARTU, from, from.plusDays(30),
+                (epochSecond, temperature, wind, code) -> blackhole.consume(temperature));
+    }
+
+    private LocalDateTime randomDatetime() {
+        return HISTORY_START.plusMinutes(ThreadLocalRandom.current().nextLong((hoursOfHistory - 24L * 30) * 60));
+    }
+}
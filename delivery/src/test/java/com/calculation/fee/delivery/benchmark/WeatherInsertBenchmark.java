@@ -0,0 +1,105 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of weather observations into H2, in rows per second.
+ * <p>
+ * {@code perRow} saves every observation on its own, as the import did before each run was written with one
+ * {@code saveAll}; with {@code jdbcBatchSize=1} it is the old per-station round trip. {@code perRun} saves the rows in
+ * runs of {@link #RUN_SIZE}, each in one transaction, which with {@code jdbcBatchSize=50} is the current import path.
+ * Every invocation inserts {@link #ROWS} rows into an emptied table.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(WeatherInsertBenchmark.ROWS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WeatherInsertBenchmark {
+
+    static final int ROWS = 100_000;
+
+    /**
+     * Rows of one import run, roughly all stations of the feed over nine runs
+     */
+    private static final int RUN_SIZE = 1_000;
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+    @Param({"perRow", "perRun"})
+    public String write;
+
+    @Param({"1", "50"})
+    public int jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+    private WeatherRepository weatherRepository;
+    private JdbcTemplate jdbcTemplate;
+    private City[] cities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("spring.jpa.hibernate.ddl-auto=create",
+                "spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize);
+        weatherRepository = context.getBean(WeatherRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        cities = City.values();
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable() {
+        jdbcTemplate.execute("TRUNCATE TABLE weather_data");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int insert() {
+        int inserted = 0;
+        List<Weather> run = new ArrayList<>(RUN_SIZE);
+        for (int i = 0; i < ROWS; i++) {
+            Weather weather = createWeather(i);
+            if (write.equals("perRow")) {
+                weatherRepository.save(weather);
+                inserted++;
+                continue;
+            }
+            run.add(weather);
+            if (run.size() == RUN_SIZE) {
+                inserted += weatherRepository.saveAll(run).size();
+                run = new ArrayList<>(RUN_SIZE);
+            }
+        }
+        if (!run.isEmpty()) {
+            inserted += weatherRepository.saveAll(run).size();
+        }
+        return inserted;
+    }
+
+    private Weather createWeather(int i) {
+        Weather weather = new Weather();
+        weather.setStationName(cities[i % cities.length].getStationName());
+        weather.setWmoCode("26000");
+        weather.setAirTemperature(i % 40 - 20.0);
+        weather.setWindSpeed((double) (i % 25));
+        weather.setWeatherPhenomenon(i % 7 == 0 ? "Light rain" : "Clear");
+        weather.setTimestamp(HISTORY_START.plusMinutes(i / cities.length));
+        return weather;
+    }
+}
@@ -0,0 +1,96 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the two {@link WeatherRepository} lookup queries on a large weather_data table, with and without the
+ * (station_name, timestamp DESC) index.
+ * <p>
+ * The table is filled deterministically inside H2 with one observation per station per minute, which is what the
+ * default {@code weather.import.cron} produces. With the default 10M rows that is about six years of history.
+ * Run with {@code -Djmh.args="WeatherLookupBenchmark -p rows=1000000"} for a quicker pass.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class WeatherLookupBenchmark {
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(2019, 1, 1, 0, 0);
+
+    @Param("10000000")
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private WeatherRepository weatherRepository;
+    private String[] stations;
+    private long minutesOfHistory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("spring.jpa.hibernate.ddl-auto=create");
+        weatherRepository = context.getBean(WeatherRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        City[] cities = City.values();
+        stations = new String[cities.length];
+        for (int i = 0; i < cities.length; i++) {
+            stations[i] = cities[i].getStationName();
+        }
+        minutesOfHistory = rows / cities.length;
+
+        if (!indexed) {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_weather_data_station_timestamp");
+        }
+        long started = System.nanoTime();
+        jdbcTemplate.update("""
+                INSERT INTO weather_data (id, station_name, wmo_code, air_temperature, wind_speed, weather_phenomenon, phenomenon_class, timestamp)
+                SELECT NEXT VALUE FOR weather_data_seq,
+                       CASEWHEN(MOD(X, 3) = 0, CAST(? AS VARCHAR), CASEWHEN(MOD(X, 3) = 1, CAST(? AS VARCHAR), CAST(? AS VARCHAR))),
+                       '26000',
+                       MOD(X, 40) - 20,
+                       MOD(X, 25),
+                       CASEWHEN(MOD(X, 7) = 0, 'Light rain', 'Clear'),
+                       CASEWHEN(MOD(X, 7) = 0, 'RAIN', 'NONE'),
+                       DATEADD('MINUTE', X / 3, CAST(? AS TIMESTAMP))
+                FROM SYSTEM_RANGE(0, CAST(? AS BIGINT) - 1)
+                """, stations[0], stations[1], stations[2], HISTORY_START, rows);
+        jdbcTemplate.execute("ANALYZE");
+        System.out.printf("%nGenerated %d weather rows in %d ms (indexed: %s)%n",
+                rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), indexed);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Weather latestForStation() {
+        String station = stations[ThreadLocalRandom.current().nextInt(stations.length)];
+        return weatherRepository.getLatestWeatherForStation(station).orElseThrow();
+    }
+
+    @Benchmark
+    public Weather atOrBeforeForStation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String station = stations[random.nextInt(stations.length)];
+        LocalDateTime datetime = HISTORY_START.plusMinutes(random.nextLong(1, minutesOfHistory));
+        return weatherRepository.getWeatherForStationAtOrBefore(station, datetime).orElseThrow();
+    }
+}
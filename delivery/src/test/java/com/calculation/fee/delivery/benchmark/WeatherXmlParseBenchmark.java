@@ -0,0 +1,65 @@
+package com.calculation.fee.delivery.benchmark;
+
+import com.calculation.fee.delivery.model.xml.Observation;
+import com.calculation.fee.delivery.service.ObservationStreamParser;
+import com.calculation.fee.delivery.service.WeatherImport;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocation of parsing a full-size observations.php payload in {@link WeatherImport}.
+ * <p>
+ * {@code jacksonParse} is the former import path: the response decoded into a String and every station bound by
+ * {@link XmlMapper}. {@code streamingParse} is the current one, where the {@link ObservationStreamParser} reads the
+ * response bytes and only materializes the three required stations. The fixtures under src/test/resources/observations
+ * hold every station of the feed, as the import receives it.
+ * Run with {@code -Djmh.args="WeatherXmlParseBenchmark -prof gc"} to compare the allocation per import.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeatherXmlParseBenchmark {
+
+    @Param("observations-full.xml")
+    public String fixture;
+
+    private WeatherImport weatherImport;
+    private XmlMapper xmlMapper;
+    private byte[] feed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkContext.quietLogging();
+        weatherImport = new WeatherImport(null, null, null, null, new SimpleMeterRegistry(), Duration.ofSeconds(5),
+                Duration.ofSeconds(20));
+        xmlMapper = new XmlMapper();
+        try (InputStream in = WeatherXmlParseBenchmark.class.getResourceAsStream("/observations/" + fixture)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture " + fixture);
+            }
+            feed = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public Observation jacksonParse() throws IOException {
+        return xmlMapper.readValue(new String(feed, StandardCharsets.UTF_8), Observation.class);
+    }
+
+    @Benchmark
+    public Observation streamingParse() throws IOException {
+        return weatherImport.parseObservation(new ByteArrayInputStream(feed));
+    }
+}
@@ -4,15 +4,24 @@ import com.calculation.fee.delivery.model.BusinessRule;
 import com.calculation.fee.delivery.model.Weather;
 import com.calculation.fee.delivery.repository.BusinessRuleRepository;
 import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import com.calculation.fee.delivery.service.WeatherHistoryIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
@@ -30,6 +39,15 @@ class DeliveryFeeIntegrationTest {
     @Autowired
     private BusinessRuleRepository businessRuleRepository;
 
+    @Autowired
+    private LatestWeatherCache latestWeatherCache;
+
+    @Autowired
+    private BusinessRuleCache businessRuleCache;
+
+    @Autowired
+    private WeatherHistoryIndex weatherHistoryIndex;
+
     private LocalDateTime baseTimestamp = LocalDateTime.now();;
 
     @BeforeEach
@@ -39,6 +57,7 @@ class DeliveryFeeIntegrationTest {
 
         BusinessRule businessRule = createBusinessRule();
         businessRuleRepository.save(businessRule);
+        businessRuleCache.reload();
 
         Weather tallinnWeather = new Weather();
         tallinnWeather.setStationName("Tallinn-Harku");
@@ -66,6 +85,9 @@ class DeliveryFeeIntegrationTest {
         parnuWeather.setWeatherPhenomenon("Rain");
         parnuWeather.setTimestamp(baseTimestamp);
         weatherRepository.save(parnuWeather);
+
+        latestWeatherCache.reload();
+        weatherHistoryIndex.reload();
     }
 
     @Test
@@ -76,6 +98,7 @@ class DeliveryFeeIntegrationTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(6.0, response.getBody().get("fee"));
+        assertEquals(600, response.getBody().get("feeCents"));
         assertEquals("EUR", response.getBody().get("currency"));
     }
 
@@ -101,6 +124,125 @@ class DeliveryFeeIntegrationTest {
         assertEquals("EUR", response.getBody().get("currency"));
     }
 
+    @Test
+    void testCalculateFeeAcceptsStationNamesIgnoringCase() {
+        ResponseEntity<Map> parnu = restTemplate.getForEntity(
+                "/api/delivery-fee?city=Pärnu&vehicleType=BIKE", Map.class);
+        ResponseEntity<Map> tallinn = restTemplate.getForEntity(
+                "/api/delivery-fee?city=tallinn-harku&vehicleType=car", Map.class);
+
+        assertEquals(HttpStatus.OK, parnu.getStatusCode());
+        assertEquals(3.5, parnu.getBody().get("fee"));
+        assertEquals(HttpStatus.OK, tallinn.getStatusCode());
+        assertEquals(6.0, tallinn.getBody().get("fee"));
+    }
+
+    @Test
+    void testCalculateFeeInvalidDatetime() {
+        ResponseEntity<Map> response = restTemplate.getForEntity(
+                "/api/delivery-fee?city=Tallinn&vehicleType=Car&datetime=2025-13-01T10:00:00", Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("Invalid datetime format. Use yyyy-MM-dd'T'HH:mm:ss (e.g., 2025-03-22T10:00:00)",
+                response.getBody().get("error"));
+    }
+
+    @Test
+    void testCalculateFeeUsesUpdatedBusinessRuleImmediately() {
+        BusinessRule updatedRule = createBusinessRule();
+        updatedRule.setTallinnCarBaseFeeCents(500);
+        Long ruleId = businessRuleCache.getActiveRule().getId();
+        long versionBefore = businessRuleCache.current().version();
+
+        restTemplate.put("/api/business-rules/" + ruleId, updatedRule);
+        ResponseEntity<Map> response = restTemplate.getForEntity(
+                "/api/delivery-fee?city=Tallinn&vehicleType=Car", Map.class);
+
+        assertEquals(versionBefore + 1, businessRuleCache.current().version());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(7.0, response.getBody().get("fee"));
+    }
+
+    @Test
+    void testCalculateFeeAnswersMatchingETagWithNotModified() {
+        ResponseEntity<Map> first = restTemplate.getForEntity(
+                "/api/delivery-fee?city=Tallinn&vehicleType=Car", Map.class);
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertTrue(first.getHeaders().getCacheControl().startsWith("max-age="));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<Map> revalidated = restTemplate.exchange("/api/delivery-fee?city=Tallinn&vehicleType=Car",
+                HttpMethod.GET, new HttpEntity<>(headers), Map.class);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertEquals(etag, revalidated.getHeaders().getETag());
+        assertNull(revalidated.getBody());
+
+        BusinessRule updatedRule = createBusinessRule();
+        updatedRule.setTallinnCarBaseFeeCents(500);
+        restTemplate.put("/api/business-rules/" + businessRuleCache.getActiveRule().getId(), updatedRule);
+        ResponseEntity<Map> changed = restTemplate.exchange("/api/delivery-fee?city=Tallinn&vehicleType=Car",
+                HttpMethod.GET, new HttpEntity<>(headers), Map.class);
+
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+        assertEquals(7.0, changed.getBody().get("fee"));
+    }
+
+    @Test
+    void testHistoricalETagFollowsResolvedObservation() {
+        Weather latest = weatherRepository.getLatestWeatherForStation("Tallinn-Harku").get();
+        Weather earlier = copyOf(latest, latest.getTimestamp().minusHours(2));
+        earlier.setWindSpeed(5.0);
+        weatherRepository.save(earlier);
+        weatherHistoryIndex.reload();
+        String url = "/api/delivery-fee?city=Tallinn&vehicleType=Car&datetime="
+                + latest.getTimestamp().minusMinutes(30).format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
+
+        ResponseEntity<Map> first = restTemplate.getForEntity(url, Map.class);
+        String etag = first.getHeaders().getETag();
+        assertTrue(etag.startsWith("\"" + earlier.getId() + "-"));
+        assertEquals("max-age=3600, public", first.getHeaders().getCacheControl());
+
+        weatherRepository.save(copyOf(latest, latest.getTimestamp().minusHours(1)));
+        weatherHistoryIndex.reload();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<Map> backfilled = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Map.class);
+
+        assertEquals(HttpStatus.OK, backfilled.getStatusCode());
+        assertNotEquals(etag, backfilled.getHeaders().getETag());
+    }
+
+    @Test
+    void testBusinessRuleAcceptsDecimalEuroAmounts() {
+        Map<String, Object> rule = new HashMap<>();
+        rule.put("tallinnCarBaseFee", "4.10");
+        rule.put("atefBelowZero", 0.2);
+        rule.put("wsefFee", 0.1);
+
+        ResponseEntity<Map> created = restTemplate.postForEntity("/api/business-rules", rule, Map.class);
+
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        BusinessRule active = businessRuleCache.getActiveRule();
+        assertEquals(410, active.getTallinnCarBaseFeeCents());
+        assertEquals(20, active.getAtefBelowZeroCents());
+        assertEquals(10, active.getWsefFeeCents());
+        assertEquals(4.1, created.getBody().get("tallinnCarBaseFee"));
+    }
+
+    @Test
+    void testBusinessRuleRejectsFractionsOfCents() {
+        ResponseEntity<Map> response = restTemplate.postForEntity("/api/business-rules",
+                Map.of("tallinnCarBaseFee", 4.105), Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
     @Test
     void testCalculateFeeMissingCity() {
         ResponseEntity<Map> response = restTemplate.getForEntity(
@@ -138,6 +280,7 @@ class DeliveryFeeIntegrationTest {
         Weather tallinnWeather = weatherRepository.getLatestWeatherForStation("Tallinn-Harku").get();
         tallinnWeather.setWindSpeed(25.0);
         weatherRepository.save(tallinnWeather);
+        latestWeatherCache.reload();
 
         ResponseEntity<Map> response = restTemplate.getForEntity(
                 "/api/delivery-fee?city=Tallinn&vehicleType=Bike", Map.class);
@@ -151,6 +294,7 @@ class DeliveryFeeIntegrationTest {
     @Test
     void testCalculateFeeNoWeatherData() {
         weatherRepository.deleteAll();
+        latestWeatherCache.reload();
 
         ResponseEntity<Map> response = restTemplate.getForEntity(
                 "/api/delivery-fee?city=Tallinn&vehicleType=Car", Map.class);
@@ -170,4 +314,127 @@ class DeliveryFeeIntegrationTest {
         assertNotNull(response.getBody());
         assertTrue(((String) response.getBody().get("error")).contains("Vehicle type should be only of these: CAR, SCOOTER, BIKE"));
     }
+
+    @Test
+    void testCalculateFeeBatchReturnsPerItemResults() {
+        String datetime = baseTimestamp.plusMinutes(1).format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
+        List<Map<String, String>> requests = List.of(
+                Map.of("city", "Tallinn", "vehicleType", "Car"),
+                Map.of("city", "Tartu", "vehicleType", "Scooter", "datetime", datetime),
+                Map.of("city", "Tartu", "vehicleType", "Bike", "datetime", datetime),
+                Map.of("city", "Narva", "vehicleType", "Car"),
+                Map.of("city", "Parnu", "vehicleType", "Bike", "datetime", "2000-01-01T00:00:00"));
+
+        ResponseEntity<Map> response = restTemplate.postForEntity("/api/delivery-fee/batch", requests, Map.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        List<Map<String, Object>> results = (List<Map<String, Object>>) response.getBody().get("results");
+        assertEquals(5, results.size());
+        assertEquals("OK", results.get(0).get("status"));
+        assertEquals(6.0, results.get(0).get("fee"));
+        assertEquals("EUR", results.get(0).get("currency"));
+        assertEquals(3.0, results.get(1).get("fee"));
+        assertEquals(2.5, results.get(2).get("fee"));
+        assertEquals("INVALID_INPUT", results.get(3).get("status"));
+        assertTrue(((String) results.get(3).get("error")).contains("City name should be one of these"));
+        assertEquals("NO_DATA", results.get(4).get("status"));
+        assertNull(results.get(4).get("fee"));
+    }
+
+    @Test
+    void testCalculateFeeBatchWithoutItems() {
+        ResponseEntity<Map> response = restTemplate.postForEntity("/api/delivery-fee/batch", List.of(), Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("Provide at least one quote request", response.getBody().get("error"));
+    }
+
+    @Test
+    void testFeeTimelineStreamsIntervalsAsNdjsonAndCsv() {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+        String range = "city=Tartu&vehicleType=Car&from=" + baseTimestamp.minusDays(1).format(format)
+                + "&to=" + baseTimestamp.plusDays(1).format(format);
+
+        ResponseEntity<String> ndjson = restTemplate.getForEntity("/api/delivery-fee/timeline?" + range, String.class);
+        ResponseEntity<String> csv = restTemplate.getForEntity("/api/delivery-fee/timeline?" + range + "&format=csv", String.class);
+
+        assertEquals(HttpStatus.OK, ndjson.getStatusCode());
+        assertEquals("application/x-ndjson", ndjson.getHeaders().getContentType().toString());
+        String[] entries = ndjson.getBody().split("\n");
+        assertEquals(3, entries.length);
+        assertTrue(entries[0].contains("\"status\":\"NO_DATA\""));
+        assertTrue(entries[1].contains("\"businessRuleId\":" + businessRuleCache.getActiveRule().getId()));
+        assertTrue(entries[2].contains("\"status\":\"OK\",\"fee\":3.5,\"feeCents\":350"));
+
+        assertEquals(HttpStatus.OK, csv.getStatusCode());
+        assertTrue(csv.getHeaders().getContentType().toString().startsWith("text/csv"));
+        String[] lines = csv.getBody().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("from,to,status,fee,feeCents,error,weatherId,businessRuleId", lines[0]);
+        assertTrue(lines[3].contains(",OK,3.5,350,,"));
+    }
+
+    @Test
+    void testFeeTimelineRejectsReversedRange() {
+        ResponseEntity<Map> response = restTemplate.getForEntity(
+                "/api/delivery-fee/timeline?city=Tartu&vehicleType=Car&from=2025-03-22T10:00:00&to=2025-03-21T10:00:00",
+                Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals("The start of the range must be before its end", response.getBody().get("error"));
+    }
+
+    @Test
+    void testRuleSimulationComparesDraftWithActiveRule() {
+        Weather earlierWeather = weatherRepository.getLatestWeatherForStation("Tallinn-Harku").get();
+        earlierWeather.setId(null);
+        earlierWeather.setTimestamp(earlierWeather.getTimestamp().minusHours(3));
+        weatherRepository.save(earlierWeather);
+        Map<String, Object> request = Map.of(
+                "rule", Map.of("tallinnCarBaseFee", 5.0, "atefBelowZero", 0.5, "wsefFee", 0.5, "wpefSnowOrSleet", 1.0),
+                "orders", List.of(Map.of("city", "Tallinn", "vehicleType", "Car", "orders", 10)));
+
+        ResponseEntity<Map> response = restTemplate.postForEntity("/api/business-rules/simulation", request, Map.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<String, Object> totals = (Map<String, Object>) response.getBody().get("totals");
+        assertEquals(3, totals.get("hours"));
+        assertEquals(30, totals.get("orders"));
+        assertEquals(18000, totals.get("activeRevenueCents"));
+        assertEquals(21000, totals.get("draftRevenueCents"));
+        assertEquals(30.0, totals.get("delta"));
+        assertEquals(3, ((List<?>) response.getBody().get("cities")).size());
+    }
+
+    @Test
+    void testRuleSimulationRejectsInvalidOrderVolume() {
+        Map<String, Object> request = Map.of("rule", Map.of("tallinnCarBaseFee", 5.0),
+                "orders", List.of(Map.of("city", "Tallinn", "vehicleType", "Car", "hour", 24, "orders", 10)));
+
+        ResponseEntity<Map> response = restTemplate.postForEntity("/api/business-rules/simulation", request, Map.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Order volume 0: hour should be between 0 and 23", response.getBody().get("error"));
+    }
+
+    @Test
+    void testWeatherBackfillWithoutRootIsForbidden() {
+        ResponseEntity<Map> response = restTemplate.postForEntity("/api/weather/backfill?directory=/etc", null, Map.class);
+
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+    }
+
+    private static Weather copyOf(Weather weather, LocalDateTime timestamp) {
+        Weather copy = new Weather();
+        copy.setStationName(weather.getStationName());
+        copy.setWmoCode(weather.getWmoCode());
+        copy.setAirTemperature(weather.getAirTemperature());
+        copy.setWindSpeed(weather.getWindSpeed());
+        copy.setWeatherPhenomenon(weather.getWeatherPhenomenon());
+        copy.setTimestamp(timestamp);
+        return copy;
+    }
 }
@@ -0,0 +1,173 @@
+package com.calculation.fee.delivery.controller;
+
+import com.calculation.fee.delivery.model.QuoteResult;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.calculation.fee.delivery.service.BusinessRuleCache;
+import com.calculation.fee.delivery.service.LatestWeatherCache;
+import com.calculation.fee.delivery.service.WeatherHistoryIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.datasource.url=jdbc:h2:mem:db_delivery_reactive",
+        "weather.import.cron=-"})
+class ReactiveDeliveryFeeIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private WeatherRepository weatherRepository;
+
+    @Autowired
+    private BusinessRuleRepository businessRuleRepository;
+
+    @Autowired
+    private LatestWeatherCache latestWeatherCache;
+
+    @Autowired
+    private BusinessRuleCache businessRuleCache;
+
+    @Autowired
+    private WeatherHistoryIndex weatherHistoryIndex;
+
+    @BeforeEach
+    void setUp() {
+        weatherRepository.deleteAll();
+        businessRuleRepository.deleteAll();
+        businessRuleRepository.save(createBusinessRule());
+        businessRuleCache.reload();
+
+        Weather tallinnWeather = new Weather();
+        tallinnWeather.setStationName("Tallinn-Harku");
+        tallinnWeather.setWmoCode("26128");
+        tallinnWeather.setAirTemperature(-5.0);
+        tallinnWeather.setWindSpeed(12.0);
+        tallinnWeather.setWeatherPhenomenon("Light snow");
+        tallinnWeather.setTimestamp(LocalDateTime.now());
+        weatherRepository.save(tallinnWeather);
+
+        latestWeatherCache.reload();
+        weatherHistoryIndex.reload();
+    }
+
+    @Test
+    void testCalculateFeeTallinnCarSuccess() {
+        webTestClient.get().uri("/api/delivery-fee?city=Tallinn&vehicleType=Car")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.fee").isEqualTo(6.0)
+                .jsonPath("$.currency").isEqualTo("EUR");
+    }
+
+    @Test
+    void testCalculateFeeInvalidCity() {
+        webTestClient.get().uri("/api/delivery-fee?city=Narva&vehicleType=Car")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").value(error -> assertTrue(((String) error).contains("City name should be one of these")));
+    }
+
+    @Test
+    void testStreamDeliveryFeesInRequestOrder() {
+        String body = """
+                {"city": "Tallinn", "vehicleType": "Car"}
+                {"city": "Narva", "vehicleType": "Car"}
+                {"city": "Tartu", "vehicleType": "Bike"}
+                """;
+
+        List<QuoteResult> results = webTestClient.post().uri("/api/delivery-fee/stream")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(QuoteResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertNotNull(results);
+        assertEquals(3, results.size());
+        assertEquals(QuoteStatus.OK, results.get(0).status());
+        assertEquals(6.0, results.get(0).fee());
+        assertEquals(QuoteStatus.INVALID_INPUT, results.get(1).status());
+        assertEquals(QuoteStatus.NO_DATA, results.get(2).status());
+    }
+
+    @Test
+    void testBlockingEndpointsAreServed() {
+        webTestClient.get().uri("/api/business-rules")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1);
+        webTestClient.put().uri("/api/quote-trace")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"sampleRate\": 0, \"cities\": [\"TALLINN\"], \"vehicleTypes\": []}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.cities[0]").isEqualTo("TALLINN");
+        webTestClient.put().uri("/api/quote-trace")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"sampleRate\": 0, \"cities\": [], \"vehicleTypes\": []}")
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.post().uri("/api/weather/backfill?directory=archive").exchange().expectStatus().isForbidden();
+        webTestClient.post().uri("/api/business-rules/simulation")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Provide a draft business rule");
+    }
+
+    @Test
+    void testFeeTimelineStreamsIntervalsAsNdjson() {
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+        LocalDateTime now = LocalDateTime.now();
+        String range = "city=Tallinn&vehicleType=Car&from=" + now.minusDays(1).format(format)
+                + "&to=" + now.plusDays(1).format(format);
+
+        String body = webTestClient.get().uri("/api/delivery-fee/timeline?" + range)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(body);
+        String[] entries = body.split("\n");
+        assertTrue(entries[0].contains("\"status\":\"NO_DATA\""));
+        assertTrue(entries[entries.length - 1].contains("\"status\":\"OK\",\"fee\":6.0,\"feeCents\":600"));
+    }
+
+    @Test
+    void testFeeTimelineRejectsReversedRange() {
+        webTestClient.get().uri("/api/delivery-fee/timeline?city=Tartu&vehicleType=Car&from=2025-03-22T10:00:00&to=2025-03-21T10:00:00")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("The start of the range must be before its end");
+    }
+}
@@ -0,0 +1,217 @@
+package com.calculation.fee.delivery.repository;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherHistoryStoreTest {
+
+    private static final String TARTU = City.TARTU.getStationName();
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 1, 10, 12, 0);
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    @TempDir
+    private Path directory;
+
+    private WeatherHistoryStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new WeatherHistoryStore(weatherRepository, directory);
+        store.open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void testAtOrBeforeAndScanReadAppendedRecords() {
+        //given
+        store.append(List.of(
+                createWeather(HOUR, -5.0, 3.0, "Light snow"),
+                createWeather(HOUR.plusHours(1), null, 12.0, null),
+                createWeather(HOUR.plusHours(2), 2.0, 25.0, "Glaze")));
+        store.append(List.of(createWeather(HOUR.plusHours(1), 9.0, 9.0, "Clear")));
+        List<String> scanned = new ArrayList<>();
+
+        //when
+        boolean beforeFirst = store.atOrBefore(City.TARTU, HOUR.minusSeconds(1), (epochSecond, temperature, wind, code) -> fail());
+        boolean found = store.atOrBefore(City.TARTU, HOUR.plusMinutes(90), (epochSecond, temperature, wind, code) ->
+                scanned.add(epochSecond + " " + temperature + " " + wind + " " + store.phenomenon(code)));
+        int count = store.scan(City.TARTU, HOUR.plusHours(1), HOUR.plusHours(3), (epochSecond, temperature, wind, code) ->
+                scanned.add(epochSecond + " " + temperature + " " + wind + " " + store.phenomenon(code)));
+
+        //then
+        assertFalse(beforeFirst);
+        assertTrue(found);
+        assertEquals(2, count);
+        long second = HOUR.plusHours(1).toEpochSecond(ZoneOffset.UTC);
+        assertEquals(List.of(
+                second + " NaN 12.0 null",
+                second + " NaN 12.0 null",
+                (second + 3600) + " 2.0 25.0 Glaze"), scanned);
+        assertEquals(3, store.count(City.TARTU));
+        assertEquals(0, store.count(City.TALLINN));
+    }
+
+    @Test
+    void testReopenDropsTornAppend() throws IOException {
+        //given
+        store.append(List.of(
+                createWeather(HOUR, -5.0, 3.0, "Light snow"),
+                createWeather(HOUR.plusHours(1), 1.0, 4.0, "Hail")));
+        store.close();
+        appendBytes(directory.resolve(City.TARTU.name() + ".obs"), new byte[WeatherHistoryStore.RECORD_BYTES / 2]);
+        appendBytes(directory.resolve(WeatherHistoryStore.PHENOMENA_FILE), "Thund".getBytes(StandardCharsets.UTF_8));
+
+        //when
+        store = new WeatherHistoryStore(weatherRepository, directory);
+        store.open();
+        store.append(List.of(createWeather(HOUR.plusHours(2), 0.0, 5.0, "Thunder")));
+
+        //then
+        assertEquals(3, store.count(City.TARTU));
+        assertEquals(3L * WeatherHistoryStore.RECORD_BYTES, Files.size(directory.resolve(City.TARTU.name() + ".obs")));
+        assertEquals("Light snow\nHail\nThunder\n", Files.readString(directory.resolve(WeatherHistoryStore.PHENOMENA_FILE)));
+        List<String> phenomena = new ArrayList<>();
+        store.scan(City.TARTU, HOUR, HOUR.plusHours(3), (epochSecond, temperature, wind, code) -> phenomena.add(store.phenomenon(code)));
+        assertEquals(List.of("Light snow", "Hail", "Thunder"), phenomena);
+    }
+
+    @Test
+    void testCorruptRecordIsTruncatedAndCaughtUpFromDatabase() throws IOException {
+        //given
+        List<Weather> rows = List.of(
+                createWeather(HOUR, -5.0, 3.0, "Light snow"),
+                createWeather(HOUR.plusHours(1), 1.0, 4.0, null),
+                createWeather(HOUR.plusHours(2), 3.0, 6.0, "Light rain"));
+        numberRows(rows);
+        store.append(rows);
+        store.close();
+        try (FileChannel channel = FileChannel.open(directory.resolve(City.TARTU.name() + ".obs"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Double.BYTES).putDouble(0, 99.0), WeatherHistoryStore.RECORD_BYTES + 8L);
+        }
+        when(weatherRepository.getWeatherForStationPageAfterRow(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime after = invocation.getArgument(1);
+            Long afterId = invocation.getArgument(2);
+            return rows.stream()
+                    .filter(weather -> weather.getStationName().equals(invocation.getArgument(0)))
+                    .filter(weather -> isAfterRow(weather, after, afterId))
+                    .toList();
+        });
+
+        //when
+        store = new WeatherHistoryStore(weatherRepository, directory);
+        store.open();
+
+        //then
+        assertEquals(3, store.count(City.TARTU));
+        List<Double> temperatures = new ArrayList<>();
+        store.scan(City.TARTU, HOUR, HOUR.plusHours(3), (epochSecond, temperature, wind, code) -> temperatures.add(temperature));
+        assertEquals(List.of(-5.0, 1.0, 3.0), temperatures);
+        verify(weatherRepository).getWeatherForStationPageAfterRow(eq(TARTU), eq(HOUR), eq(Long.MAX_VALUE), any(), any());
+    }
+
+    @Test
+    void testRebuildAddsRowsInsertedBeforeLastRecord() throws IOException {
+        //given
+        store.append(List.of(
+                createWeather(HOUR, -5.0, 3.0, null),
+                createWeather(HOUR.plusHours(3), 4.0, 5.0, null)));
+        List<Weather> rows = List.of(
+                createWeather(HOUR, -5.0, 3.0, null),
+                createWeather(HOUR.plusHours(1), 1.0, 4.0, "Glaze"),
+                createWeather(HOUR.plusHours(2), 2.0, 4.0, null),
+                createWeather(HOUR.plusHours(3), 4.0, 5.0, null));
+        numberRows(rows);
+        when(weatherRepository.getWeatherForStationPageAfterRow(eq(TARTU), any(), any(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime after = invocation.getArgument(1);
+            Long afterId = invocation.getArgument(2);
+            return rows.stream().filter(weather -> isAfterRow(weather, after, afterId)).toList();
+        });
+        List<Double> before = new ArrayList<>();
+        store.scan(City.TARTU, HOUR, HOUR.plusHours(4), (epochSecond, temperature, wind, code) -> before.add(temperature));
+
+        //when
+        store.rebuild(City.TARTU, HOUR.plusHours(1));
+
+        //then
+        List<Double> temperatures = new ArrayList<>();
+        store.scan(City.TARTU, HOUR, HOUR.plusHours(4), (epochSecond, temperature, wind, code) -> temperatures.add(temperature));
+        assertEquals(List.of(-5.0, 4.0), before);
+        assertEquals(List.of(-5.0, 1.0, 2.0, 4.0), temperatures);
+        verify(weatherRepository).getWeatherForStationPageAfterRow(eq(TARTU), eq(HOUR), eq(Long.MAX_VALUE), any(), any());
+        assertFalse(Files.exists(directory.resolve(City.TARTU.name() + ".obs.rebuild")));
+
+        store.close();
+        store = new WeatherHistoryStore(weatherRepository, directory);
+        store.open();
+        assertEquals(4, store.count(City.TARTU));
+    }
+
+    @Test
+    void testDisabledStoreIgnoresAppends() {
+        //given
+        WeatherHistoryStore disabled = new WeatherHistoryStore(weatherRepository, null);
+
+        //when
+        disabled.append(List.of(createWeather(HOUR, 1.0, 1.0, null)));
+
+        //then
+        assertFalse(disabled.isEnabled());
+        assertThrows(IllegalStateException.class, () -> disabled.count(City.TARTU));
+    }
+
+    private static void appendBytes(Path path, byte[] bytes) throws IOException {
+        Files.write(path, bytes, StandardOpenOption.APPEND);
+    }
+
+    private static void numberRows(List<Weather> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(i + 1L);
+        }
+    }
+
+    private static boolean isAfterRow(Weather weather, LocalDateTime after, Long afterId) {
+        return weather.getTimestamp().isAfter(after) || weather.getTimestamp().equals(after) && weather.getId() > afterId;
+    }
+
+    private static Weather createWeather(LocalDateTime timestamp, Double airTemperature, Double windSpeed, String phenomenon) {
+        Weather weather = new Weather();
+        weather.setStationName(TARTU);
+        weather.setWmoCode("26242");
+        weather.setAirTemperature(airTemperature);
+        weather.setWindSpeed(windSpeed);
+        weather.setWeatherPhenomenon(phenomenon);
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+}
@@ -0,0 +1,113 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.QuoteRequest;
+import com.calculation.fee.delivery.model.QuoteResult;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchDeliveryFeeTest {
+
+    private static final String TARTU = City.TARTU.getStationName();
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 1, 10, 12, 0);
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    @Mock
+    private BusinessRuleCache businessRuleCache;
+
+    @Mock
+    private WeatherHistoryIndex weatherHistoryIndex;
+
+    @Mock
+    private QuoteTracer quoteTracer;
+
+    @Mock
+    private FeeMetrics feeMetrics;
+
+    private BusinessRule businessRule;
+    private HistoricalQuoteCache historicalQuoteCache;
+    private BatchDeliveryFee batchDeliveryFee;
+
+    @BeforeEach
+    void setUp() {
+        businessRule = createBusinessRule();
+        businessRule.setId(1L);
+        businessRule.setTimestamp(HOUR.minusDays(30));
+        historicalQuoteCache = new HistoricalQuoteCache(weatherRepository, new SimpleMeterRegistry(), 10, Duration.ofHours(1));
+        DeliveryFee deliveryFee = new DeliveryFee(new FeeTableCache(), businessRuleCache, weatherHistoryIndex,
+                historicalQuoteCache, quoteTracer, feeMetrics);
+        batchDeliveryFee = new BatchDeliveryFee(deliveryFee, businessRuleCache, weatherHistoryIndex, historicalQuoteCache, Runnable::run);
+    }
+
+    @Test
+    void testHistoricalItemsUseCachedIntervalsAndAreTimedAndTracedPerEvaluation() {
+        //given
+        Weather cachedWeather = createWeather(1L, HOUR, -5.0);
+        Weather clusterWeather = createWeather(3L, HOUR.plusHours(5), 5.0);
+        when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, HOUR)).thenReturn(Optional.of(cachedWeather));
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenReturn(Optional.of(createWeather(2L, HOUR.plusHours(1), 0.0)));
+        historicalQuoteCache.resolve(City.TARTU, HOUR);
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
+        when(weatherHistoryIndex.atOrBefore(City.TARTU, new TreeSet<>(List.of(HOUR.plusHours(5)))))
+                .thenReturn(Map.of(HOUR.plusHours(5), clusterWeather));
+        when(quoteTracer.isSampled(City.TARTU, VehicleType.CAR)).thenReturn(true);
+
+        //when
+        List<QuoteResult> results = batchDeliveryFee.calculateDeliveryFees(List.of(
+                request("2025-01-10T12:10:00"),
+                request("2025-01-10T12:50:00"),
+                request("2025-01-10T17:00:00")));
+
+        //then
+        assertEquals(List.of(400L, 400L, 350L), results.stream().map(QuoteResult::feeCents).toList());
+        verify(weatherRepository, times(1)).getWeatherForStationAtOrBefore(any(), any());
+        verify(feeMetrics, times(2)).recordQuote(eq(City.TARTU), eq(VehicleType.CAR), eq(true), anyLong());
+        verify(quoteTracer).trace(eq(City.TARTU), eq(VehicleType.CAR), eq(HOUR.plusMinutes(10)), any(), eq(cachedWeather), eq(businessRule));
+        verify(quoteTracer).trace(eq(City.TARTU), eq(VehicleType.CAR), eq(HOUR.plusHours(5)), any(), eq(clusterWeather), eq(businessRule));
+    }
+
+    private QuoteRequest request(String datetime) {
+        QuoteRequest request = new QuoteRequest();
+        request.setCity("Tartu");
+        request.setVehicleType("Car");
+        request.setDatetime(datetime);
+        return request;
+    }
+
+    private Weather createWeather(Long id, LocalDateTime timestamp, double airTemperature) {
+        Weather weather = new Weather();
+        weather.setId(id);
+        weather.setStationName(TARTU);
+        weather.setWmoCode("26242");
+        weather.setAirTemperature(airTemperature);
+        weather.setWindSpeed(3.0);
+        weather.setWeatherPhenomenon("Clear");
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+}
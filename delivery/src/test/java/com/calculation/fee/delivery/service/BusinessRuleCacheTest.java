@@ -0,0 +1,69 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BusinessRuleCacheTest {
+
+    @Mock
+    private BusinessRuleRepository businessRuleRepository;
+
+    @Spy
+    private FeeTableCache feeTableCache = new FeeTableCache();
+
+    @InjectMocks
+    private BusinessRuleCache businessRuleCache;
+
+    @Test
+    void testReloadPublishesLatestRuleAndBumpsVersion() {
+        //given
+        BusinessRule older = createBusinessRule();
+        BusinessRule newer = createBusinessRule();
+        newer.setTimestamp(older.getTimestamp().plusHours(1));
+        when(businessRuleRepository.findAll(any(Sort.class)))
+                .thenReturn(List.of(older))
+                .thenReturn(List.of(older, newer));
+
+        //when
+        businessRuleCache.reload();
+        BusinessRuleSnapshot first = businessRuleCache.current();
+        businessRuleCache.reload();
+        BusinessRuleSnapshot second = businessRuleCache.current();
+
+        //then
+        assertSame(older, first.active());
+        assertSame(newer, second.active());
+        assertSame(newer, businessRuleCache.getActiveRule());
+        assertEquals(List.of(older, newer), second.history());
+        assertEquals(first.version() + 1, second.version());
+        assertSame(newer, feeTableCache.current().businessRule());
+    }
+
+    @Test
+    void testReloadWithoutRulesHasNoActiveRule() {
+        //given
+        when(businessRuleRepository.findAll(any(Sort.class))).thenReturn(List.of());
+
+        //when
+        businessRuleCache.reload();
+
+        //then
+        assertNull(businessRuleCache.getActiveRule());
+        assertTrue(businessRuleCache.current().history().isEmpty());
+    }
+}
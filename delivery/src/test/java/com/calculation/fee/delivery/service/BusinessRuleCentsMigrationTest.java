@@ -0,0 +1,59 @@
+package com.calculation.fee.delivery.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusinessRuleCentsMigrationTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private BusinessRuleCentsMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:db_cents_migration;DB_CLOSE_DELAY=-1", "sa", ""));
+        StringBuilder columns = new StringBuilder("id BIGINT PRIMARY KEY");
+        for (String column : BusinessRuleCentsMigration.FEE_COLUMNS) {
+            columns.append(", ").append(column).append(" FLOAT(53) NOT NULL")
+                    .append(", ").append(column).append("_cents BIGINT DEFAULT 0 NOT NULL");
+        }
+        jdbcTemplate.execute("CREATE TABLE business_rules (" + columns + ")");
+        migration = new BusinessRuleCentsMigration(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE business_rules");
+    }
+
+    @Test
+    void testMigrateCopiesEuroColumnsToCentsAndDropsThem() {
+        //given
+        StringBuilder values = new StringBuilder("1");
+        for (int i = 0; i < BusinessRuleCentsMigration.FEE_COLUMNS.size(); i++) {
+            values.append(", 0.1, 0");
+        }
+        jdbcTemplate.execute("INSERT INTO business_rules VALUES (" + values + ")");
+        jdbcTemplate.update("UPDATE business_rules SET tallinn_car_base_fee = 4.35, wpef_rain = 0.3");
+
+        //when
+        migration.migrate();
+        migration.migrate();
+
+        //then
+        assertEquals(435L, jdbcTemplate.queryForObject("SELECT tallinn_car_base_fee_cents FROM business_rules", Long.class));
+        assertEquals(30L, jdbcTemplate.queryForObject("SELECT wpef_rain_cents FROM business_rules", Long.class));
+        assertEquals(10L, jdbcTemplate.queryForObject("SELECT wsef_fee_cents FROM business_rules", Long.class));
+        List<String> remaining = jdbcTemplate.queryForList(
+                "SELECT LOWER(column_name) FROM information_schema.columns WHERE LOWER(table_name) = 'business_rules'",
+                String.class);
+        assertFalse(remaining.contains("tallinn_car_base_fee"));
+        assertEquals(BusinessRuleCentsMigration.FEE_COLUMNS.size() + 1, remaining.size());
+    }
+}
@@ -3,19 +3,21 @@ package com.calculation.fee.delivery.service;
 import com.calculation.fee.delivery.exception.UsageForbiddenException;
 import com.calculation.fee.delivery.model.BusinessRule;
 import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.ForbiddenReason;
 import com.calculation.fee.delivery.model.VehicleType;
 import com.calculation.fee.delivery.model.Weather;
-import com.calculation.fee.delivery.repository.BusinessRuleRepository;
-import com.calculation.fee.delivery.repository.WeatherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 
 import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
 import static org.junit.jupiter.api.Assertions.*;
@@ -24,11 +26,23 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class DeliveryFeeTest {
 
+    @Spy
+    private FeeTableCache feeTableCache = new FeeTableCache();
+
+    @Mock
+    private BusinessRuleCache businessRuleCache;
+
+    @Mock
+    private WeatherHistoryIndex weatherHistoryIndex;
+
     @Mock
-    private WeatherRepository weatherRepository;
+    private HistoricalQuoteCache historicalQuoteCache;
 
     @Mock
-    private BusinessRuleRepository businessRuleRepository;
+    private QuoteTracer quoteTracer;
+
+    @Mock
+    private FeeMetrics feeMetrics;
 
     @InjectMocks
     private DeliveryFee deliveryFee;
@@ -46,7 +60,6 @@ class DeliveryFeeTest {
         weather.setTimestamp(testDateTime);
 
         businessRule = createBusinessRule();
-        businessRuleRepository.save(businessRule);
     }
 
     @Test
@@ -56,17 +69,15 @@ class DeliveryFeeTest {
         weather.setAirTemperature(5.0);
         weather.setWindSpeed(8.0);
         weather.setWeatherPhenomenon("Clear");
-        when(weatherRepository.getLatestWeatherForStation(City.TALLINN.getStationName()))
-                .thenReturn(Optional.of(weather));
-        when(businessRuleRepository.findFirstByOrderByTimestampDesc())
-                .thenReturn(Optional.of(businessRule));
+        feeTableCache.publish(WeatherSnapshot.of(Map.of(City.TALLINN, weather)));
+        feeTableCache.publish(BusinessRuleSnapshot.of(1, List.of(businessRule)));
 
 
         //when
-        double fee = deliveryFee.calculateDeliveryFee(City.TALLINN, VehicleType.CAR, null);
+        long fee = deliveryFee.calculateDeliveryFee(City.TALLINN, VehicleType.CAR, null);
 
         //then
-        assertEquals(4.0, fee);
+        assertEquals(400, fee);
     }
 
     @Test
@@ -76,16 +87,17 @@ class DeliveryFeeTest {
         weather.setAirTemperature(-5.0);
         weather.setWindSpeed(12.0);
         weather.setWeatherPhenomenon("Light snow");
-        when(weatherRepository.getWeatherForStationAtOrBefore(City.TALLINN.getStationName(), testDateTime))
-                .thenReturn(Optional.of(weather));
-        when(businessRuleRepository.findFirstByTimestampLessThanEqualOrderByTimestampDesc(testDateTime))
-                .thenReturn(Optional.of(businessRule));
+        when(weatherHistoryIndex.isInMemory(City.TALLINN, testDateTime)).thenReturn(true);
+        when(weatherHistoryIndex.atOrBefore(City.TALLINN, testDateTime))
+                .thenReturn(weather);
+        when(businessRuleCache.current())
+                .thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
 
         //when
-        double fee = deliveryFee.calculateDeliveryFee(City.TALLINN, VehicleType.CAR, testDateTime);
+        long fee = deliveryFee.calculateDeliveryFee(City.TALLINN, VehicleType.CAR, testDateTime);
 
         //then
-        assertEquals(6.0, fee);
+        assertEquals(600, fee);
     }
 
     @Test
@@ -95,16 +107,14 @@ class DeliveryFeeTest {
         weather.setAirTemperature(-15.0);
         weather.setWindSpeed(5.0);
         weather.setWeatherPhenomenon("Heavy snow");
-        when(weatherRepository.getLatestWeatherForStation(City.TARTU.getStationName()))
-                .thenReturn(Optional.of(weather));
-        when(businessRuleRepository.findFirstByOrderByTimestampDesc())
-                .thenReturn(Optional.of(businessRule));
+        feeTableCache.publish(WeatherSnapshot.of(Map.of(City.TARTU, weather)));
+        feeTableCache.publish(BusinessRuleSnapshot.of(1, List.of(businessRule)));
 
         //when
-        double fee = deliveryFee.calculateDeliveryFee(City.TARTU, VehicleType.SCOOTER, null);
+        long fee = deliveryFee.calculateDeliveryFee(City.TARTU, VehicleType.SCOOTER, null);
 
         //then
-        assertEquals(3.0 + 1.0 + 1.0, fee);
+        assertEquals(300 + 100 + 100, fee);
     }
 
     @Test
@@ -114,16 +124,14 @@ class DeliveryFeeTest {
         weather.setAirTemperature(2.0);
         weather.setWindSpeed(15.0);
         weather.setWeatherPhenomenon("Light rain");
-        when(weatherRepository.getLatestWeatherForStation(City.PARNU.getStationName()))
-                .thenReturn(Optional.of(weather));
-        when(businessRuleRepository.findFirstByOrderByTimestampDesc())
-                .thenReturn(Optional.of(businessRule));
+        feeTableCache.publish(WeatherSnapshot.of(Map.of(City.PARNU, weather)));
+        feeTableCache.publish(BusinessRuleSnapshot.of(1, List.of(businessRule)));
 
         //when
-        double fee = deliveryFee.calculateDeliveryFee(City.PARNU, VehicleType.BIKE, null);
+        long fee = deliveryFee.calculateDeliveryFee(City.PARNU, VehicleType.BIKE, null);
 
         //then
-        assertEquals(2.0 + 0.5 + 0.5, fee);
+        assertEquals(200 + 50 + 50, fee);
     }
 
     @Test
@@ -133,10 +141,8 @@ class DeliveryFeeTest {
         weather.setAirTemperature(0.0);
         weather.setWindSpeed(25.0);
         weather.setWeatherPhenomenon("Clear");
-        when(weatherRepository.getLatestWeatherForStation(City.TALLINN.getStationName()))
-                .thenReturn(Optional.of(weather));
-        when(businessRuleRepository.findFirstByOrderByTimestampDesc())
-                .thenReturn(Optional.of(businessRule));
+        feeTableCache.publish(WeatherSnapshot.of(Map.of(City.TALLINN, weather)));
+        feeTableCache.publish(BusinessRuleSnapshot.of(1, List.of(businessRule)));
 
         //when
         UsageForbiddenException exception = assertThrows(UsageForbiddenException.class, () -> {
@@ -154,10 +160,8 @@ class DeliveryFeeTest {
         weather.setAirTemperature(10.0);
         weather.setWindSpeed(5.0);
         weather.setWeatherPhenomenon("Thunderstorm");
-        when(weatherRepository.getLatestWeatherForStation(City.TARTU.getStationName()))
-                .thenReturn(Optional.of(weather));
-        when(businessRuleRepository.findFirstByOrderByTimestampDesc())
-                .thenReturn(Optional.of(businessRule));
+        feeTableCache.publish(WeatherSnapshot.of(Map.of(City.TARTU, weather)));
+        feeTableCache.publish(BusinessRuleSnapshot.of(1, List.of(businessRule)));
 
         //when
         UsageForbiddenException exception = assertThrows(UsageForbiddenException.class, () -> {
@@ -168,11 +172,37 @@ class DeliveryFeeTest {
         assertEquals("Usage of selected vehicle type is forbidden. Vehicle type: BIKE. Phenomenon: Thunderstorm", exception.getMessage());
     }
 
+    @Test
+    void testQuoteReturnsForbiddenReasonWithoutThrowing() {
+        //given
+        weather.setStationName(City.PARNU.getStationName());
+        weather.setAirTemperature(2.0);
+        weather.setWindSpeed(24.0);
+        weather.setWeatherPhenomenon("Glaze");
+        when(weatherHistoryIndex.isInMemory(City.PARNU, testDateTime)).thenReturn(true);
+        when(weatherHistoryIndex.atOrBefore(City.PARNU, testDateTime)).thenReturn(weather);
+        when(businessRuleCache.current())
+                .thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
+
+        //when
+        FeeQuote bikeQuote = deliveryFee.quote(City.PARNU, VehicleType.BIKE, testDateTime);
+        FeeQuote carQuote = deliveryFee.quote(City.PARNU, VehicleType.CAR, testDateTime);
+
+        //then
+        assertTrue(bikeQuote.isForbidden());
+        assertEquals(ForbiddenReason.WIND_SPEED, bikeQuote.forbiddenReason());
+        assertEquals("Usage of selected vehicle type is forbidden. Vehicle type: BIKE Wind speed: 24.0 m/s", bikeQuote.forbiddenMessage());
+        assertFalse(carQuote.isForbidden());
+        assertEquals(3.0, carQuote.fee());
+        verify(feeMetrics).recordQuote(eq(City.PARNU), eq(VehicleType.BIKE), eq(true), anyLong());
+        verify(feeMetrics).recordQuote(eq(City.PARNU), eq(VehicleType.CAR), eq(true), anyLong());
+    }
+
     @Test
     void testCalculateFeeWithNoWeatherDataThrowsException() {
         //given
-        when(weatherRepository.getLatestWeatherForStation(City.PARNU.getStationName()))
-                .thenReturn(Optional.empty());
+        feeTableCache.publish(WeatherSnapshot.EMPTY);
+        feeTableCache.publish(BusinessRuleSnapshot.EMPTY);
 
         //when
         IllegalStateException exception = assertThrows(IllegalStateException.class, () -> {
@@ -181,13 +211,15 @@ class DeliveryFeeTest {
 
         //then
         assertEquals("No weather data available for Pärnu", exception.getMessage());
+        verify(feeMetrics).recordQuote(eq(City.PARNU), eq(VehicleType.CAR), eq(false), anyLong());
     }
 
     @Test
     void testCalculateFeeWithNoWeatherDataAtSpecifiedTimeThrowsException() {
         //given
-        when(weatherRepository.getWeatherForStationAtOrBefore(City.PARNU.getStationName(), testDateTime))
-                .thenReturn(Optional.empty());
+        when(weatherHistoryIndex.isInMemory(City.PARNU, testDateTime)).thenReturn(true);
+        when(weatherHistoryIndex.atOrBefore(City.PARNU, testDateTime))
+                .thenReturn(null);
 
         //when
         IllegalStateException exception = assertThrows(IllegalStateException.class, () -> {
@@ -195,7 +227,44 @@ class DeliveryFeeTest {
         });
 
         //then
-        assertEquals("No business rules available", exception.getMessage());
+        assertEquals("No weather data available for Pärnu at or before " + testDateTime, exception.getMessage());
+    }
+
+    @Test
+    void testHistoricalQuoteOutsideIndexWindowUsesHistoricalQuoteCache() {
+        //given
+        when(weatherHistoryIndex.isInMemory(City.TARTU, testDateTime)).thenReturn(false);
+        when(historicalQuoteCache.resolve(City.TARTU, testDateTime)).thenReturn(null);
+
+        //when
+        assertThrows(IllegalStateException.class, () -> deliveryFee.quote(City.TARTU, VehicleType.CAR, testDateTime));
+
+        //then
+        verify(weatherHistoryIndex, never()).atOrBefore(City.TARTU, testDateTime);
+    }
+
+    @Test
+    void testResolvedObservationIsQuotedWithoutResolvingAgain() {
+        //given
+        weather.setStationName(City.TARTU.getStationName());
+        weather.setAirTemperature(5.0);
+        weather.setWindSpeed(5.0);
+        weather.setWeatherPhenomenon("Clear");
+        when(weatherHistoryIndex.isInMemory(City.TARTU, testDateTime)).thenReturn(true);
+        when(weatherHistoryIndex.atOrBefore(City.TARTU, testDateTime)).thenReturn(weather);
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
+
+        //when
+        DeliveryFee.HistoricalObservation observation = deliveryFee.resolve(City.TARTU, testDateTime);
+        FeeQuote car = deliveryFee.quoteResolved(City.TARTU, VehicleType.CAR, observation);
+        FeeQuote bike = deliveryFee.quoteResolved(City.TARTU, VehicleType.BIKE, observation);
+
+        //then
+        assertSame(weather, observation.weather());
+        assertEquals(350, car.feeCents());
+        assertEquals(250, bike.feeCents());
+        verify(weatherHistoryIndex, times(1)).atOrBefore(City.TARTU, testDateTime);
+        verifyNoInteractions(historicalQuoteCache);
     }
 
     @Test
@@ -205,15 +274,13 @@ class DeliveryFeeTest {
         weather.setAirTemperature(null);
         weather.setWindSpeed(null);
         weather.setWeatherPhenomenon(null);
-        when(weatherRepository.getLatestWeatherForStation(City.TALLINN.getStationName()))
-                .thenReturn(Optional.of(weather));
-        when(businessRuleRepository.findFirstByOrderByTimestampDesc())
-                .thenReturn(Optional.of(businessRule));
+        feeTableCache.publish(WeatherSnapshot.of(Map.of(City.TALLINN, weather)));
+        feeTableCache.publish(BusinessRuleSnapshot.of(1, List.of(businessRule)));
 
         //when
-        double fee = deliveryFee.calculateDeliveryFee(City.TALLINN, VehicleType.CAR, null);
+        long fee = deliveryFee.calculateDeliveryFee(City.TALLINN, VehicleType.CAR, null);
 
         //then
-        assertEquals(4.0, fee);
+        assertEquals(400, fee);
     }
 }
\ No newline at end of file
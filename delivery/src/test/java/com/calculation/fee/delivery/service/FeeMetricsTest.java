@@ -0,0 +1,47 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.VehicleType;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeeMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FeeMetrics feeMetrics = new FeeMetrics(meterRegistry);
+
+    @Test
+    void testRecordQuoteUsesTimerOfCityVehicleAndMode() {
+        //when
+        feeMetrics.recordQuote(City.TARTU, VehicleType.BIKE, true, 2_000_000);
+
+        //then
+        Timer historical = meterRegistry.get(FeeMetrics.QUOTE_TIMER)
+                .tags("city", "tartu", "vehicle", "bike", "mode", "historical").timer();
+        Timer current = meterRegistry.get(FeeMetrics.QUOTE_TIMER)
+                .tags("city", "tartu", "vehicle", "bike", "mode", "current").timer();
+        assertEquals(1, historical.count());
+        assertEquals(2.0, historical.totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(0, current.count());
+    }
+
+    @Test
+    void testCountOutcomeRegistersEveryOutcomeUpFront() {
+        //when
+        feeMetrics.countOutcome(QuoteStatus.FORBIDDEN);
+        feeMetrics.countOutcome(QuoteStatus.FORBIDDEN);
+
+        //then
+        assertEquals(2, meterRegistry.get(FeeMetrics.OUTCOME_COUNTER).tag("outcome", "forbidden").counter().count());
+        assertEquals(0, meterRegistry.get(FeeMetrics.OUTCOME_COUNTER).tag("outcome", "no_data").counter().count());
+        assertEquals(QuoteStatus.values().length, meterRegistry.get(FeeMetrics.OUTCOME_COUNTER).counters().size());
+        assertEquals(City.values().length * VehicleType.values().length * 2,
+                meterRegistry.get(FeeMetrics.QUOTE_TIMER).timers().size());
+    }
+}
@@ -0,0 +1,97 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeeTableTest {
+
+    private BusinessRuleSnapshot ruleSnapshot;
+
+    @BeforeEach
+    void setUp() {
+        BusinessRule businessRule = createBusinessRule();
+        ruleSnapshot = BusinessRuleSnapshot.of(1, List.of(businessRule));
+    }
+
+    @Test
+    void testCompiledFeesMatchCalculation() {
+        //given
+        WeatherSnapshot weatherSnapshot = WeatherSnapshot.of(Map.of(
+                City.TALLINN, createWeather(City.TALLINN, -5.0, 12.0, "Light snow"),
+                City.TARTU, createWeather(City.TARTU, -15.0, 5.0, "Clear"),
+                City.PARNU, createWeather(City.PARNU, 2.0, 8.0, "Light rain")));
+
+        //when
+        FeeTable table = FeeTable.compile(weatherSnapshot, ruleSnapshot);
+
+        //then
+        for (City city : City.values()) {
+            for (VehicleType vehicleType : VehicleType.values()) {
+                long expected = DeliveryFee.calculateFee(city, vehicleType, weatherSnapshot.get(city), ruleSnapshot.active()).feeCents();
+                assertEquals(expected, table.quote(city, vehicleType).feeCents());
+            }
+        }
+        assertEquals(600, table.quote(City.TALLINN, VehicleType.CAR).feeCents());
+        assertSame(weatherSnapshot.get(City.TARTU), table.weather(City.TARTU));
+        assertSame(ruleSnapshot.active(), table.businessRule());
+    }
+
+    @Test
+    void testForbiddenCellKeepsReason() {
+        //given
+        WeatherSnapshot weatherSnapshot = WeatherSnapshot.of(Map.of(
+                City.TARTU, createWeather(City.TARTU, 10.0, 5.0, "Thunderstorm")));
+
+        //when
+        FeeTable table = FeeTable.compile(weatherSnapshot, ruleSnapshot);
+
+        //then
+        assertEquals(350, table.quote(City.TARTU, VehicleType.CAR).feeCents());
+        FeeQuote forbidden = table.quote(City.TARTU, VehicleType.BIKE);
+        assertTrue(forbidden.isForbidden());
+        assertSame(forbidden, table.quote(City.TARTU, VehicleType.BIKE));
+        assertEquals("Usage of selected vehicle type is forbidden. Vehicle type: BIKE. Phenomenon: Thunderstorm", forbidden.forbiddenMessage());
+    }
+
+    @Test
+    void testMissingWeatherAndRulesAreReportedPerCity() {
+        //given
+        WeatherSnapshot weatherSnapshot = WeatherSnapshot.of(Map.of(
+                City.TALLINN, createWeather(City.TALLINN, 5.0, 5.0, "Clear")));
+
+        //when
+        FeeTable withoutWeather = FeeTable.compile(weatherSnapshot, ruleSnapshot);
+        FeeTable withoutRules = FeeTable.compile(weatherSnapshot, BusinessRuleSnapshot.EMPTY);
+
+        //then
+        IllegalStateException noWeather = assertThrows(IllegalStateException.class,
+                () -> withoutWeather.quote(City.PARNU, VehicleType.CAR));
+        assertEquals("No weather data available for Pärnu", noWeather.getMessage());
+        IllegalStateException noRules = assertThrows(IllegalStateException.class,
+                () -> withoutRules.quote(City.TALLINN, VehicleType.CAR));
+        assertEquals("No business rules available", noRules.getMessage());
+    }
+
+    private Weather createWeather(City city, Double airTemperature, Double windSpeed, String phenomenon) {
+        Weather weather = new Weather();
+        weather.setStationName(city.getStationName());
+        weather.setWmoCode("26128");
+        weather.setAirTemperature(airTemperature);
+        weather.setWindSpeed(windSpeed);
+        weather.setWeatherPhenomenon(phenomenon);
+        weather.setTimestamp(LocalDateTime.now());
+        return weather;
+    }
+}
@@ -0,0 +1,189 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.TimelineEntry;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeeTimelineTest {
+
+    private static final String TARTU = City.TARTU.getStationName();
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    @Mock
+    private BusinessRuleCache businessRuleCache;
+
+    private final List<Weather> rows = new ArrayList<>();
+    private final List<BusinessRule> rules = new ArrayList<>();
+    private FeeTimeline feeTimeline;
+
+    @BeforeEach
+    void setUp() {
+        feeTimeline = new FeeTimeline(weatherRepository, businessRuleCache, new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+        lenient().when(businessRuleCache.current()).thenAnswer(invocation -> BusinessRuleSnapshot.of(1, rules));
+        lenient().when(weatherRepository.getWeatherForStationAtOrBefore(eq(TARTU), any())).thenAnswer(invocation ->
+                Optional.ofNullable(atOrBefore(invocation.getArgument(1))));
+        lenient().when(weatherRepository.getWeatherForStationPageAfterRow(eq(TARTU), any(), any(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime after = invocation.getArgument(1);
+            Long afterId = invocation.getArgument(2);
+            LocalDateTime before = invocation.getArgument(3);
+            Pageable page = invocation.getArgument(4);
+            return rows.stream()
+                    .filter(weather -> weather.getTimestamp().isAfter(after)
+                            || weather.getTimestamp().equals(after) && weather.getId() > afterId)
+                    .filter(weather -> weather.getTimestamp().isBefore(before))
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+    }
+
+    @Test
+    void testTimelineMatchesSingleQuotes() {
+        //given
+        for (int hour = 0; hour < 2500; hour++) {
+            rows.add(createWeather(hour + 1L, START.plusHours(hour).plusMinutes(7), -12.0 + hour % 15, (double) (hour % 23),
+                    hour % 5 == 0 ? "Glaze" : "Light rain"));
+        }
+        rules.add(createRule(1L, START.minusDays(1), 350));
+        rules.add(createRule(2L, START.plusHours(300).plusMinutes(30), 400));
+        rules.add(createRule(3L, START.plusHours(2000), 450));
+        LocalDateTime from = START.minusHours(2);
+        LocalDateTime to = START.plusHours(2600);
+        List<TimelineEntry> entries = new ArrayList<>();
+
+        //when
+        feeTimeline.forEach(City.TARTU, VehicleType.BIKE, from, to, entries::add);
+
+        //then
+        assertEquals(2500 + 1 + 2, entries.size());
+        assertEquals(from, entries.get(0).from());
+        assertEquals(to, entries.get(entries.size() - 1).to());
+        for (int i = 1; i < entries.size(); i++) {
+            assertEquals(entries.get(i - 1).to(), entries.get(i).from());
+        }
+        int entry = 0;
+        for (LocalDateTime datetime = from; datetime.isBefore(to); datetime = datetime.plusMinutes(17)) {
+            while (!entries.get(entry).to().isAfter(datetime)) {
+                entry++;
+            }
+            assertEquals(expected(datetime), describe(entries.get(entry)), "at " + datetime);
+        }
+        verify(weatherRepository, times(3)).getWeatherForStationPageAfterRow(eq(TARTU), any(), any(), eq(to), any());
+    }
+
+    @Test
+    void testCsvReportsMissingDataAndForbiddenIntervals() throws IOException {
+        //given
+        rows.add(createWeather(10L, START.plusHours(1), 5.0, 25.0, "Clear"));
+        rows.add(createWeather(11L, START.plusHours(2), -5.0, 12.0, "Light snow"));
+        rules.add(createRule(7L, START.plusMinutes(30), 350));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //when
+        feeTimeline.write(City.TARTU, VehicleType.BIKE, START, START.plusHours(3), FeeTimeline.Format.CSV, out);
+
+        //then
+        assertEquals("""
+                from,to,status,fee,feeCents,error,weatherId,businessRuleId
+                2025-01-01T00:00:00,2025-01-01T00:30:00,NO_DATA,,,"No weather data available for Tartu-Tõravere",,
+                2025-01-01T00:30:00,2025-01-01T01:00:00,NO_DATA,,,"No weather data available for Tartu-Tõravere",,7
+                2025-01-01T01:00:00,2025-01-01T02:00:00,FORBIDDEN,,,"Usage of selected vehicle type is forbidden. Vehicle type: BIKE Wind speed: 25.0 m/s",10,7
+                2025-01-01T02:00:00,2025-01-01T03:00:00,OK,5.5,550,,11,7
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNdjsonWritesOneObjectPerInterval() throws IOException {
+        //given
+        rows.add(createWeather(10L, START, 5.0, 3.0, "Clear"));
+        rules.add(createRule(7L, START.minusDays(1), 350));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //when
+        feeTimeline.write(City.TARTU, VehicleType.CAR, START, START.plusDays(1), FeeTimeline.Format.NDJSON, out);
+
+        //then
+        assertEquals("{\"from\":\"2025-01-01T00:00:00\",\"to\":\"2025-01-02T00:00:00\",\"status\":\"OK\",\"fee\":3.5,"
+                + "\"feeCents\":350,\"weatherId\":10,\"businessRuleId\":7}\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    private String expected(LocalDateTime datetime) {
+        Weather weather = atOrBefore(datetime);
+        BusinessRule rule = BusinessRuleSnapshot.of(1, rules).activeAt(datetime);
+        if (weather == null || rule == null) {
+            return QuoteStatus.NO_DATA.name();
+        }
+        FeeQuote quote = DeliveryFee.calculateFee(City.TARTU, VehicleType.BIKE, weather, rule);
+        return (quote.isForbidden() ? "FORBIDDEN " + quote.forbiddenMessage() : "OK " + quote.feeCents())
+                + " " + weather.getId() + " " + rule.getId();
+    }
+
+    private static String describe(TimelineEntry entry) {
+        if (entry.status() == QuoteStatus.NO_DATA) {
+            return QuoteStatus.NO_DATA.name();
+        }
+        return (entry.status() == QuoteStatus.FORBIDDEN ? "FORBIDDEN " + entry.error() : "OK " + entry.feeCents())
+                + " " + entry.weatherId() + " " + entry.businessRuleId();
+    }
+
+    private Weather atOrBefore(LocalDateTime datetime) {
+        Weather found = null;
+        for (Weather weather : rows) {
+            if (!weather.getTimestamp().isAfter(datetime)) {
+                found = weather;
+            }
+        }
+        return found;
+    }
+
+    private static BusinessRule createRule(Long id, LocalDateTime timestamp, long tartuBikeBaseFeeCents) {
+        BusinessRule businessRule = createBusinessRule();
+        businessRule.setId(id);
+        businessRule.setTimestamp(timestamp);
+        businessRule.setTartuBikeBaseFeeCents(tartuBikeBaseFeeCents);
+        return businessRule;
+    }
+
+    private static Weather createWeather(Long id, LocalDateTime timestamp, Double airTemperature, Double windSpeed, String phenomenon) {
+        Weather weather = new Weather();
+        weather.setId(id);
+        weather.setStationName(TARTU);
+        weather.setWmoCode("26242");
+        weather.setAirTemperature(airTemperature);
+        weather.setWindSpeed(windSpeed);
+        weather.setWeatherPhenomenon(phenomenon);
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+}
@@ -0,0 +1,246 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HistoricalQuoteCacheTest {
+
+    private static final String TARTU = City.TARTU.getStationName();
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 1, 10, 12, 0);
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HistoricalQuoteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new HistoricalQuoteCache(weatherRepository, meterRegistry, 3, Duration.ofHours(1));
+    }
+
+    @Test
+    void testDatetimesOfOneIntervalShareOneEntry() {
+        //given
+        Weather weather = createWeather(1L, HOUR);
+        when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, HOUR.plusMinutes(5))).thenReturn(Optional.of(weather));
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenReturn(Optional.of(createWeather(2L, HOUR.plusHours(1))));
+
+        //when
+        HistoricalQuoteCache.Entry first = cache.resolve(City.TARTU, HOUR.plusMinutes(5));
+        HistoricalQuoteCache.Entry second = cache.resolve(City.TARTU, HOUR.plusMinutes(59));
+
+        //then
+        assertSame(first, second);
+        assertSame(weather, second.weather());
+        verify(weatherRepository, times(1)).getWeatherForStationAtOrBefore(any(), any());
+        assertEquals(1, meterRegistry.get(HistoricalQuoteCache.LOOKUP_COUNTER).tag("result", "hit").counter().count());
+        assertEquals(1, meterRegistry.get(HistoricalQuoteCache.LOOKUP_COUNTER).tag("result", "miss").counter().count());
+        assertEquals(1.0, meterRegistry.get(HistoricalQuoteCache.SIZE_GAUGE).gauge().value());
+    }
+
+    @Test
+    void testLatestRowIsNotCached() {
+        //given
+        when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, HOUR)).thenReturn(Optional.of(createWeather(1L, HOUR)));
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenReturn(Optional.empty());
+
+        //when
+        cache.resolve(City.TARTU, HOUR);
+        cache.resolve(City.TARTU, HOUR);
+
+        //then
+        verify(weatherRepository, times(2)).getWeatherForStationAtOrBefore(TARTU, HOUR);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() {
+        //given
+        for (int hour = 0; hour < 4; hour++) {
+            LocalDateTime timestamp = HOUR.plusHours(hour);
+            when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, timestamp)).thenReturn(Optional.of(createWeather(hour + 1L, timestamp)));
+            when(weatherRepository.getWeatherForStationAfter(TARTU, timestamp)).thenReturn(Optional.of(createWeather(hour + 2L, timestamp.plusHours(1))));
+        }
+
+        //when
+        cache.resolve(City.TARTU, HOUR);
+        cache.resolve(City.TARTU, HOUR.plusHours(1));
+        cache.resolve(City.TARTU, HOUR.plusHours(2));
+        cache.resolve(City.TARTU, HOUR);
+        cache.resolve(City.TARTU, HOUR.plusHours(3));
+        cache.resolve(City.TARTU, HOUR);
+
+        //then
+        assertEquals(3, cache.size());
+        assertEquals(1, meterRegistry.get(HistoricalQuoteCache.EVICTION_COUNTER).tag("cause", "size").counter().count());
+        assertEquals(2, meterRegistry.get(HistoricalQuoteCache.LOOKUP_COUNTER).tag("result", "hit").counter().count());
+        cache.resolve(City.TARTU, HOUR.plusHours(1));
+        verify(weatherRepository, times(2)).getWeatherForStationAtOrBefore(TARTU, HOUR.plusHours(1));
+    }
+
+    @Test
+    void testExpiredEntryIsLoadedAgain() {
+        //given
+        HistoricalQuoteCache expiring = new HistoricalQuoteCache(weatherRepository, meterRegistry, 3, Duration.ZERO);
+        when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, HOUR)).thenReturn(Optional.of(createWeather(1L, HOUR)));
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenReturn(Optional.of(createWeather(2L, HOUR.plusHours(1))));
+
+        //when
+        expiring.resolve(City.TARTU, HOUR);
+        expiring.resolve(City.TARTU, HOUR);
+
+        //then
+        verify(weatherRepository, times(2)).getWeatherForStationAtOrBefore(TARTU, HOUR);
+        assertEquals(1, meterRegistry.get(HistoricalQuoteCache.EVICTION_COUNTER).tag("cause", "expired").counter().count());
+        assertEquals(1, expiring.size());
+    }
+
+    @Test
+    void testLoadOverlappingClearIsNotCached() {
+        //given
+        Weather weather = createWeather(1L, HOUR);
+        when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, HOUR)).thenReturn(Optional.of(weather));
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenAnswer(invocation -> {
+            cache.clear();
+            return Optional.of(createWeather(2L, HOUR.plusHours(1)));
+        }).thenReturn(Optional.of(createWeather(2L, HOUR.plusHours(1))));
+
+        //when
+        HistoricalQuoteCache.Entry stale = cache.resolve(City.TARTU, HOUR);
+        HistoricalQuoteCache.Entry reloaded = cache.resolve(City.TARTU, HOUR);
+
+        //then
+        assertSame(weather, stale.weather());
+        assertNotSame(stale, reloaded);
+        verify(weatherRepository, times(2)).getWeatherForStationAtOrBefore(TARTU, HOUR);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testQuotesAreEvaluatedAgainForANewRuleInstance() {
+        //given
+        when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, HOUR)).thenReturn(Optional.of(createWeather(1L, HOUR)));
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenReturn(Optional.of(createWeather(2L, HOUR.plusHours(1))));
+        BusinessRule businessRule = createBusinessRule();
+        BusinessRule updatedRule = createBusinessRule();
+        updatedRule.setTartuCarBaseFeeCents(400);
+        HistoricalQuoteCache.Entry entry = cache.resolve(City.TARTU, HOUR);
+
+        //when
+        FeeQuote before = entry.quote(City.TARTU, VehicleType.CAR, businessRule);
+        FeeQuote same = entry.quote(City.TARTU, VehicleType.CAR, businessRule);
+        FeeQuote after = entry.quote(City.TARTU, VehicleType.CAR, updatedRule);
+
+        //then
+        assertSame(before, same);
+        assertEquals(350, before.feeCents());
+        assertEquals(400, after.feeCents());
+    }
+
+    @Test
+    void testConcurrentMissesForOneDatetimeLoadOnce() throws Exception {
+        //given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(weatherRepository.getWeatherForStationAtOrBefore(TARTU, HOUR)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(createWeather(1L, HOUR));
+        });
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenReturn(Optional.of(createWeather(2L, HOUR.plusHours(1))));
+
+        //when
+        List<Future<HistoricalQuoteCache.Entry>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            results.add(executor.submit(() -> cache.resolve(City.TARTU, HOUR)));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> cache.resolve(City.TARTU, HOUR)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+        }
+
+        //then
+        HistoricalQuoteCache.Entry loaded = results.get(0).get();
+        for (Future<HistoricalQuoteCache.Entry> result : results) {
+            assertSame(loaded, result.get());
+        }
+        verify(weatherRepository, times(1)).getWeatherForStationAtOrBefore(TARTU, HOUR);
+    }
+
+    @Test
+    void testConcurrentMissesForOneIntervalLoadItOnce() throws Exception {
+        //given
+        int threads = 4;
+        CountDownLatch floorsResolved = new CountDownLatch(threads);
+        when(weatherRepository.getWeatherForStationAtOrBefore(eq(TARTU), any())).thenAnswer(invocation -> {
+            floorsResolved.countDown();
+            floorsResolved.await(5, TimeUnit.SECONDS);
+            return Optional.of(createWeather(1L, HOUR));
+        });
+        when(weatherRepository.getWeatherForStationAfter(TARTU, HOUR)).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return Optional.of(createWeather(2L, HOUR.plusHours(1)));
+        });
+
+        //when
+        List<Future<HistoricalQuoteCache.Entry>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                LocalDateTime datetime = HOUR.plusMinutes(10L * i);
+                results.add(executor.submit(() -> cache.resolve(City.TARTU, datetime)));
+            }
+        }
+
+        //then
+        HistoricalQuoteCache.Entry loaded = results.get(0).get();
+        for (Future<HistoricalQuoteCache.Entry> result : results) {
+            assertSame(loaded, result.get());
+        }
+        verify(weatherRepository, times(1)).getWeatherForStationAfter(TARTU, HOUR);
+        assertEquals(1, cache.size());
+    }
+
+    private Weather createWeather(Long id, LocalDateTime timestamp) {
+        Weather weather = new Weather();
+        weather.setId(id);
+        weather.setStationName(TARTU);
+        weather.setWmoCode("26242");
+        weather.setAirTemperature(5.0);
+        weather.setWindSpeed(3.0);
+        weather.setWeatherPhenomenon("Clear");
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+}
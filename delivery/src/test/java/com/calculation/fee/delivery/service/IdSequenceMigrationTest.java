@@ -0,0 +1,68 @@
+package com.calculation.fee.delivery.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdSequenceMigrationTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private IdSequenceMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:db_sequence_migration;DB_CLOSE_DELAY=-1", "sa", ""));
+        IdSequenceMigration.SEQUENCES.forEach((table, sequence) -> {
+            jdbcTemplate.execute("CREATE TABLE " + table + " (id BIGINT PRIMARY KEY)");
+            jdbcTemplate.execute("CREATE SEQUENCE " + sequence + " START WITH 1 INCREMENT BY 50");
+        });
+        migration = new IdSequenceMigration(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        IdSequenceMigration.SEQUENCES.forEach((table, sequence) -> {
+            jdbcTemplate.execute("DROP TABLE " + table);
+            jdbcTemplate.execute("DROP SEQUENCE " + sequence);
+        });
+    }
+
+    @Test
+    void testMigrateRestartsSequencesAboveExistingIds() {
+        //given
+        for (long id = 1; id <= 120; id++) {
+            jdbcTemplate.update("INSERT INTO weather_data VALUES (?)", id);
+        }
+        jdbcTemplate.update("INSERT INTO business_rules VALUES (3)");
+
+        //when
+        migration.migrate();
+        migration.migrate();
+
+        //then
+        assertEquals(171L, nextValue("weather_data_seq"));
+        assertEquals(54L, nextValue("business_rules_seq"));
+    }
+
+    @Test
+    void testMigrateLeavesEmptyTablesAndSequencesAheadAlone() {
+        //given
+        jdbcTemplate.update("INSERT INTO weather_data VALUES (7)");
+        jdbcTemplate.execute("ALTER SEQUENCE weather_data_seq RESTART WITH 501");
+
+        //when
+        migration.migrate();
+
+        //then
+        assertEquals(501L, nextValue("weather_data_seq"));
+        assertEquals(1L, nextValue("business_rules_seq"));
+    }
+
+    private long nextValue(String sequence) {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+    }
+}
@@ -0,0 +1,98 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LatestWeatherCacheTest {
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    @Spy
+    private FeeTableCache feeTableCache = new FeeTableCache();
+
+    @InjectMocks
+    private LatestWeatherCache latestWeatherCache;
+
+    private LocalDateTime testDateTime;
+
+    @BeforeEach
+    void setUp() {
+        testDateTime = LocalDateTime.now();
+    }
+
+    @Test
+    void testReloadReadsLatestWeatherForEveryCity() {
+        //given
+        Weather tallinnWeather = createWeather(City.TALLINN, testDateTime);
+        when(weatherRepository.getLatestWeatherForStation(City.TALLINN.getStationName()))
+                .thenReturn(Optional.of(tallinnWeather));
+        when(weatherRepository.getLatestWeatherForStation(City.TARTU.getStationName()))
+                .thenReturn(Optional.empty());
+        when(weatherRepository.getLatestWeatherForStation(City.PARNU.getStationName()))
+                .thenReturn(Optional.empty());
+
+        //when
+        latestWeatherCache.reload();
+
+        //then
+        assertSame(tallinnWeather, latestWeatherCache.get(City.TALLINN));
+        assertNull(latestWeatherCache.get(City.TARTU));
+        assertNull(latestWeatherCache.get(City.PARNU));
+    }
+
+    @Test
+    void testPublishReplacesSnapshotWithoutTouchingRepository() {
+        //given
+        WeatherSnapshot before = latestWeatherCache.current();
+        Weather tartuWeather = createWeather(City.TARTU, testDateTime);
+
+        //when
+        latestWeatherCache.publish(Map.of(City.TARTU, tartuWeather));
+
+        //then
+        assertNotSame(before, latestWeatherCache.current());
+        assertNull(before.get(City.TARTU));
+        assertSame(tartuWeather, latestWeatherCache.get(City.TARTU));
+        assertSame(tartuWeather, feeTableCache.current().weather(City.TARTU));
+        verifyNoInteractions(weatherRepository);
+    }
+
+    @Test
+    void testPublishIgnoresOlderObservation() {
+        //given
+        Weather newer = createWeather(City.PARNU, testDateTime);
+        Weather older = createWeather(City.PARNU, testDateTime.minusHours(1));
+        latestWeatherCache.publish(Map.of(City.PARNU, newer));
+
+        //when
+        latestWeatherCache.publish(Map.of(City.PARNU, older));
+
+        //then
+        assertSame(newer, latestWeatherCache.get(City.PARNU));
+    }
+
+    private Weather createWeather(City city, LocalDateTime timestamp) {
+        Weather weather = new Weather();
+        weather.setStationName(city.getStationName());
+        weather.setWmoCode("26128");
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+}
@@ -0,0 +1,136 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.xml.Observation;
+import com.calculation.fee.delivery.model.xml.Station;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObservationStreamParserTest {
+
+    private static final List<String> REQUIRED_STATIONS = Arrays.stream(City.values())
+            .map(City::getStationName)
+            .toList();
+
+    private final ObservationStreamParser parser = new ObservationStreamParser(REQUIRED_STATIONS);
+
+    @Test
+    void testRecordedFeedMatchesJacksonBinding() throws Exception {
+        //given
+        byte[] feed = readFixture("observations-full.xml");
+        Observation bound = new XmlMapper().readValue(feed, Observation.class);
+        List<Station> expected = bound.getStations().stream()
+                .filter(station -> REQUIRED_STATIONS.contains(station.getName()))
+                .toList();
+
+        //when
+        Observation streamed = parser.parse(new ByteArrayInputStream(feed));
+
+        //then
+        assertEquals(bound.getTimestamp(), streamed.getTimestamp());
+        assertEquals(3, streamed.getStations().size());
+        for (int i = 0; i < expected.size(); i++) {
+            Station want = expected.get(i);
+            Station got = streamed.getStations().get(i);
+            assertEquals(want.getName(), got.getName());
+            assertEquals(want.getWmoCode(), got.getWmoCode());
+            assertEquals(want.getAirtemperature(), got.getAirtemperature());
+            assertEquals(want.getWindspeed(), got.getWindspeed());
+            assertEquals(want.getPhenomenon(), got.getPhenomenon());
+        }
+    }
+
+    @Test
+    void testOnlyRequiredFieldsAreMaterialized() throws Exception {
+        //given
+        String feed = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <observations timestamp="1742637600">
+                    <station>
+                        <name>Pärnu</name>
+                        <wmocode>41803</wmocode>
+                        <visibility>20.0</visibility>
+                        <airtemperature>0.6</airtemperature>
+                        <windspeed>6.4</windspeed>
+                        <windspeedmax>11.2</windspeedmax>
+                    </station>
+                </observations>
+                """;
+
+        //when
+        Observation observation = parser.parse(stream(feed));
+
+        //then
+        Station station = observation.getStations().get(0);
+        assertEquals("Pärnu", station.getName());
+        assertEquals("41803", station.getWmoCode());
+        assertEquals("0.6", station.getAirtemperature());
+        assertEquals("6.4", station.getWindspeed());
+        assertNull(station.getPhenomenon());
+        assertNull(station.getVisibility());
+        assertNull(station.getWindspeedmax());
+    }
+
+    @Test
+    void testStationsAreMatchedWhereverTheNameAppears() throws Exception {
+        //given
+        String feed = """
+                <observations timestamp="1742637600">
+                    <station>
+                        <name>Kuressaare linn</name>
+                        <airtemperature>-1.0</airtemperature>
+                    </station>
+                    <station>
+                        <airtemperature>-2.1</airtemperature>
+                        <extra><name>Nested</name></extra>
+                        <name>Tallinn-Harku</name>
+                        <phenomenon><![CDATA[Light snow shower]]></phenomenon>
+                    </station>
+                    <station>
+                        <airtemperature>3.0</airtemperature>
+                    </station>
+                </observations>
+                """;
+
+        //when
+        Observation observation = parser.parse(stream(feed));
+
+        //then
+        assertEquals("1742637600", observation.getTimestamp());
+        assertEquals(1, observation.getStations().size());
+        Station station = observation.getStations().get(0);
+        assertEquals("Tallinn-Harku", station.getName());
+        assertEquals("-2.1", station.getAirtemperature());
+        assertEquals("Light snow shower", station.getPhenomenon());
+    }
+
+    @Test
+    void testMalformedFeedThrows() {
+        //given
+        String feed = "<observations timestamp=\"1742637600\"><station><name>Pärnu</name></observations>";
+
+        //when, then
+        assertThrows(XMLStreamException.class, () -> parser.parse(stream(feed)));
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        try (InputStream in = ObservationStreamParserTest.class.getResourceAsStream("/observations/" + name)) {
+            assertNotNull(in, "Missing fixture " + name);
+            return in.readAllBytes();
+        }
+    }
+}
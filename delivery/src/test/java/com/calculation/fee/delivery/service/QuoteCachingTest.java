@@ -0,0 +1,149 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.CacheControl;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteCachingTest {
+
+    @Mock
+    private LatestWeatherCache latestWeatherCache;
+
+    @Mock
+    private BusinessRuleCache businessRuleCache;
+
+    private QuoteCaching quoteCaching;
+    private Weather latest;
+    private BusinessRule businessRule;
+
+    @BeforeEach
+    void setUp() {
+        quoteCaching = new QuoteCaching(latestWeatherCache, businessRuleCache, "10 * * * * *");
+        latest = new Weather();
+        latest.setId(42L);
+        latest.setStationName(City.TALLINN.getStationName());
+        latest.setTimestamp(LocalDateTime.now().minusMinutes(20));
+        businessRule = createBusinessRule();
+        businessRule.setId(7L);
+    }
+
+    @Test
+    void testCurrentValidatorChangesWithObservationAndRule() {
+        //given
+        when(latestWeatherCache.get(City.TALLINN)).thenReturn(latest);
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
+
+        //when
+        QuoteCaching.Validator before = quoteCaching.validator(City.TALLINN, null);
+        latest.setId(43L);
+        QuoteCaching.Validator afterImport = quoteCaching.validator(City.TALLINN, null);
+        businessRule.setTimestamp(businessRule.getTimestamp().plusSeconds(1));
+        QuoteCaching.Validator afterRuleUpdate = quoteCaching.validator(City.TALLINN, null);
+
+        //then
+        assertTrue(before.etag().startsWith("\"42-7."));
+        assertNotEquals(before.etag(), afterImport.etag());
+        assertNotEquals(afterImport.etag(), afterRuleUpdate.etag());
+        String cacheControl = before.cacheControl().getHeaderValue();
+        assertTrue(cacheControl.startsWith("max-age="));
+        assertTrue(Long.parseLong(cacheControl.substring("max-age=".length(), cacheControl.indexOf(','))) <= 60);
+    }
+
+    @Test
+    void testSettledHistoricalValidatorFollowsResolvedObservation() {
+        //given
+        LocalDateTime datetime = latest.getTimestamp().minusHours(1);
+        Weather resolved = new Weather();
+        resolved.setId(30L);
+        Weather backfilled = new Weather();
+        backfilled.setId(99L);
+        when(latestWeatherCache.get(City.TALLINN)).thenReturn(latest);
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
+
+        //when
+        QuoteCaching.Validator settled = quoteCaching.validator(City.TALLINN, observation(datetime, resolved));
+        latest.setId(43L);
+        QuoteCaching.Validator afterImport = quoteCaching.validator(City.TALLINN, observation(datetime, resolved));
+        QuoteCaching.Validator afterBackfill = quoteCaching.validator(City.TALLINN, observation(datetime, backfilled));
+
+        //then
+        assertTrue(settled.etag().startsWith("\"30-7."));
+        assertEquals(settled.etag(), afterImport.etag());
+        assertNotEquals(settled.etag(), afterBackfill.etag());
+        assertEquals(CacheControl.maxAge(QuoteCaching.SETTLED_MAX_AGE).cachePublic().getHeaderValue(),
+                settled.cacheControl().getHeaderValue());
+        assertFalse(settled.cacheControl().getHeaderValue().contains("immutable"));
+    }
+
+    @Test
+    void testNoHistoricalValidatorWithoutObservation() {
+        //given
+        LocalDateTime datetime = latest.getTimestamp().minusHours(2);
+        when(latestWeatherCache.get(City.TALLINN)).thenReturn(latest);
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
+
+        //when
+        QuoteCaching.Validator validator = quoteCaching.validator(City.TALLINN, observation(datetime, null));
+
+        //then
+        assertNull(validator);
+    }
+
+    @Test
+    void testHistoricalValidatorAfterLatestObservationFollowsImports() {
+        //given
+        LocalDateTime datetime = latest.getTimestamp().plusMinutes(5);
+        when(latestWeatherCache.get(City.TALLINN)).thenReturn(latest);
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(1, List.of(businessRule)));
+
+        //when
+        QuoteCaching.Validator validator = quoteCaching.validator(City.TALLINN, observation(datetime, latest));
+
+        //then
+        assertTrue(validator.etag().startsWith("\"42-7."));
+        assertFalse(validator.cacheControl().getHeaderValue().contains("immutable"));
+    }
+
+    @Test
+    void testNoValidatorWithoutInputs() {
+        //given
+        when(latestWeatherCache.get(City.TARTU)).thenReturn(null);
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.EMPTY);
+
+        //when
+        QuoteCaching.Validator validator = quoteCaching.validator(City.TARTU, null);
+
+        //then
+        assertNull(validator);
+    }
+
+    @Test
+    void testDisabledImportScheduleRequiresRevalidation() {
+        //given
+        QuoteCaching withoutSchedule = new QuoteCaching(latestWeatherCache, businessRuleCache, "-");
+
+        //when
+        CacheControl cacheControl = withoutSchedule.untilNextImport();
+
+        //then
+        assertEquals("no-cache", cacheControl.getHeaderValue());
+    }
+
+    private static DeliveryFee.HistoricalObservation observation(LocalDateTime datetime, Weather weather) {
+        return new DeliveryFee.HistoricalObservation(datetime, weather, null);
+    }
+}
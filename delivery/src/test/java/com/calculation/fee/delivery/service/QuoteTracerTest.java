@@ -0,0 +1,60 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.QuoteTraceSettings;
+import com.calculation.fee.delivery.model.VehicleType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteTracerTest {
+
+    @Test
+    void testTracingIsOffByDefault() {
+        //given
+        QuoteTracer quoteTracer = QuoteTracer.off();
+
+        //when
+        boolean sampled = quoteTracer.isSampled(City.TALLINN, VehicleType.CAR);
+
+        //then
+        assertFalse(sampled);
+        assertTrue(quoteTracer.settings().isOff());
+    }
+
+    @Test
+    void testSelectedCitiesAndVehicleTypesAreAlwaysTraced() {
+        //given
+        QuoteTracer quoteTracer = new QuoteTracer(0, List.of(City.TARTU), List.of(VehicleType.BIKE));
+
+        //when & then
+        assertTrue(quoteTracer.isSampled(City.TARTU, VehicleType.CAR));
+        assertTrue(quoteTracer.isSampled(City.PARNU, VehicleType.BIKE));
+        assertFalse(quoteTracer.isSampled(City.TALLINN, VehicleType.SCOOTER));
+    }
+
+    @Test
+    void testUpdateSwitchesTracingAtRuntime() {
+        //given
+        QuoteTracer quoteTracer = QuoteTracer.off();
+
+        //when
+        quoteTracer.update(new QuoteTraceSettings(1.0, Set.of(), Set.of()));
+        boolean sampledWhenOn = quoteTracer.isSampled(City.PARNU, VehicleType.SCOOTER);
+        quoteTracer.update(new QuoteTraceSettings(0.0, null, null));
+        boolean sampledWhenOff = quoteTracer.isSampled(City.PARNU, VehicleType.SCOOTER);
+
+        //then
+        assertTrue(sampledWhenOn);
+        assertFalse(sampledWhenOff);
+    }
+
+    @Test
+    void testSampleRateOutsideRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new QuoteTraceSettings(1.5, Set.of(), Set.of()));
+        assertThrows(IllegalArgumentException.class, () -> new QuoteTraceSettings(-0.1, Set.of(), Set.of()));
+    }
+}
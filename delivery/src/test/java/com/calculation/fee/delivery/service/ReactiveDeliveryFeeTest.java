@@ -0,0 +1,143 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.ForbiddenReason;
+import com.calculation.fee.delivery.model.QuoteRequest;
+import com.calculation.fee.delivery.model.QuoteResult;
+import com.calculation.fee.delivery.model.QuoteStatus;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveDeliveryFeeTest {
+
+    private static final LocalDateTime DATETIME = LocalDateTime.of(2025, 3, 22, 10, 0);
+
+    @Mock
+    private DeliveryFee deliveryFee;
+
+    @Mock
+    private WeatherHistoryIndex weatherHistoryIndex;
+
+    private ReactiveDeliveryFee reactiveDeliveryFee;
+
+    @BeforeEach
+    void setUp() {
+        reactiveDeliveryFee = new ReactiveDeliveryFee(deliveryFee, weatherHistoryIndex, 4, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveDeliveryFee.close();
+    }
+
+    @Test
+    void testInMemoryQuoteRunsOnSubscribingThread() {
+        //given
+        AtomicReference<Thread> quotingThread = new AtomicReference<>();
+        when(weatherHistoryIndex.isInMemory(City.TARTU, DATETIME)).thenReturn(true);
+        when(deliveryFee.quote(City.TARTU, VehicleType.CAR, DATETIME)).thenAnswer(invocation -> {
+            quotingThread.set(Thread.currentThread());
+            return FeeQuote.allowed(350);
+        });
+
+        //when
+        FeeQuote quote = reactiveDeliveryFee.quote(City.TARTU, VehicleType.CAR, DATETIME).block();
+
+        //then
+        assertEquals(3.5, quote.fee());
+        assertSame(Thread.currentThread(), quotingThread.get());
+    }
+
+    @Test
+    void testQuoteThatQueriesTheDatabaseRunsOnLookupScheduler() {
+        //given
+        AtomicReference<String> quotingThread = new AtomicReference<>();
+        when(weatherHistoryIndex.isInMemory(City.TARTU, DATETIME)).thenReturn(false);
+        when(deliveryFee.quote(City.TARTU, VehicleType.CAR, DATETIME)).thenAnswer(invocation -> {
+            quotingThread.set(Thread.currentThread().getName());
+            return FeeQuote.allowed(350);
+        });
+
+        //when
+        reactiveDeliveryFee.quote(City.TARTU, VehicleType.CAR, DATETIME).block();
+
+        //then
+        assertTrue(quotingThread.get().startsWith("fee-lookup"), quotingThread.get());
+    }
+
+    @Test
+    void testSchedulerIsChosenAtSubscription() {
+        //given
+        AtomicReference<String> quotingThread = new AtomicReference<>();
+        Mono<FeeQuote> quote = reactiveDeliveryFee.quote(City.TARTU, VehicleType.CAR, DATETIME);
+        verifyNoInteractions(weatherHistoryIndex);
+        when(weatherHistoryIndex.isInMemory(City.TARTU, DATETIME)).thenReturn(false);
+        when(deliveryFee.quote(City.TARTU, VehicleType.CAR, DATETIME)).thenAnswer(invocation -> {
+            quotingThread.set(Thread.currentThread().getName());
+            return FeeQuote.allowed(350);
+        });
+
+        //when
+        quote.block();
+
+        //then
+        assertTrue(quotingThread.get().startsWith("fee-lookup"), quotingThread.get());
+    }
+
+    @Test
+    void testQuotesEmitOneResultPerRequestInOrder() {
+        //given
+        when(weatherHistoryIndex.isInMemory(eq(City.PARNU), any())).thenReturn(false);
+        when(deliveryFee.quote(City.TALLINN, VehicleType.CAR, null)).thenReturn(FeeQuote.allowed(600));
+        when(deliveryFee.quote(City.TALLINN, VehicleType.BIKE, null))
+                .thenReturn(FeeQuote.forbidden(ForbiddenReason.PHENOMENON, VehicleType.BIKE, glaze()));
+        when(deliveryFee.quote(City.PARNU, VehicleType.CAR, DATETIME))
+                .thenThrow(new IllegalStateException("No business rules available"));
+
+        //when
+        List<QuoteResult> results = reactiveDeliveryFee.quotes(Flux.just(
+                request("Parnu", "Car", "2025-03-22T10:00:00"),
+                request("Tallinn", "Car", null),
+                request("Narva", "Car", null),
+                request("Tallinn", "Bike", null))).collectList().block();
+
+        //then
+        assertEquals(4, results.size());
+        assertEquals(QuoteStatus.NO_DATA, results.get(0).status());
+        assertEquals(6.0, results.get(1).fee());
+        assertEquals(600L, results.get(1).feeCents());
+        assertSame(QuoteResult.INVALID_CITY, results.get(2));
+        assertEquals(QuoteStatus.FORBIDDEN, results.get(3).status());
+    }
+
+    private static QuoteRequest request(String city, String vehicleType, String datetime) {
+        QuoteRequest request = new QuoteRequest();
+        request.setCity(city);
+        request.setVehicleType(vehicleType);
+        request.setDatetime(datetime);
+        return request;
+    }
+
+    private static Weather glaze() {
+        Weather weather = new Weather();
+        weather.setWeatherPhenomenon("Glaze");
+        return weather;
+    }
+}
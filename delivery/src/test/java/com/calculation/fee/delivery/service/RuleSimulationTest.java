@@ -0,0 +1,227 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.SimulationResult;
+import com.calculation.fee.delivery.model.SimulationTotals;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RuleSimulationTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 13);
+    private static final String[] PHENOMENA = {"Clear", "Light rain", "Light snow", "Glaze", "Moderate sleet", "Thunder"};
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    @Mock
+    private BusinessRuleCache businessRuleCache;
+
+    @TempDir
+    private Path directory;
+
+    private final List<Weather> rows = new ArrayList<>();
+    private final BusinessRule active = createBusinessRule();
+    private final BusinessRule draft = createBusinessRule();
+    private final long[][][] ordersPerHour = new long[City.values().length][VehicleType.values().length][24];
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3000; i++) {
+            rows.add(createWeather(City.TARTU, START.plusMinutes(20L * i), i));
+        }
+        for (int i = 0; i < 500; i++) {
+            rows.add(createWeather(City.TALLINN, START.truncatedTo(ChronoUnit.HOURS).plusHours(3L * i), i * 7));
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(i + 1L);
+        }
+        active.setId(1L);
+        draft.setTartuBikeBaseFeeCents(300);
+        draft.setTallinnCarBaseFeeCents(450);
+        draft.setAtefBelowMinusTenCents(150);
+        draft.setWpefSnowOrSleetCents(80);
+        for (City city : City.values()) {
+            for (VehicleType vehicleType : VehicleType.values()) {
+                for (int hour = 0; hour < 24; hour++) {
+                    ordersPerHour[city.ordinal()][vehicleType.ordinal()][hour] =
+                            (city.ordinal() + 1) * (vehicleType.ordinal() + 2) + hour % 5;
+                }
+            }
+        }
+
+        lenient().when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(1, List.of(active)));
+        lenient().when(weatherRepository.getOldestWeatherForStation(any())).thenAnswer(invocation ->
+                rows(invocation.getArgument(0)).stream().findFirst());
+        lenient().when(weatherRepository.getLatestWeatherForStation(any())).thenAnswer(invocation ->
+                rows(invocation.getArgument(0)).stream().reduce((first, second) -> second));
+        lenient().when(weatherRepository.getWeatherForStationAtOrBefore(any(), any())).thenAnswer(invocation ->
+                Optional.ofNullable(atOrBefore(invocation.getArgument(0), invocation.getArgument(1))));
+        lenient().when(weatherRepository.getWeatherForStationPageAfterRow(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime after = invocation.getArgument(1);
+            Long afterId = invocation.getArgument(2);
+            LocalDateTime before = invocation.getArgument(3);
+            Pageable page = invocation.getArgument(4);
+            return rows(invocation.getArgument(0)).stream()
+                    .filter(weather -> weather.getTimestamp().isAfter(after)
+                            || weather.getTimestamp().equals(after) && weather.getId() > afterId)
+                    .filter(weather -> weather.getTimestamp().isBefore(before))
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+    }
+
+    @Test
+    void testSimulationFromDatabaseMatchesHourlyQuotes() {
+        //given
+        RuleSimulation ruleSimulation = new RuleSimulation(weatherRepository, new WeatherHistoryStore(weatherRepository, null),
+                businessRuleCache, 4, 30);
+
+        //when
+        SimulationResult result = ruleSimulation.simulate(draft, ordersPerHour);
+
+        //then
+        assertEquals(1L, result.activeRuleId());
+        assertEquals(3500, result.observations());
+        assertMatchesHourlyQuotes(result);
+    }
+
+    @Test
+    void testSimulationFromHistoryStoreMatchesHourlyQuotes() throws IOException {
+        //given
+        WeatherHistoryStore store = new WeatherHistoryStore(weatherRepository, directory);
+        store.open();
+        clearInvocations(weatherRepository);
+        RuleSimulation ruleSimulation = new RuleSimulation(weatherRepository, store, businessRuleCache, 4, 2);
+
+        //when
+        SimulationResult result = ruleSimulation.simulate(draft, ordersPerHour);
+
+        //then
+        assertEquals(3500, result.observations());
+        assertMatchesHourlyQuotes(result);
+        verify(weatherRepository, never()).getWeatherForStationPageAfterRow(any(), any(), any(), any(), any());
+        store.close();
+    }
+
+    @Test
+    void testSimulationWithoutActiveRuleIsRejected() {
+        //given
+        when(businessRuleCache.current()).thenReturn(BusinessRuleSnapshot.of(2, List.of()));
+        RuleSimulation ruleSimulation = new RuleSimulation(weatherRepository, new WeatherHistoryStore(weatherRepository, null),
+                businessRuleCache, 1, 30);
+
+        //when
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> ruleSimulation.simulate(draft, ordersPerHour));
+
+        //then
+        assertEquals("No business rules available", exception.getMessage());
+    }
+
+    private void assertMatchesHourlyQuotes(SimulationResult result) {
+        long[] totals = new long[6];
+        for (City city : City.values()) {
+            long[] expected = priceEveryHour(city);
+            SimulationTotals actual = result.cities().get(city.ordinal());
+            assertEquals(city.getStationName(), actual.city());
+            assertArrayEquals(expected, sums(actual), city.getStationName());
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += expected[i];
+            }
+        }
+        assertTrue(totals[3] > 0);
+        assertNotEquals(totals[4], totals[5]);
+        assertArrayEquals(totals, sums(result.totals()));
+        assertEquals(totals[5] - totals[4], result.totals().deltaCents());
+    }
+
+    /**
+     * Prices each whole hour of the city's history one by one with the observation at or before it
+     */
+    private long[] priceEveryHour(City city) {
+        long[] sums = new long[6];
+        List<Weather> cityRows = rows(city.getStationName());
+        if (cityRows.isEmpty()) {
+            return sums;
+        }
+        LocalDateTime oldest = cityRows.get(0).getTimestamp();
+        LocalDateTime first = oldest.truncatedTo(ChronoUnit.HOURS).equals(oldest)
+                ? oldest
+                : oldest.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        LocalDateTime last = cityRows.get(cityRows.size() - 1).getTimestamp();
+        for (LocalDateTime hour = first; !hour.isAfter(last); hour = hour.plusHours(1)) {
+            Weather weather = atOrBefore(city.getStationName(), hour);
+            sums[0]++;
+            for (VehicleType vehicleType : VehicleType.values()) {
+                long orders = ordersPerHour[city.ordinal()][vehicleType.ordinal()][hour.getHour()];
+                FeeQuote activeQuote = DeliveryFee.calculateFee(city, vehicleType, weather, active);
+                FeeQuote draftQuote = DeliveryFee.calculateFee(city, vehicleType, weather, draft);
+                sums[1] += orders;
+                if (activeQuote.isForbidden()) {
+                    sums[2] += orders;
+                    sums[3]++;
+                } else {
+                    sums[4] += orders * activeQuote.feeCents();
+                    sums[5] += orders * draftQuote.feeCents();
+                }
+            }
+        }
+        return sums;
+    }
+
+    private static long[] sums(SimulationTotals totals) {
+        return new long[]{totals.hours(), totals.orders(), totals.forbiddenOrders(), totals.forbiddenVehicleHours(),
+                totals.activeRevenueCents(), totals.draftRevenueCents()};
+    }
+
+    private List<Weather> rows(String stationName) {
+        return rows.stream().filter(weather -> weather.getStationName().equals(stationName)).toList();
+    }
+
+    private Weather atOrBefore(String stationName, LocalDateTime datetime) {
+        Weather found = null;
+        for (Weather weather : rows(stationName)) {
+            if (!weather.getTimestamp().isAfter(datetime)) {
+                found = weather;
+            }
+        }
+        return found;
+    }
+
+    private static Weather createWeather(City city, LocalDateTime timestamp, int i) {
+        Weather weather = new Weather();
+        weather.setStationName(city.getStationName());
+        weather.setWmoCode("1");
+        weather.setAirTemperature(i % 11 == 0 ? null : -20.0 + i % 29);
+        weather.setWindSpeed(i % 13 == 0 ? null : (double) (i % 26));
+        weather.setWeatherPhenomenon(i % 17 == 0 ? null : PHENOMENA[i % PHENOMENA.length]);
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+}
@@ -0,0 +1,215 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BackfillProgress;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherBackfillTest {
+
+    private static final long FIRST_TIMESTAMP = 1742637600L;
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    @Mock
+    private LatestWeatherCache latestWeatherCache;
+
+    @Mock
+    private WeatherHistoryIndex weatherHistoryIndex;
+
+    @Mock
+    private HistoricalQuoteCache historicalQuoteCache;
+
+    @Mock
+    private WeatherHistoryStore weatherHistoryStore;
+
+    @TempDir
+    private Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Set<String> stored = ConcurrentHashMap.newKeySet();
+    private String feed;
+    private WeatherBackfill weatherBackfill;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream in = WeatherBackfillTest.class.getResourceAsStream("/observations/observations-full.xml")) {
+            feed = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        stored.add(key(City.TARTU.getStationName(), timestamp(0)));
+        lenient().when(weatherRepository.getTimestampsForStationBetween(any(), any(), any())).thenAnswer(invocation -> {
+            String station = invocation.getArgument(0);
+            LocalDateTime from = invocation.getArgument(1);
+            LocalDateTime to = invocation.getArgument(2);
+            return stored.stream()
+                    .filter(key -> key.startsWith(station + "@"))
+                    .map(key -> LocalDateTime.parse(key.substring(station.length() + 1)))
+                    .filter(timestamp -> !timestamp.isBefore(from) && !timestamp.isAfter(to))
+                    .toList();
+        });
+        lenient().when(weatherRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Weather> rows = invocation.getArgument(0);
+            rows.forEach(weather -> assertTrue(stored.add(key(weather.getStationName(), weather.getTimestamp()))));
+            return rows;
+        });
+        weatherBackfill = new WeatherBackfill(weatherRepository, latestWeatherCache, weatherHistoryIndex,
+                historicalQuoteCache, weatherHistoryStore, meterRegistry, directory, 3, 4);
+    }
+
+    @Test
+    void testBackfillDeduplicatesAndRecordsLoadedFiles() throws IOException {
+        //given
+        for (int hour = 0; hour < 10; hour++) {
+            writeFeed("observations-" + hour + ".xml", hour);
+        }
+        writeFeed("observations-9-copy.xml", 9);
+        Files.writeString(directory.resolve("observations-broken.xml"), "<observations timestamp=\"1742637600\"><station>");
+
+        //when
+        BackfillProgress progress = weatherBackfill.run(directory);
+
+        //then
+        assertEquals(BackfillProgress.State.COMPLETED, progress.state());
+        assertEquals(12, progress.totalFiles());
+        assertEquals(11, progress.processedFiles());
+        assertEquals(1, progress.failedFiles());
+        assertEquals(29, progress.insertedRows());
+        assertEquals(4, progress.duplicateRows());
+        assertEquals(30, stored.size());
+        assertEquals(29, meterRegistry.get(WeatherBackfill.ROW_COUNTER).tag("result", "inserted").counter().count());
+        List<String> checkpoint = Files.readAllLines(directory.resolve(WeatherBackfill.CHECKPOINT_FILE));
+        assertEquals(11, checkpoint.size());
+        assertFalse(checkpoint.contains("observations-broken.xml"));
+        verify(latestWeatherCache).reload();
+        verify(weatherHistoryIndex).reload();
+        verify(historicalQuoteCache).clear();
+        verify(weatherHistoryStore).rebuild(City.TALLINN, timestamp(0));
+        verify(weatherHistoryStore).rebuild(City.TARTU, timestamp(1));
+        verify(weatherHistoryStore).rebuild(City.PARNU, timestamp(0));
+    }
+
+    @Test
+    void testInterruptedBackfillResumesAfterLoadedFiles() throws IOException {
+        //given
+        for (int hour = 0; hour < 6; hour++) {
+            writeFeed("observations-" + hour + ".xml", hour);
+        }
+        Files.writeString(directory.resolve(WeatherBackfill.CHECKPOINT_FILE),
+                "observations-0.xml\nobservations-1.xml\nobservations-2.xml\n");
+
+        //when
+        BackfillProgress progress = weatherBackfill.run(directory);
+
+        //then
+        assertEquals(3, progress.resumedFiles());
+        assertEquals(3, progress.processedFiles());
+        assertEquals(9, progress.insertedRows());
+        assertEquals(6, Files.readAllLines(directory.resolve(WeatherBackfill.CHECKPOINT_FILE)).size());
+    }
+
+    @Test
+    void testMissingDirectoryIsRejected() {
+        //when
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> weatherBackfill.run(directory.resolve("missing")));
+
+        //then
+        assertTrue(exception.getMessage().startsWith("Not a directory"));
+        assertNull(weatherBackfill.progress());
+    }
+
+    @Test
+    void testStartReadsDirectoryUnderRoot() throws Exception {
+        //given
+        Path archive = Files.createDirectory(directory.resolve("2025"));
+        Files.writeString(archive.resolve("observations-0.xml"), feed);
+
+        //when
+        BackfillProgress started = weatherBackfill.start("2025");
+        BackfillProgress progress = started;
+        for (int i = 0; i < 100 && progress.state() == BackfillProgress.State.RUNNING; i++) {
+            Thread.sleep(50);
+            progress = weatherBackfill.progress();
+        }
+
+        //then
+        assertEquals(archive.toRealPath().toString(), started.directory());
+        assertEquals(BackfillProgress.State.COMPLETED, progress.state());
+        assertEquals(1, progress.processedFiles());
+    }
+
+    @Test
+    void testStartRejectsDirectoriesOutsideRoot() throws IOException {
+        //given
+        Path root = Files.createDirectory(directory.resolve("root"));
+        Files.createDirectory(directory.resolve("outside"));
+        Files.createSymbolicLink(root.resolve("link"), directory.resolve("outside"));
+        WeatherBackfill rooted = new WeatherBackfill(weatherRepository, latestWeatherCache, weatherHistoryIndex,
+                historicalQuoteCache, weatherHistoryStore, meterRegistry, root, 1, 4);
+
+        //when
+        IllegalArgumentException absolute = assertThrows(IllegalArgumentException.class,
+                () -> rooted.start(directory.resolve("outside").toString()));
+        IllegalArgumentException parent = assertThrows(IllegalArgumentException.class, () -> rooted.start("../outside"));
+        IllegalArgumentException link = assertThrows(IllegalArgumentException.class, () -> rooted.start("link"));
+
+        //then
+        assertTrue(absolute.getMessage().startsWith("Directory must be relative"));
+        assertTrue(parent.getMessage().startsWith("Directory must not contain"));
+        assertTrue(link.getMessage().startsWith("Directory leaves the backfill root"));
+        assertNull(rooted.progress());
+    }
+
+    @Test
+    void testStartWithoutRootIsRejected() {
+        //given
+        WeatherBackfill unrooted = new WeatherBackfill(weatherRepository, latestWeatherCache, weatherHistoryIndex,
+                historicalQuoteCache, weatherHistoryStore, meterRegistry, null, 1, 4);
+
+        //when
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> unrooted.start("2025"));
+
+        //then
+        assertFalse(unrooted.isRootConfigured());
+        assertEquals("No weather.backfill.root is configured", exception.getMessage());
+    }
+
+    private void writeFeed(String name, int hour) throws IOException {
+        String timestamp = String.valueOf(FIRST_TIMESTAMP + hour * 3600L);
+        Files.writeString(directory.resolve(name), feed.replace("timestamp=\"" + FIRST_TIMESTAMP + "\"", "timestamp=\"" + timestamp + "\""));
+    }
+
+    private static LocalDateTime timestamp(int hour) {
+        return LocalDateTime.ofEpochSecond(FIRST_TIMESTAMP + hour * 3600L, 0, ZoneOffset.UTC);
+    }
+
+    private static String key(String station, LocalDateTime timestamp) {
+        return station + "@" + timestamp;
+    }
+}
@@ -0,0 +1,136 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherHistoryIndexTest {
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now(ZoneOffset.UTC).withNano(0);
+    }
+
+    @Test
+    void testFullHistoryIsResolvedWithoutQueries() {
+        //given
+        Weather older = createWeather(now.minusHours(2));
+        Weather newer = createWeather(now.minusHours(1));
+        when(weatherRepository.getWeatherForStation(anyString())).thenReturn(List.of());
+        when(weatherRepository.getWeatherForStation(City.TALLINN.getStationName())).thenReturn(List.of(older, newer));
+        WeatherHistoryIndex index = new WeatherHistoryIndex(weatherRepository, null);
+        index.reload();
+
+        //when
+        Weather between = index.atOrBefore(City.TALLINN, now.minusMinutes(90));
+        Weather exact = index.atOrBefore(City.TALLINN, now.minusHours(1));
+        Weather beforeHistory = index.atOrBefore(City.TALLINN, now.minusDays(1));
+
+        //then
+        assertSame(older, between);
+        assertSame(newer, exact);
+        assertNull(beforeHistory);
+        verify(weatherRepository, never()).getWeatherForStationAtOrBefore(anyString(), any());
+    }
+
+    @Test
+    void testAppendedObservationIsVisible() {
+        //given
+        WeatherHistoryIndex index = new WeatherHistoryIndex(weatherRepository, null);
+        Weather imported = createWeather(now);
+
+        //when
+        index.append(List.of(imported));
+
+        //then
+        assertSame(imported, index.atOrBefore(City.TALLINN, now.plusMinutes(5)));
+    }
+
+    @Test
+    void testBoundedHistoryFallsBackToDatabaseBeyondHorizon() {
+        //given
+        Weather recent = createWeather(now.minusHours(1));
+        Weather archived = createWeather(now.minusDays(10));
+        when(weatherRepository.getWeatherForStationSince(anyString(), any())).thenReturn(List.of());
+        when(weatherRepository.getWeatherForStationSince(eq(City.TALLINN.getStationName()), any())).thenReturn(List.of(recent));
+        when(weatherRepository.getWeatherForStationAtOrBefore(City.TALLINN.getStationName(), now.minusDays(5)))
+                .thenReturn(Optional.of(archived));
+        WeatherHistoryIndex index = new WeatherHistoryIndex(weatherRepository, Duration.ofDays(1));
+        index.reload();
+
+        //when
+        Weather hot = index.atOrBefore(City.TALLINN, now);
+        Weather cold = index.atOrBefore(City.TALLINN, now.minusDays(5));
+
+        //then
+        assertSame(recent, hot);
+        assertSame(archived, cold);
+        assertTrue(index.isInMemory(City.TALLINN, now));
+        assertFalse(index.isInMemory(City.TALLINN, now.minusDays(5)));
+        verify(weatherRepository, times(1)).getWeatherForStationAtOrBefore(anyString(), any());
+    }
+
+    @Test
+    void testBatchResolutionQueriesEachColdClusterSeparately() {
+        //given
+        Weather recent = createWeather(now.minusHours(1));
+        Weather archivedFirst = createWeather(now.minusDays(10));
+        Weather archivedSecond = createWeather(now.minusDays(8).plusHours(3));
+        Weather archivedThird = createWeather(now.minusDays(6));
+        when(weatherRepository.getWeatherForStationSince(anyString(), any())).thenReturn(List.of());
+        when(weatherRepository.getWeatherForStationSince(eq(City.TALLINN.getStationName()), any())).thenReturn(List.of(recent));
+        when(weatherRepository.getWeatherForStationAtOrBefore(City.TALLINN.getStationName(), now.minusDays(8)))
+                .thenReturn(Optional.of(archivedFirst));
+        when(weatherRepository.getWeatherForStationBetween(City.TALLINN.getStationName(), now.minusDays(8), now.minusDays(8).plusHours(6)))
+                .thenReturn(List.of(archivedSecond));
+        when(weatherRepository.getWeatherForStationAtOrBefore(City.TALLINN.getStationName(), now.minusDays(5)))
+                .thenReturn(Optional.of(archivedThird));
+        WeatherHistoryIndex index = new WeatherHistoryIndex(weatherRepository, Duration.ofDays(1));
+        index.reload();
+
+        //when
+        Map<LocalDateTime, Weather> resolved = index.atOrBefore(City.TALLINN, new TreeSet<>(List.of(
+                now.minusDays(8), now.minusDays(8).plusHours(2), now.minusDays(8).plusHours(6), now.minusDays(5), now)));
+
+        //then
+        assertSame(archivedFirst, resolved.get(now.minusDays(8)));
+        assertSame(archivedFirst, resolved.get(now.minusDays(8).plusHours(2)));
+        assertSame(archivedSecond, resolved.get(now.minusDays(8).plusHours(6)));
+        assertSame(archivedThird, resolved.get(now.minusDays(5)));
+        assertSame(recent, resolved.get(now));
+        verify(weatherRepository, times(2)).getWeatherForStationAtOrBefore(anyString(), any());
+        verify(weatherRepository, times(1)).getWeatherForStationBetween(anyString(), any(), any());
+    }
+
+    private Weather createWeather(LocalDateTime timestamp) {
+        Weather weather = new Weather();
+        weather.setStationName(City.TALLINN.getStationName());
+        weather.setWmoCode("26038");
+        weather.setTimestamp(timestamp);
+        return weather;
+    }
+}
@@ -0,0 +1,183 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.WeatherHistoryStore;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherImportTest {
+
+    private static final String ETAG = "\"feed-1742637600\"";
+    private static final String LAST_MODIFIED = "Sat, 22 Mar 2025 10:00:00 GMT";
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    private HttpServer server;
+    private final List<HttpExchange> requests = new CopyOnWriteArrayList<>();
+    private volatile boolean honourValidators = true;
+    private byte[] feed;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LatestWeatherCache latestWeatherCache;
+    private WeatherImport weatherImport;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream in = WeatherImportTest.class.getResourceAsStream("/observations/observations-full.xml")) {
+            feed = in.readAllBytes();
+        }
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/observations.php", this::serveFeed);
+        server.start();
+
+        latestWeatherCache = new LatestWeatherCache(weatherRepository, new FeeTableCache());
+        weatherImport = new WeatherImport(weatherRepository, latestWeatherCache, new WeatherHistoryIndex(weatherRepository, null),
+                new WeatherHistoryStore(weatherRepository, null), meterRegistry, Duration.ofSeconds(5), Duration.ofSeconds(20));
+        ReflectionTestUtils.setField(weatherImport, "weatherApiUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/observations.php");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void serveFeed(HttpExchange exchange) throws IOException {
+        requests.add(exchange);
+        if (honourValidators && ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+        exchange.sendResponseHeaders(200, feed.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(feed);
+        }
+    }
+
+    @Test
+    void testFirstImportInsertsRequiredStations() {
+        //given
+        List<Weather> saved = recordSaves();
+
+        //when
+        weatherImport.importWeatherData();
+
+        //then
+        assertEquals(3, saved.size());
+        assertEquals(LocalDateTime.ofEpochSecond(1742637600L, 0, ZoneOffset.UTC), saved.get(0).getTimestamp());
+        assertEquals(-2.1, latestWeatherCache.get(City.TALLINN).getAirTemperature());
+        assertEquals(new WeatherImportCounters(0, 3, 0, 3), weatherImport.counters());
+        assertNull(requests.get(0).getRequestHeaders().getFirst("If-None-Match"));
+    }
+
+    @Test
+    void testUnchangedFeedIsAnsweredWithNotModified() {
+        //given
+        recordSaves();
+        weatherImport.importWeatherData();
+
+        //when
+        weatherImport.importWeatherData();
+
+        //then
+        assertEquals(2, requests.size());
+        assertEquals(ETAG, requests.get(1).getRequestHeaders().getFirst("If-None-Match"));
+        assertEquals(LAST_MODIFIED, requests.get(1).getRequestHeaders().getFirst("If-Modified-Since"));
+        verify(weatherRepository, times(1)).saveAll(anyList());
+        assertEquals(new WeatherImportCounters(1, 3, 0, 3), weatherImport.counters());
+    }
+
+    @Test
+    void testRepeatedObservationIsNotPersistedAgain() {
+        //given
+        honourValidators = false;
+        recordSaves();
+        weatherImport.importWeatherData();
+
+        //when
+        weatherImport.importWeatherData();
+
+        //then
+        assertEquals(2, requests.size());
+        verify(weatherRepository, times(1)).saveAll(anyList());
+        assertEquals(new WeatherImportCounters(0, 6, 3, 3), weatherImport.counters());
+    }
+
+    @Test
+    void testFailedImportDoesNotKeepValidators() {
+        //given
+        when(weatherRepository.saveAll(anyList())).thenThrow(new IllegalStateException("Database unavailable"));
+        weatherImport.importWeatherData();
+        reset(weatherRepository);
+        List<Weather> saved = recordSaves();
+
+        //when
+        weatherImport.importWeatherData();
+
+        //then
+        assertNull(requests.get(1).getRequestHeaders().getFirst("If-None-Match"));
+        assertEquals(3, saved.size());
+        assertEquals(1, meterRegistry.get(WeatherImport.RUN_COUNTER).tag("result", "failed").counter().count());
+    }
+
+    @Test
+    void testImportRecordsStageTimersAndObservationAge() {
+        //given
+        recordSaves();
+        weatherImport.importWeatherData();
+
+        //when
+        weatherImport.importWeatherData();
+
+        //then
+        assertEquals(1, meterRegistry.get(WeatherImport.RUN_COUNTER).tag("result", "imported").counter().count());
+        assertEquals(1, meterRegistry.get(WeatherImport.RUN_COUNTER).tag("result", "not_modified").counter().count());
+        assertEquals(2, meterRegistry.get(WeatherImport.STAGE_TIMER).tag("stage", "fetch").timer().count());
+        assertEquals(1, meterRegistry.get(WeatherImport.STAGE_TIMER).tag("stage", "parse").timer().count());
+        assertEquals(1, meterRegistry.get(WeatherImport.STAGE_TIMER).tag("stage", "persist").timer().count());
+        assertEquals(3, meterRegistry.get(WeatherImport.RECORD_COUNTER).tag("state", "inserted").functionCounter().count());
+        double age = meterRegistry.get(WeatherImport.OBSERVATION_AGE_GAUGE).tag("station", "Tallinn-Harku").gauge().value();
+        assertTrue(age > 0);
+    }
+
+    private List<Weather> recordSaves() {
+        List<Weather> saved = new ArrayList<>();
+        when(weatherRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Weather> rows = invocation.getArgument(0);
+            saved.addAll(rows);
+            return rows;
+        });
+        return saved;
+    }
+}
@@ -0,0 +1,49 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.PhenomenonClass;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherPhenomenonBackfillTest {
+
+    @Mock
+    private WeatherRepository weatherRepository;
+
+    @InjectMocks
+    private WeatherPhenomenonBackfill weatherPhenomenonBackfill;
+
+    @Test
+    void testBackfillClassifiesEveryDistinctPhenomenonOnce() {
+        //given
+        when(weatherRepository.getUnclassifiedPhenomena()).thenReturn(Arrays.asList("Light snow shower", "Glaze", "Clear", null));
+
+        //when
+        weatherPhenomenonBackfill.backfill();
+
+        //then
+        verify(weatherRepository).classifyPhenomenon("Light snow shower", PhenomenonClass.SNOW_OR_SLEET);
+        verify(weatherRepository).classifyPhenomenon("Glaze", PhenomenonClass.FORBIDDEN_FOR_TWO_WHEELERS);
+        verify(weatherRepository).classifyPhenomenon("Clear", PhenomenonClass.NONE);
+        verify(weatherRepository).classifyMissingPhenomenon(PhenomenonClass.NONE);
+    }
+
+    @Test
+    void testClassifyMatchesFeedPhenomena() {
+        assertEquals(PhenomenonClass.FORBIDDEN_FOR_TWO_WHEELERS, PhenomenonClass.classify("Thunderstorm"));
+        assertEquals(PhenomenonClass.FORBIDDEN_FOR_TWO_WHEELERS, PhenomenonClass.classify("Hail"));
+        assertEquals(PhenomenonClass.SNOW_OR_SLEET, PhenomenonClass.classify("Moderate sleet"));
+        assertEquals(PhenomenonClass.RAIN, PhenomenonClass.classify("Light rain"));
+        assertEquals(PhenomenonClass.NONE, PhenomenonClass.classify("Light shower"));
+        assertEquals(PhenomenonClass.NONE, PhenomenonClass.classify(" "));
+    }
+}
@@ -0,0 +1,208 @@
+package com.calculation.fee.delivery.service;
+
+import com.calculation.fee.delivery.model.BusinessRule;
+import com.calculation.fee.delivery.model.City;
+import com.calculation.fee.delivery.model.FeeQuote;
+import com.calculation.fee.delivery.model.VehicleType;
+import com.calculation.fee.delivery.model.Weather;
+import com.calculation.fee.delivery.repository.BusinessRuleRepository;
+import com.calculation.fee.delivery.repository.WeatherRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.calculation.fee.delivery.util.TestUtils.createBusinessRule;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:db_delivery_retention",
+        "weather.import.cron=-",
+        "weather.retention.cron=-",
+        "weather.retention.batch-size=100"})
+class WeatherRetentionTest {
+
+    private static final String[] PHENOMENA = {"Clear", "Light rain", "Light snow", "Glaze", "Thunder", "Hail"};
+
+    @Autowired
+    private WeatherRetention weatherRetention;
+
+    @Autowired
+    private DeliveryFee deliveryFee;
+
+    @Autowired
+    private WeatherRepository weatherRepository;
+
+    @Autowired
+    private BusinessRuleRepository businessRuleRepository;
+
+    @Autowired
+    private BusinessRuleCache businessRuleCache;
+
+    @Autowired
+    private LatestWeatherCache latestWeatherCache;
+
+    @Autowired
+    private WeatherHistoryIndex weatherHistoryIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private LocalDateTime cutoff;
+
+    @BeforeEach
+    void setUp() {
+        weatherRepository.deleteAll();
+        businessRuleRepository.deleteAll();
+        end = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS).minusDays(30);
+        start = end.minusDays(90);
+        cutoff = end.minusDays(30);
+
+        Random random = new Random(42);
+        List<Weather> rows = new ArrayList<>();
+        for (LocalDateTime timestamp = start; timestamp.isBefore(end); timestamp = timestamp.plusHours(1)) {
+            long hour = ChronoUnit.HOURS.between(start, timestamp);
+            for (City city : City.values()) {
+                Weather weather = new Weather();
+                weather.setStationName(city.getStationName());
+                weather.setWmoCode("26000");
+                weather.setAirTemperature(switch ((int) (hour / 7 % 4)) {
+                    case 0 -> -15.0 + random.nextInt(4);
+                    case 1 -> -5.0 + random.nextInt(4);
+                    case 2 -> 5.0 + random.nextInt(4);
+                    default -> null;
+                });
+                weather.setWindSpeed(switch ((int) (hour / 5 % 4)) {
+                    case 0 -> 3.0 + random.nextInt(5);
+                    case 1 -> 12.0 + random.nextInt(5);
+                    case 2 -> 25.0;
+                    default -> 20.0 + random.nextInt(3);
+                });
+                weather.setWeatherPhenomenon(PHENOMENA[(int) (hour / 11 % PHENOMENA.length)]);
+                weather.setTimestamp(timestamp.plusMinutes(city.ordinal()));
+                rows.add(weather);
+            }
+        }
+        weatherRepository.saveAll(rows);
+
+        BusinessRule businessRule = createBusinessRule();
+        businessRule.setTimestamp(start.minusDays(1));
+        businessRuleRepository.save(businessRule);
+        businessRuleCache.reload();
+        latestWeatherCache.reload();
+        weatherHistoryIndex.reload();
+    }
+
+    @Test
+    void testCompactionKeepsHistoricalQuotes() {
+        //given
+        List<String> quotesBefore = quotes();
+        List<String> storedBefore = storedQuotes();
+        int recentBefore = recentRows();
+        double deletedBefore = deletedCount();
+
+        //when
+        int deleted = weatherRetention.compact(cutoff);
+        List<String> quotesAfter = quotes();
+        weatherHistoryIndex.reload();
+        List<String> quotesAfterReload = quotes();
+        List<String> storedAfter = storedQuotes();
+
+        //then
+        assertTrue(deleted > 0);
+        assertEquals(deletedBefore + deleted, deletedCount());
+        assertEquals(recentBefore, recentRows());
+        assertEquals(quotesBefore, quotesAfter);
+        assertEquals(quotesBefore, quotesAfterReload);
+        assertEquals(storedBefore, storedAfter);
+        assertEquals(0, weatherRetention.compact(cutoff));
+    }
+
+    @Test
+    void testCompactionPagesPastRowsSharingATimestamp() {
+        //given
+        weatherRepository.deleteAll();
+        LocalDateTime timestamp = cutoff.minusDays(1);
+        List<Weather> rows = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Weather weather = new Weather();
+            weather.setStationName(City.TARTU.getStationName());
+            weather.setWmoCode("26242");
+            weather.setAirTemperature(-2.0);
+            weather.setWindSpeed(4.0);
+            weather.setWeatherPhenomenon("Light snow");
+            weather.setTimestamp(timestamp);
+            rows.add(weather);
+        }
+        weatherRepository.saveAll(rows);
+
+        //when
+        int deleted = weatherRetention.compact(cutoff);
+
+        //then
+        assertEquals(249, deleted);
+        assertEquals(1, weatherRepository.getWeatherForStationSince(City.TARTU.getStationName(), start).size());
+    }
+
+    /**
+     * Quotes through {@link DeliveryFee#quote} every 17 minutes from before the first observation to after the last
+     */
+    private List<String> quotes() {
+        List<String> quotes = new ArrayList<>();
+        for (LocalDateTime datetime = start.minusHours(1); datetime.isBefore(end.plusHours(1)); datetime = datetime.plusMinutes(17)) {
+            for (City city : City.values()) {
+                for (VehicleType vehicleType : VehicleType.values()) {
+                    try {
+                        quotes.add(describe(deliveryFee.quote(city, vehicleType, datetime)));
+                    } catch (IllegalStateException e) {
+                        quotes.add("no data");
+                    }
+                }
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Quotes resolved straight from the database every 7 hours and 13 minutes
+     */
+    private List<String> storedQuotes() {
+        BusinessRule businessRule = businessRuleCache.current().activeAt(end);
+        List<String> quotes = new ArrayList<>();
+        for (LocalDateTime datetime = start.minusHours(1); datetime.isBefore(end.plusHours(1)); datetime = datetime.plusMinutes(433)) {
+            for (City city : City.values()) {
+                Weather weather = weatherRepository.getWeatherForStationAtOrBefore(city.getStationName(), datetime).orElse(null);
+                for (VehicleType vehicleType : VehicleType.values()) {
+                    quotes.add(weather == null ? "no data" : describe(DeliveryFee.calculateFee(city, vehicleType, weather, businessRule)));
+                }
+            }
+        }
+        return quotes;
+    }
+
+    private int recentRows() {
+        int rows = 0;
+        for (City city : City.values()) {
+            rows += weatherRepository.getWeatherForStationSince(city.getStationName(), cutoff).size();
+        }
+        return rows;
+    }
+
+    private double deletedCount() {
+        return meterRegistry.get(WeatherRetention.DELETED_COUNTER).counter().count();
+    }
+
+    private static String describe(FeeQuote quote) {
+        return quote.feeCents() + " " + quote.forbiddenReason() + " " + quote.forbiddenMessage();
+    }
+}
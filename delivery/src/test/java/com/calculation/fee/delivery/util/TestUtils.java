@@ -10,20 +10,20 @@ public class TestUtils {
 
     public static BusinessRule createBusinessRule() {
         BusinessRule businessRule = new BusinessRule();
-        businessRule.setTallinnCarBaseFee(4.0);
-        businessRule.setTallinnScooterBaseFee(3.5);
-        businessRule.setTallinnBikeBaseFee(3.0);
-        businessRule.setTartuCarBaseFee(3.5);
-        businessRule.setTartuScooterBaseFee(3.0);
-        businessRule.setTartuBikeBaseFee(2.5);
-        businessRule.setParnuCarBaseFee(3.0);
-        businessRule.setParnuScooterBaseFee(2.5);
-        businessRule.setParnuBikeBaseFee(2.0);
-        businessRule.setAtefBelowMinusTen(1.0);
-        businessRule.setAtefBelowZero(0.5);
-        businessRule.setWsefFee(0.5);
-        businessRule.setWpefSnowOrSleet(1.0);
-        businessRule.setWpefRain(0.5);
+        businessRule.setTallinnCarBaseFeeCents(400);
+        businessRule.setTallinnScooterBaseFeeCents(350);
+        businessRule.setTallinnBikeBaseFeeCents(300);
+        businessRule.setTartuCarBaseFeeCents(350);
+        businessRule.setTartuScooterBaseFeeCents(300);
+        businessRule.setTartuBikeBaseFeeCents(250);
+        businessRule.setParnuCarBaseFeeCents(300);
+        businessRule.setParnuScooterBaseFeeCents(250);
+        businessRule.setParnuBikeBaseFeeCents(200);
+        businessRule.setAtefBelowMinusTenCents(100);
+        businessRule.setAtefBelowZeroCents(50);
+        businessRule.setWsefFeeCents(50);
+        businessRule.setWpefSnowOrSleetCents(100);
+        businessRule.setWpefRainCents(50);
         businessRule.setTimestamp(baseTimestamp.minusHours(3));
         return businessRule;
     }